@@ -0,0 +1,35 @@
+package com.nvrsk.benchmarks;
+
+import com.nvrsk.Application;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.lang.NonNull;
+
+import java.util.UUID;
+
+/**
+ * Starts the application for benchmarks which call its beans directly.
+ */
+final class BenchmarkApplication {
+
+    private BenchmarkApplication() {
+    }
+
+    /**
+     * Starts the application on a random port with its own in-memory database.
+     *
+     * @param properties - additional application properties in {@code key=value} form.
+     * @return context of the started application, it must be closed by the benchmark.
+     */
+    @NonNull
+    static ConfigurableApplicationContext start(String... properties) {
+        return new SpringApplicationBuilder(Application.class)
+                .properties(
+                        "server.port=0",
+                        "spring.datasource.url=jdbc:h2:mem:benchmark-" + UUID.randomUUID(),
+                        "spring.main.banner-mode=off",
+                        "logging.level.root=warn")
+                .properties(properties)
+                .run();
+    }
+}
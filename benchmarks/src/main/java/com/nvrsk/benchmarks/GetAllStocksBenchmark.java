@@ -0,0 +1,72 @@
+package com.nvrsk.benchmarks;
+
+import com.nvrsk.model.StockInfo;
+import com.nvrsk.service.StockService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Listing of all stocks depending on how many of them there are.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Benchmark)
+public class GetAllStocksBenchmark {
+
+    private static final int BATCH_SIZE = 10_000;
+
+    /**
+     * Ids of the inserted stocks start after the ones prepared by the application.
+     */
+    private static final long FIRST_ID = 1_000;
+
+    @Param({"10", "10000", "1000000"})
+    public int stocks;
+
+    private ConfigurableApplicationContext context;
+
+    private StockService stockService;
+
+    @Setup
+    public void start() {
+        context = BenchmarkApplication.start();
+        stockService = context.getBean(StockService.class);
+        JdbcTemplate jdbcTemplate = context.getBean(JdbcTemplate.class);
+        int preparedStocks = stockService.getAllStocks().size();
+        Timestamp lastUpdate = Timestamp.from(Instant.now());
+        List<Object[]> rows = new ArrayList<>(BATCH_SIZE);
+        for (long id = FIRST_ID; id < FIRST_ID + stocks - preparedStocks; id++) {
+            rows.add(new Object[]{id, "Stock" + id, 1 + id % 100 / 100d, lastUpdate});
+            if (rows.size() == BATCH_SIZE) {
+                insert(jdbcTemplate, rows);
+            }
+        }
+        insert(jdbcTemplate, rows);
+    }
+
+    @TearDown
+    public void stop() {
+        context.close();
+    }
+
+    @Benchmark
+    public Collection<StockInfo> getAllStocks() {
+        return stockService.getAllStocks();
+    }
+
+    private static void insert(JdbcTemplate jdbcTemplate, List<Object[]> rows) {
+        jdbcTemplate.batchUpdate("insert into stock (id, name, current_price, last_update, version) values (?, ?, ?, ?, 0)", rows);
+        rows.clear();
+    }
+}
@@ -0,0 +1,115 @@
+package com.nvrsk.benchmarks;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.nvrsk.config.BinaryFormatsConfiguration;
+import com.nvrsk.export.HistoryColumnsHttpMessageConverter;
+import com.nvrsk.model.PriceHistory;
+import com.nvrsk.model.Stock;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serialization of response bodies with object mappers configured the way Spring Boot configures them.
+ * History is serialized to JSON, to the binary formats of {@link BinaryFormatsConfiguration} and to price history columns.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SerializationBenchmark {
+
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+
+    private final Stock stock = new Stock();
+
+    @State(Scope.Benchmark)
+    public static class History {
+
+        @Param({"100", "100000"})
+        public int size;
+
+        @Param({"json", "cbor", "smile", "columns"})
+        public String format;
+
+        private List<PriceHistory> records;
+
+        private ObjectMapper objectMapper;
+
+        private final HistoryColumnsHttpMessageConverter columnsConverter = new HistoryColumnsHttpMessageConverter();
+
+        @Setup
+        public void prepare() {
+            records = new ArrayList<>(size);
+            Instant startDate = Instant.parse("2020-05-01T21:54:03Z");
+            for (int i = 0; i < size; i++) {
+                PriceHistory priceHistory = new PriceHistory();
+                priceHistory.setId((long) i);
+                priceHistory.setPrice(1 + i % 100 / 100d);
+                priceHistory.setStartDate(startDate.plusSeconds(i));
+                records.add(priceHistory);
+            }
+            if ("cbor".equals(format)) {
+                objectMapper = BinaryFormatsConfiguration.binaryObjectMapper(Jackson2ObjectMapperBuilder.json(), new CBORFactory());
+            } else if ("smile".equals(format)) {
+                objectMapper = BinaryFormatsConfiguration.binaryObjectMapper(Jackson2ObjectMapperBuilder.json(), new SmileFactory());
+            } else {
+                objectMapper = Jackson2ObjectMapperBuilder.json().build();
+            }
+        }
+
+        private byte[] serialize() throws IOException {
+            if (!"columns".equals(format)) {
+                return objectMapper.writeValueAsBytes(records);
+            }
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            columnsConverter.write(records, null, new HttpOutputMessage() {
+
+                private final HttpHeaders headers = new HttpHeaders();
+
+                @Override
+                public OutputStream getBody() {
+                    return body;
+                }
+
+                @Override
+                public HttpHeaders getHeaders() {
+                    return headers;
+                }
+            });
+            return body.toByteArray();
+        }
+    }
+
+    @Setup
+    public void prepare() {
+        stock.setId(1L);
+        stock.setName("Stock1.L");
+        stock.setCurrentPrice(2d);
+        stock.setLastUpdate(Instant.parse("2020-05-01T22:56:04Z"));
+    }
+
+    @Benchmark
+    public byte[] serializeStock() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(stock);
+    }
+
+    @Benchmark
+    public byte[] serializeHistory(History history) throws IOException {
+        return history.serialize();
+    }
+}
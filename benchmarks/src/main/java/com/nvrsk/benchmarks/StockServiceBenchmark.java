@@ -0,0 +1,96 @@
+package com.nvrsk.benchmarks;
+
+import com.nvrsk.model.NewStockResult;
+import com.nvrsk.model.Stock;
+import com.nvrsk.model.StockInfo;
+import com.nvrsk.repository.StockRepository;
+import com.nvrsk.request.NewStockRequest;
+import com.nvrsk.service.PriceHistoryService;
+import com.nvrsk.service.StockService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Service paths of a single request: cached stock lookup, price update, new stock and price history record,
+ * plus a batch of {@value #BATCH_SIZE} new stocks.
+ * Every update is committed to the in-memory database, so the results include the persistence cost.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class StockServiceBenchmark {
+
+    private static final int BATCH_SIZE = 1000;
+
+    private final AtomicLong counter = new AtomicLong();
+
+    private ConfigurableApplicationContext context;
+
+    private StockService stockService;
+
+    private PriceHistoryService priceHistoryService;
+
+    private Stock stock;
+
+    @Setup
+    public void start() {
+        context = BenchmarkApplication.start();
+        stockService = context.getBean(StockService.class);
+        priceHistoryService = context.getBean(PriceHistoryService.class);
+        stock = context.getBean(StockRepository.class).findById(1L).orElseThrow(IllegalStateException::new);
+    }
+
+    @TearDown
+    public void stop() {
+        context.close();
+    }
+
+    @Benchmark
+    public StockInfo lookupStock() {
+        return stockService.lookupStock(2);
+    }
+
+    @Benchmark
+    public Stock updateStockPrice() {
+        return stockService.updateStockPrice(2, nextPrice());
+    }
+
+    @Benchmark
+    public Stock addNewStock() {
+        NewStockRequest newStockRequest = new NewStockRequest();
+        newStockRequest.setName("Benchmark" + counter.incrementAndGet());
+        newStockRequest.setPrice(nextPrice());
+        return stockService.addNewStock(newStockRequest);
+    }
+
+    @Benchmark
+    public List<NewStockResult> addNewStocks() {
+        List<NewStockRequest> newStockRequests = new ArrayList<>(BATCH_SIZE);
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            NewStockRequest newStockRequest = new NewStockRequest();
+            newStockRequest.setName("Benchmark" + counter.incrementAndGet());
+            newStockRequest.setPrice(nextPrice());
+            newStockRequests.add(newStockRequest);
+        }
+        return stockService.addNewStocks(newStockRequests);
+    }
+
+    @Benchmark
+    public void updatePriceHistory() {
+        stock.setCurrentPrice(nextPrice());
+        priceHistoryService.updateStockPrice(stock, Instant.now());
+    }
+
+    private double nextPrice() {
+        return 1 + counter.incrementAndGet() % 100 / 100d;
+    }
+}
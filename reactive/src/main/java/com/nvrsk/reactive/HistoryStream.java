@@ -0,0 +1,30 @@
+package com.nvrsk.reactive;
+
+import com.nvrsk.model.PriceHistory;
+import reactor.core.publisher.Flux;
+
+/**
+ * One page of {@link PriceHistory} records of a stock which is streamed from the database rather than materialized.
+ */
+public class HistoryStream {
+
+    private final Flux<PriceHistory> items;
+
+    private final String nextCursor;
+
+    public HistoryStream(Flux<PriceHistory> items, String nextCursor) {
+        this.items = items;
+        this.nextCursor = nextCursor;
+    }
+
+    public Flux<PriceHistory> getItems() {
+        return items;
+    }
+
+    /**
+     * @return opaque cursor to request the next page with or {@code null} when this page is the last one.
+     */
+    public String getNextCursor() {
+        return nextCursor;
+    }
+}
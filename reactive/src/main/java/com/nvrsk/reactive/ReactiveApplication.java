@@ -0,0 +1,16 @@
+package com.nvrsk.reactive;
+
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.SpringBootApplication;
+
+/**
+ * Reactive variant of the stocks application: the same REST API served by WebFlux on top of R2DBC,
+ * so requests are handled without blocking threads.
+ */
+@SpringBootApplication
+public class ReactiveApplication {
+
+    public static void main(String[] args) {
+        SpringApplication.run(ReactiveApplication.class, args);
+    }
+}
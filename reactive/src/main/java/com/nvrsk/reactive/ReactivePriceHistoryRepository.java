@@ -0,0 +1,122 @@
+package com.nvrsk.reactive;
+
+import com.nvrsk.model.PriceHistory;
+import io.r2dbc.spi.Row;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.r2dbc.core.DatabaseClient;
+import org.springframework.lang.NonNull;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Instant;
+
+/**
+ * Non-blocking access to the price history table.
+ * Records of a stock are read from the newest to the oldest one by (start_date, id) keyset, like in the main application.
+ * Queries order by stock id too and bound the start date with plain comparisons next to the keyset predicates,
+ * so they seek the {@code (stock_id, start_date desc, id desc)} index and read a page from it without sorting.
+ */
+@Repository
+public class ReactivePriceHistoryRepository {
+
+    /**
+     * Upper bound of start dates of the first page, without a range H2 reads the stock from its foreign key index and sorts it.
+     */
+    private static final Instant MAX_START_DATE = Instant.parse("9999-12-31T23:59:59Z");
+
+    @Autowired
+    private DatabaseClient databaseClient;
+
+    @NonNull
+    public Mono<Integer> insert(long stockId, double price, @NonNull Instant startDate) {
+        return databaseClient.execute("insert into price_history (id, stock_id, price, start_date) "
+                + "values (next value for price_history_sequence, :stockId, :price, :startDate)")
+                .bind("stockId", stockId)
+                .bind("price", price)
+                .bind("startDate", startDate)
+                .fetch()
+                .rowsUpdated();
+    }
+
+    /**
+     * Streams records of the stock which are older than the given position, as they are read from the database.
+     *
+     * @param stockId    - id of the stock.
+     * @param beforeDate - start date of the position or {@code null} to start from the newest record.
+     * @param beforeId   - id of the position, records with the same start date and a smaller id are older.
+     * @param from       - the oldest start date of returned records or {@code null} for no lower bound.
+     * @param last       - the last record to return or {@code null} to return records up to {@code from}.
+     * @param limit      - max number of records.
+     * @return records from the newest to the oldest one.
+     */
+    @NonNull
+    public Flux<PriceHistory> findPage(long stockId, @Nullable Instant beforeDate, long beforeId, @Nullable Instant from,
+                                       @Nullable PriceHistory last, int limit) {
+        StringBuilder sql = new StringBuilder(whereClause(beforeDate, from));
+        if (last != null) {
+            sql.append(" and start_date >= :lastDate and (start_date > :lastDate or start_date = :lastDate and id >= :lastId)");
+        }
+        sql.append(" order by stock_id, start_date desc, id desc limit :limit");
+        DatabaseClient.GenericExecuteSpec spec = bind(databaseClient.execute(sql.toString()), stockId, beforeDate, beforeId, from)
+                .bind("limit", limit);
+        if (last != null) {
+            spec = spec.bind("lastDate", last.getStartDate()).bind("lastId", last.getId());
+        }
+        return spec.map((row, metadata) -> toPriceHistory(row)).all();
+    }
+
+    /**
+     * Finds the record at the given offset from the position and the one after it,
+     * so a page boundary is known before the page itself is read.
+     * See {@link #findPage(long, Instant, long, Instant, PriceHistory, int)} for the parameters.
+     *
+     * @param offset - number of records to skip.
+     * @return up to two records from the newest to the oldest one.
+     */
+    @NonNull
+    public Flux<PriceHistory> findBoundary(long stockId, @Nullable Instant beforeDate, long beforeId, @Nullable Instant from,
+                                           int offset) {
+        String sql = whereClause(beforeDate, from) + " order by stock_id, start_date desc, id desc limit 2 offset :offset";
+        return bind(databaseClient.execute(sql), stockId, beforeDate, beforeId, from)
+                .bind("offset", offset)
+                .map((row, metadata) -> toPriceHistory(row))
+                .all();
+    }
+
+    private static String whereClause(@Nullable Instant beforeDate, @Nullable Instant from) {
+        StringBuilder sql = new StringBuilder("select id, price, start_date from price_history where stock_id = :stockId");
+        if (beforeDate != null) {
+            sql.append(" and start_date <= :beforeDate and (start_date < :beforeDate or start_date = :beforeDate and id < :beforeId)");
+        } else {
+            sql.append(" and start_date <= :maxStartDate");
+        }
+        if (from != null) {
+            sql.append(" and start_date >= :from");
+        }
+        return sql.toString();
+    }
+
+    private static DatabaseClient.GenericExecuteSpec bind(DatabaseClient.GenericExecuteSpec spec, long stockId,
+                                                          @Nullable Instant beforeDate, long beforeId, @Nullable Instant from) {
+        spec = spec.bind("stockId", stockId);
+        if (beforeDate != null) {
+            spec = spec.bind("beforeDate", beforeDate).bind("beforeId", beforeId);
+        } else {
+            spec = spec.bind("maxStartDate", MAX_START_DATE);
+        }
+        if (from != null) {
+            spec = spec.bind("from", from);
+        }
+        return spec;
+    }
+
+    private static PriceHistory toPriceHistory(Row row) {
+        PriceHistory priceHistory = new PriceHistory();
+        priceHistory.setId(row.get("id", Long.class));
+        priceHistory.setPrice(row.get("price", Double.class));
+        priceHistory.setStartDate(row.get("start_date", Instant.class));
+        return priceHistory;
+    }
+}
@@ -0,0 +1,88 @@
+package com.nvrsk.reactive;
+
+import com.nvrsk.model.PriceHistory;
+import com.nvrsk.model.StockInfo;
+import com.nvrsk.request.NewStockRequest;
+import com.nvrsk.request.PriceUpdateRequest;
+import com.nvrsk.request.StockPriceUpdateRequest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.lang.NonNull;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.util.UriComponentsBuilder;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.net.URI;
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Reactive Stocks REST controller, it follows the contract of the main application's controller.
+ */
+@RestController
+@RequestMapping("/api/stocks")
+public class ReactiveStockController {
+
+    /**
+     * Response header with cursor of the next history page.
+     */
+    public static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
+    @Autowired
+    private ReactiveStockService stockService;
+
+    @GetMapping
+    @NonNull
+    public Flux<StockInfo> getStocks() {
+        return stockService.getAllStocks();
+    }
+
+    @GetMapping("/{id}")
+    @NonNull
+    public Mono<StockInfo> getStock(@PathVariable long id) {
+        return stockService.lookupStock(id);
+    }
+
+    @GetMapping("/{id}/history")
+    @NonNull
+    public Mono<ResponseEntity<Flux<PriceHistory>>> getHistory(@PathVariable long id,
+                                                               @RequestParam(required = false) Integer limit,
+                                                               @RequestParam(required = false) String cursor,
+                                                               @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant from,
+                                                               @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant to) {
+        return stockService.getHistory(id, cursor, limit, from, to).map(page -> {
+            ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+            if (page.getNextCursor() != null) {
+                response.header(NEXT_CURSOR_HEADER, page.getNextCursor());
+            }
+            return response.body(page.getItems());
+        });
+    }
+
+    @PutMapping("/{id}")
+    @NonNull
+    public Mono<ResponseEntity<String>> updatePrice(@RequestBody @NonNull PriceUpdateRequest priceUpdateRequest, @PathVariable long id) {
+        return stockService.updateStockPrice(id, priceUpdateRequest.getPrice())
+                .then(Mono.fromCallable(() -> ResponseEntity.ok("Stock price updated")));
+    }
+
+    @PutMapping("/prices")
+    @NonNull
+    public Mono<ResponseEntity<String>> updatePrices(@RequestBody @NonNull List<StockPriceUpdateRequest> priceUpdateRequests) {
+        return stockService.updateStockPrices(priceUpdateRequests)
+                .map(updated -> ResponseEntity.ok("Stock prices updated"));
+    }
+
+    @PostMapping
+    @NonNull
+    public Mono<ResponseEntity<String>> addStock(@RequestBody @NonNull NewStockRequest newStockRequest, ServerHttpRequest request) {
+        return stockService.addNewStock(newStockRequest).map(id -> {
+            URI newStockLocation = UriComponentsBuilder.fromUri(request.getURI()).path("/{id}")
+                    .buildAndExpand(id).toUri();
+            return ResponseEntity.created(newStockLocation).body("New stock was created");
+        });
+    }
+}
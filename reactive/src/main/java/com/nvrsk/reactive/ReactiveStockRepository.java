@@ -0,0 +1,97 @@
+package com.nvrsk.reactive;
+
+import com.nvrsk.model.StockInfo;
+import io.r2dbc.spi.Row;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.r2dbc.core.DatabaseClient;
+import org.springframework.lang.NonNull;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Instant;
+import java.util.Collection;
+
+/**
+ * Non-blocking access to the stock table.
+ */
+@Repository
+public class ReactiveStockRepository {
+
+    @Autowired
+    private DatabaseClient databaseClient;
+
+    @NonNull
+    public Flux<StockInfo> findAllInfo() {
+        return databaseClient.execute("select id, name, current_price, last_update from stock order by id")
+                .map((row, metadata) -> toStockInfo(row))
+                .all();
+    }
+
+    @NonNull
+    public Mono<StockInfo> findInfoById(long id) {
+        return databaseClient.execute("select id, name, current_price, last_update from stock where id = :id")
+                .bind("id", id)
+                .map((row, metadata) -> toStockInfo(row))
+                .one();
+    }
+
+    @NonNull
+    public Mono<Boolean> existsByName(@NonNull String name) {
+        return databaseClient.execute("select id from stock where name = :name")
+                .bind("name", name)
+                .map((row, metadata) -> row.get("id", Long.class))
+                .first()
+                .hasElement();
+    }
+
+    @NonNull
+    public Flux<Long> findExistingIds(@NonNull Collection<Long> ids) {
+        return databaseClient.execute("select id from stock where id in (:ids)")
+                .bind("ids", ids)
+                .map((row, metadata) -> row.get("id", Long.class))
+                .all();
+    }
+
+    /**
+     * Inserts a new stock with id from the stock sequence.
+     *
+     * @return id of the inserted stock.
+     */
+    @NonNull
+    public Mono<Long> insert(@NonNull String name, double price, @NonNull Instant lastUpdate) {
+        return databaseClient.execute("select next value for jpa_sequence")
+                .map((row, metadata) -> row.get(0, Long.class))
+                .one()
+                .flatMap(id -> databaseClient.execute(
+                        "insert into stock (id, name, current_price, last_update, version) values (:id, :name, :price, :lastUpdate, 0)")
+                        .bind("id", id)
+                        .bind("name", name)
+                        .bind("price", price)
+                        .bind("lastUpdate", lastUpdate)
+                        .fetch()
+                        .rowsUpdated()
+                        .thenReturn(id));
+    }
+
+    /**
+     * Sets price of a stock with a single statement, so concurrent updates of the same stock are serialized by its row lock.
+     *
+     * @return number of updated stocks, {@code 0} when there is no stock with such id.
+     */
+    @NonNull
+    public Mono<Integer> updatePrice(long id, double price, @NonNull Instant lastUpdate) {
+        return databaseClient.execute(
+                "update stock set current_price = :price, last_update = :lastUpdate, version = version + 1 where id = :id")
+                .bind("price", price)
+                .bind("lastUpdate", lastUpdate)
+                .bind("id", id)
+                .fetch()
+                .rowsUpdated();
+    }
+
+    private static StockInfo toStockInfo(Row row) {
+        return new StockInfo(row.get("id", Long.class), row.get("name", String.class),
+                row.get("current_price", Double.class), row.get("last_update", Instant.class));
+    }
+}
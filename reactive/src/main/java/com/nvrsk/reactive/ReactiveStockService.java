@@ -0,0 +1,260 @@
+package com.nvrsk.reactive;
+
+import com.nvrsk.exception.IncorrectRequestException;
+import com.nvrsk.exception.StockAlreadyExistsException;
+import com.nvrsk.exception.StockNotFoundException;
+import com.nvrsk.model.PriceHistory;
+import com.nvrsk.model.StockInfo;
+import com.nvrsk.request.NewStockRequest;
+import com.nvrsk.request.StockPriceUpdateRequest;
+import com.nvrsk.service.HistoryCursor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.lang.NonNull;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Instant;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Non-blocking counterpart of the stock and price history services of the main application,
+ * with the same validation rules and error messages.
+ */
+@Service
+public class ReactiveStockService {
+
+    /**
+     * Page size which is used when client doesn't specify it.
+     */
+    public static final int DEFAULT_PAGE_SIZE = 100;
+
+    /**
+     * The biggest page size client can request.
+     */
+    public static final int MAX_PAGE_SIZE = 1000;
+
+    /**
+     * The biggest number of price updates which can be applied as a single batch.
+     */
+    public static final int MAX_BATCH_SIZE = 10_000;
+
+    @Autowired
+    private ReactiveStockRepository stockRepository;
+
+    @Autowired
+    private ReactivePriceHistoryRepository priceHistoryRepository;
+
+    @Autowired
+    private TransactionalOperator transactionalOperator;
+
+    /**
+     * @return all stocks ordered by id.
+     */
+    @NonNull
+    public Flux<StockInfo> getAllStocks() {
+        return stockRepository.findAllInfo();
+    }
+
+    /**
+     * Returns stock by its id.
+     *
+     * @param id - id of stock to lookup.
+     * @return stock, it fails with {@link StockNotFoundException} when there is no stock with such id.
+     */
+    @NonNull
+    public Mono<StockInfo> lookupStock(long id) {
+        return stockRepository.findInfoById(id)
+                .switchIfEmpty(Mono.error(() -> stockNotFound(id)));
+    }
+
+    /**
+     * Returns a page of price history of a stock, ordered from the newest to the oldest record.
+     * The page boundary is looked up first, so the cursor of the next page is known before any record is sent,
+     * then the records are streamed from the database as the client consumes them.
+     *
+     * @param id     - id of stock to get history for.
+     * @param cursor - cursor returned with the previous page or {@code null} to get the newest records.
+     * @param limit  - max number of records in the page or {@code null} to use {@link #DEFAULT_PAGE_SIZE}.
+     * @param from   - the oldest start date of returned records or {@code null} for no lower bound.
+     * @param to     - the newest start date of returned records or {@code null} for no upper bound.
+     * @return page of price history, it fails with {@link StockNotFoundException} when there is no stock with such id
+     * and with {@link IncorrectRequestException} when limit is out of range, cursor is malformed or the range is empty.
+     */
+    @NonNull
+    public Mono<HistoryStream> getHistory(long id, @Nullable String cursor, @Nullable Integer limit,
+                                          @Nullable Instant from, @Nullable Instant to) {
+        if (from != null && to != null && from.isAfter(to)) {
+            return Mono.error(new IncorrectRequestException("Start of the range should not be after its end"));
+        }
+        return lookupStock(id).flatMap(stock -> {
+            int pageSize = validatePageSize(limit);
+            Instant beforeDate;
+            long beforeId;
+            if (cursor != null) {
+                HistoryCursor position = HistoryCursor.decode(cursor);
+                beforeDate = position.getStartDate();
+                beforeId = position.getId();
+            } else {
+                beforeDate = to;
+                beforeId = Long.MAX_VALUE;
+            }
+            return priceHistoryRepository.findBoundary(id, beforeDate, beforeId, from, pageSize - 1)
+                    .collectList()
+                    .map(boundary -> {
+                        PriceHistory last = boundary.isEmpty() ? null : boundary.get(0);
+                        String nextCursor = boundary.size() > 1 ? HistoryCursor.encode(last) : null;
+                        return new HistoryStream(
+                                priceHistoryRepository.findPage(id, beforeDate, beforeId, from, last, pageSize), nextCursor);
+                    });
+        });
+    }
+
+    /**
+     * Adds a new stock by request.
+     *
+     * @param newStockRequest - request of new stock to add.
+     * @return id of the added stock, it fails with {@link IncorrectRequestException} when price is 0 or below
+     * or name is empty and with {@link StockAlreadyExistsException} when stock with such name already exists.
+     */
+    @NonNull
+    public Mono<Long> addNewStock(@NonNull NewStockRequest newStockRequest) {
+        return Mono.defer(() -> {
+            double price = validatePrice(newStockRequest.getPrice());
+            String name = validateName(newStockRequest.getName());
+            Instant lastUpdate = Instant.now();
+            return stockRepository.existsByName(name)
+                    .flatMap(exists -> exists
+                            ? Mono.<Long>error(stockAlreadyExists(name))
+                            : stockRepository.insert(name, price, lastUpdate))
+                    .flatMap(id -> priceHistoryRepository.insert(id, price, lastUpdate).thenReturn(id))
+                    .as(transactionalOperator::transactional)
+                    .onErrorMap(DataIntegrityViolationException.class, e -> stockAlreadyExists(name));
+        });
+    }
+
+    /**
+     * Updates a price of a given stock and opens a new price history record.
+     *
+     * @param id    - id of stock to update.
+     * @param price - price to update stock with.
+     * @return completion, it fails with {@link StockNotFoundException} when there is no stock with such id
+     * and with {@link IncorrectRequestException} when price is 0 or below.
+     */
+    @NonNull
+    public Mono<Void> updateStockPrice(long id, @Nullable Double price) {
+        return Mono.defer(() -> {
+            double validPrice = validatePrice(price);
+            return applyStockPrice(id, validPrice, Instant.now())
+                    .as(transactionalOperator::transactional);
+        });
+    }
+
+    /**
+     * Updates prices of many stocks in a single transaction, all updates share one timestamp.
+     * When the same stock is updated more than once, the last price wins.
+     *
+     * @param priceUpdateRequests - price updates to apply.
+     * @return number of updated stocks, it fails with {@link StockNotFoundException} when there is no stock with one of the ids
+     * and with {@link IncorrectRequestException} when batch is empty or too big, some id is missing or some price is 0 or below.
+     */
+    @NonNull
+    public Mono<Integer> updateStockPrices(@NonNull List<StockPriceUpdateRequest> priceUpdateRequests) {
+        return Mono.defer(() -> {
+            if (priceUpdateRequests.isEmpty() || priceUpdateRequests.size() > MAX_BATCH_SIZE) {
+                throw new IncorrectRequestException("Batch should contain from 1 to " + MAX_BATCH_SIZE + " price updates");
+            }
+            Map<Long, Double> prices = new LinkedHashMap<>();
+            for (StockPriceUpdateRequest priceUpdateRequest : priceUpdateRequests) {
+                if (priceUpdateRequest.getId() == null) {
+                    throw new IncorrectRequestException("Stock id can't be empty");
+                }
+                prices.put(priceUpdateRequest.getId(), validatePrice(priceUpdateRequest.getPrice()));
+            }
+            Instant lastUpdate = Instant.now();
+            return stockRepository.findExistingIds(prices.keySet())
+                    .collect(HashSet<Long>::new, HashSet::add)
+                    .flatMap(existingIds -> {
+                        for (Long id : prices.keySet()) {
+                            if (!existingIds.contains(id)) {
+                                return Mono.<Integer>error(stockNotFound(id));
+                            }
+                        }
+                        return Flux.fromIterable(prices.entrySet())
+                                .concatMap(price -> applyStockPrice(price.getKey(), price.getValue(), lastUpdate))
+                                .then(Mono.just(prices.size()));
+                    })
+                    .as(transactionalOperator::transactional);
+        });
+    }
+
+    private Mono<Void> applyStockPrice(long id, double price, Instant lastUpdate) {
+        return stockRepository.updatePrice(id, price, lastUpdate)
+                .flatMap(updated -> updated == 0
+                        ? Mono.<Integer>error(stockNotFound(id))
+                        : priceHistoryRepository.insert(id, price, lastUpdate))
+                .then();
+    }
+
+    @NonNull
+    private static StockNotFoundException stockNotFound(long id) {
+        return new StockNotFoundException("Stock with id " + id + " not found");
+    }
+
+    @NonNull
+    private static StockAlreadyExistsException stockAlreadyExists(@NonNull String name) {
+        return new StockAlreadyExistsException("Stock already exists with name: " + name);
+    }
+
+    /**
+     * Validates that page size is between 1 and {@link #MAX_PAGE_SIZE}.
+     *
+     * @param limit - requested page size.
+     * @return page size to use.
+     * @throws IncorrectRequestException when page size is out of range.
+     */
+    private static int validatePageSize(@Nullable Integer limit) {
+        if (limit == null) {
+            return DEFAULT_PAGE_SIZE;
+        }
+        if (limit <= 0 || limit > MAX_PAGE_SIZE) {
+            throw new IncorrectRequestException("History limit should be between 1 and " + MAX_PAGE_SIZE);
+        }
+        return limit;
+    }
+
+    /**
+     * Validates that price is greater than 0.
+     *
+     * @param price - price to validate.
+     * @return input price.
+     * @throws IncorrectRequestException when price is 0 or less.
+     */
+    private static double validatePrice(@Nullable Double price) {
+        if (price == null || price <= 0) {
+            throw new IncorrectRequestException("Stock price should be greater than 0");
+        }
+        return price;
+    }
+
+    /**
+     * Validates that name is not empty.
+     *
+     * @param name - name to validate.
+     * @return input name without leading and trailing whitespaces.
+     * @throws IncorrectRequestException when name is empty.
+     */
+    @NonNull
+    private static String validateName(@Nullable String name) {
+        if (name == null || name.trim().isEmpty()) {
+            throw new IncorrectRequestException("Stock name can't be empty");
+        }
+        return name.trim();
+    }
+}
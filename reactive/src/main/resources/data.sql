@@ -0,0 +1,11 @@
+insert into stock (id, name, current_price, last_update, version)
+values (next value for jpa_sequence, 'Stock1.L', 2, timestamp with time zone '2020-05-01 22:56:04+00', 0);
+insert into price_history (id, stock_id, price, start_date)
+values (next value for price_history_sequence, 1, 1.99, timestamp with time zone '2020-05-01 21:54:03+00');
+insert into price_history (id, stock_id, price, start_date)
+values (next value for price_history_sequence, 1, 2, timestamp with time zone '2020-05-01 22:56:04+00');
+
+insert into stock (id, name, current_price, last_update, version)
+values (next value for jpa_sequence, 'Stock2.N', 1.92, timestamp with time zone '2020-05-02 21:08:47+00', 0);
+insert into price_history (id, stock_id, price, start_date)
+values (next value for price_history_sequence, 2, 1.92, timestamp with time zone '2020-05-02 21:08:47+00');
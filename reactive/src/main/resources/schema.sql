@@ -0,0 +1,25 @@
+drop table if exists price_history;
+drop table if exists stock;
+drop sequence if exists jpa_sequence;
+drop sequence if exists price_history_sequence;
+
+create sequence jpa_sequence start with 1;
+create sequence price_history_sequence start with 1;
+
+create table stock (
+    id bigint not null primary key,
+    name varchar(255),
+    current_price double not null,
+    last_update timestamp with time zone,
+    version bigint not null,
+    constraint uk_stock_name unique (name)
+);
+
+create table price_history (
+    id bigint not null primary key,
+    stock_id bigint references stock (id),
+    price double not null,
+    start_date timestamp with time zone
+);
+
+create index idx_price_history_stock_start on price_history (stock_id, start_date desc, id desc);
@@ -0,0 +1,225 @@
+package com.nvrsk.reactive;
+
+import com.nvrsk.request.NewStockRequest;
+import com.nvrsk.request.PriceUpdateRequest;
+import com.nvrsk.request.StockPriceUpdateRequest;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@ExtendWith(SpringExtension.class)
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@DirtiesContext(classMode = DirtiesContext.ClassMode.BEFORE_EACH_TEST_METHOD)
+class ReactiveStockControllerTests {
+
+    @Autowired
+    private WebTestClient webTestClient;
+
+    private static StockPriceUpdateRequest priceUpdate(long id, double price) {
+        StockPriceUpdateRequest priceUpdateRequest = new StockPriceUpdateRequest();
+        priceUpdateRequest.setId(id);
+        priceUpdateRequest.setPrice(price);
+        return priceUpdateRequest;
+    }
+
+    private static NewStockRequest newStock(String name, double price) {
+        NewStockRequest newStockRequest = new NewStockRequest();
+        newStockRequest.setName(name);
+        newStockRequest.setPrice(price);
+        return newStockRequest;
+    }
+
+    private void assertError(WebTestClient.RequestHeadersSpec<?> request, HttpStatus status, String message) {
+        request.exchange()
+                .expectStatus().isEqualTo(status)
+                .expectBody().jsonPath("$.message").isEqualTo(message);
+    }
+
+    private WebTestClient.RequestHeadersSpec<?> put(String uri, Object body) {
+        return webTestClient.put().uri(uri).contentType(MediaType.APPLICATION_JSON).bodyValue(body);
+    }
+
+    private WebTestClient.RequestHeadersSpec<?> post(Object body) {
+        return webTestClient.post().uri("/api/stocks").contentType(MediaType.APPLICATION_JSON).bodyValue(body);
+    }
+
+    @Test
+    void testGetAllStocks() {
+        webTestClient.get().uri("/api/stocks").exchange()
+                .expectStatus().isOk()
+                .expectBody().json(
+                "[" +
+                        "{\"id\":1,\"name\":\"Stock1.L\",\"currentPrice\":2.0,\"lastUpdate\":\"2020-05-01T22:56:04Z\"}," +
+                        "{\"id\":2,\"name\":\"Stock2.N\",\"currentPrice\":1.92,\"lastUpdate\":\"2020-05-02T21:08:47Z\"}" +
+                        "]");
+    }
+
+    @Test
+    void testGetStockById() {
+        webTestClient.get().uri("/api/stocks/2").exchange()
+                .expectStatus().isOk()
+                .expectBody().json(
+                "{\"id\":2,\"name\":\"Stock2.N\",\"currentPrice\":1.92,\"lastUpdate\":\"2020-05-02T21:08:47Z\"}");
+    }
+
+    @Test
+    void testGetIncorrectId() {
+        assertError(webTestClient.get().uri("/api/stocks/3"), HttpStatus.NOT_FOUND, "Stock with id 3 not found");
+    }
+
+    @Test
+    void testGetUnparsedId() {
+        webTestClient.get().uri("/api/stocks/number").exchange()
+                .expectStatus().isBadRequest();
+    }
+
+    @Test
+    void testGetHistory() {
+        webTestClient.get().uri("/api/stocks/1/history").exchange()
+                .expectStatus().isOk()
+                .expectHeader().doesNotExist(ReactiveStockController.NEXT_CURSOR_HEADER)
+                .expectBody().json(
+                "[" +
+                        "{\"price\":2.0,\"startDate\":\"2020-05-01T22:56:04Z\"}," +
+                        "{\"price\":1.99,\"startDate\":\"2020-05-01T21:54:03Z\"}" +
+                        "]");
+    }
+
+    @Test
+    void testGetHistoryPages() {
+        String nextCursor = webTestClient.get().uri("/api/stocks/1/history?limit=1").exchange()
+                .expectStatus().isOk()
+                .expectBody().json("[{\"price\":2.0,\"startDate\":\"2020-05-01T22:56:04Z\"}]")
+                .returnResult()
+                .getResponseHeaders()
+                .getFirst(ReactiveStockController.NEXT_CURSOR_HEADER);
+        assertThat(nextCursor).isNotNull();
+
+        webTestClient.get().uri("/api/stocks/1/history?limit=1&cursor={cursor}", nextCursor).exchange()
+                .expectStatus().isOk()
+                .expectHeader().doesNotExist(ReactiveStockController.NEXT_CURSOR_HEADER)
+                .expectBody().json("[{\"price\":1.99,\"startDate\":\"2020-05-01T21:54:03Z\"}]");
+    }
+
+    @Test
+    void testGetHistoryRange() {
+        webTestClient.get().uri("/api/stocks/1/history?from=2020-05-01T21:54:03Z&to=2020-05-01T22:00:00Z").exchange()
+                .expectStatus().isOk()
+                .expectBody().json("[{\"price\":1.99,\"startDate\":\"2020-05-01T21:54:03Z\"}]");
+
+        webTestClient.get().uri("/api/stocks/1/history?from=2020-05-01T22:00:00Z").exchange()
+                .expectStatus().isOk()
+                .expectBody().json("[{\"price\":2.0,\"startDate\":\"2020-05-01T22:56:04Z\"}]");
+    }
+
+    @Test
+    void testGetHistoryIncorrectRequest() {
+        assertError(webTestClient.get().uri("/api/stocks/1/history?from=2020-05-02T00:00:00Z&to=2020-05-01T00:00:00Z"),
+                HttpStatus.BAD_REQUEST, "Start of the range should not be after its end");
+        assertError(webTestClient.get().uri("/api/stocks/1/history?limit=0"),
+                HttpStatus.BAD_REQUEST, "History limit should be between 1 and 1000");
+        assertError(webTestClient.get().uri("/api/stocks/1/history?cursor=garbage"),
+                HttpStatus.BAD_REQUEST, "Incorrect history cursor: garbage");
+        assertError(webTestClient.get().uri("/api/stocks/3/history"),
+                HttpStatus.NOT_FOUND, "Stock with id 3 not found");
+    }
+
+    @Test
+    void testPostNewStock() {
+        post(newStock("   Stock3.H ", 0.23d)).exchange()
+                .expectStatus().isCreated()
+                .expectHeader().value("Location", location -> assertThat(location).endsWith("/api/stocks/3"))
+                .expectBody(String.class).isEqualTo("New stock was created");
+
+        webTestClient.get().uri("/api/stocks/3").exchange()
+                .expectStatus().isOk()
+                .expectBody().json("{\"id\":3,\"name\":\"Stock3.H\",\"currentPrice\":0.23}");
+        webTestClient.get().uri("/api/stocks/3/history").exchange()
+                .expectStatus().isOk()
+                .expectBody().jsonPath("$.length()").isEqualTo(1).jsonPath("$[0].price").isEqualTo(0.23d);
+    }
+
+    @Test
+    void testPostNewStockIncorrectRequest() {
+        assertError(post(newStock("Stock4.N", 0d)), HttpStatus.BAD_REQUEST, "Stock price should be greater than 0");
+        assertError(post(newStock("     ", 1.1d)), HttpStatus.BAD_REQUEST, "Stock name can't be empty");
+        assertError(post(newStock("Stock1.L", 1.1d)), HttpStatus.BAD_REQUEST, "Stock already exists with name: Stock1.L");
+    }
+
+    @Test
+    void testPutNewPrice() {
+        PriceUpdateRequest priceUpdateRequest = new PriceUpdateRequest();
+        priceUpdateRequest.setPrice(3.1);
+
+        put("/api/stocks/2", priceUpdateRequest).exchange()
+                .expectStatus().isOk()
+                .expectBody(String.class).isEqualTo("Stock price updated");
+
+        webTestClient.get().uri("/api/stocks/2").exchange()
+                .expectStatus().isOk()
+                .expectBody().json("{\"name\":\"Stock2.N\",\"currentPrice\":3.1}");
+        webTestClient.get().uri("/api/stocks/2/history").exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.length()").isEqualTo(2)
+                .jsonPath("$[0].price").isEqualTo(3.1)
+                .jsonPath("$[1].price").isEqualTo(1.92);
+    }
+
+    @Test
+    void testPutNewPriceIncorrectRequest() {
+        PriceUpdateRequest priceUpdateRequest = new PriceUpdateRequest();
+        priceUpdateRequest.setPrice(3d);
+        assertError(put("/api/stocks/3", priceUpdateRequest), HttpStatus.NOT_FOUND, "Stock with id 3 not found");
+
+        priceUpdateRequest.setPrice(-3d);
+        assertError(put("/api/stocks/1", priceUpdateRequest), HttpStatus.BAD_REQUEST, "Stock price should be greater than 0");
+
+        priceUpdateRequest.setPrice(null);
+        assertError(put("/api/stocks/1", priceUpdateRequest), HttpStatus.BAD_REQUEST, "Stock price should be greater than 0");
+    }
+
+    @Test
+    void testPutNewPrices() {
+        List<StockPriceUpdateRequest> priceUpdateRequests = Arrays.asList(
+                priceUpdate(1, 2.5), priceUpdate(2, 1.5), priceUpdate(1, 2.7));
+
+        put("/api/stocks/prices", priceUpdateRequests).exchange()
+                .expectStatus().isOk()
+                .expectBody(String.class).isEqualTo("Stock prices updated");
+
+        webTestClient.get().uri("/api/stocks").exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$[0].currentPrice").isEqualTo(2.7)
+                .jsonPath("$[1].currentPrice").isEqualTo(1.5);
+        webTestClient.get().uri("/api/stocks/1/history").exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.length()").isEqualTo(3)
+                .jsonPath("$[0].price").isEqualTo(2.7);
+    }
+
+    @Test
+    void testPutNewPricesIncorrectRequest() {
+        assertError(put("/api/stocks/prices", Arrays.asList(priceUpdate(1, 2.5), priceUpdate(3, 1.5))),
+                HttpStatus.NOT_FOUND, "Stock with id 3 not found");
+        webTestClient.get().uri("/api/stocks/1").exchange()
+                .expectBody().json("{\"currentPrice\":2.0}");
+
+        assertError(put("/api/stocks/prices", Collections.emptyList()),
+                HttpStatus.BAD_REQUEST, "Batch should contain from 1 to 10000 price updates");
+    }
+}
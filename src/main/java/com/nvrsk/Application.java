@@ -1,12 +1,15 @@
 package com.nvrsk;
 
+import com.nvrsk.journal.TickJournal;
 import com.nvrsk.model.PriceHistory;
 import com.nvrsk.model.Stock;
 import com.nvrsk.repository.PriceHistoryRepository;
 import com.nvrsk.repository.StockRepository;
+import com.nvrsk.seed.StockSeeder;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.context.annotation.Lazy;
 
 import javax.annotation.PostConstruct;
 import java.time.Instant;
@@ -15,6 +18,7 @@ import java.time.Month;
 import java.time.ZoneOffset;
 
 @SpringBootApplication
+@Lazy(false)
 public class Application {
 
     public static void main(String[] args) {
@@ -25,9 +29,22 @@ public class Application {
     private StockRepository stockRepository;
     @Autowired
     private PriceHistoryRepository priceHistoryRepository;
+    /**
+     * Journal (when it is enabled) is replayed before the stocks are prepared.
+     */
+    @Autowired(required = false)
+    private TickJournal tickJournal;
+    /**
+     * Stocks are loaded from the seed files instead when the seeder is enabled.
+     */
+    @Autowired(required = false)
+    private StockSeeder stockSeeder;
 
     @PostConstruct
     void prepareStocks() {
+        if (stockSeeder != null || stockRepository.count() > 0) {
+            return;
+        }
         Instant stock1Update1 = LocalDateTime.of(2020, Month.MAY, 1, 21, 54, 3).toInstant(ZoneOffset.UTC);
         Instant stock1Update2 = LocalDateTime.of(2020, Month.MAY, 1, 22, 56, 4).toInstant(ZoneOffset.UTC);
 
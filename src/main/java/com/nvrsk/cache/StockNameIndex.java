@@ -0,0 +1,119 @@
+package com.nvrsk.cache;
+
+import com.nvrsk.event.StockUpdatedEvent;
+import com.nvrsk.model.StockInfo;
+import com.nvrsk.repository.StockRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.lang.NonNull;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * In-memory index of stock names to stock ids.
+ * It is loaded from the database on the first use and then kept up to date by {@link StockUpdatedEvent}s,
+ * stocks which are seeded in background are added by {@link #refresh()}.
+ * <p>
+ * Names of stocks which are being added are reserved until their transaction completes,
+ * so concurrent additions of the same name are rejected without a database round trip.
+ * The unique constraint on the stock name is still the final guard, e.g. for stocks inserted bypassing the services.
+ */
+@Component
+public class StockNameIndex {
+
+    private static final Long RESERVED = -1L;
+
+    private final ConcurrentMap<String, Long> ids = new ConcurrentHashMap<>();
+
+    private final StockRepository stockRepository;
+
+    private volatile boolean loaded;
+
+    @Autowired
+    public StockNameIndex(StockRepository stockRepository) {
+        this.stockRepository = stockRepository;
+    }
+
+    /**
+     * Returns id of stock with the given name.
+     *
+     * @param name - name of the stock.
+     * @return id of the stock or empty when there is no committed stock with such name.
+     */
+    @NonNull
+    public Optional<Long> findId(@NonNull String name) {
+        ensureLoaded();
+        Long id = ids.get(name);
+        return RESERVED.equals(id) ? Optional.empty() : Optional.ofNullable(id);
+    }
+
+    /**
+     * Reserves name for a new stock.
+     * When called within a transaction, the reservation is released if the transaction is rolled back.
+     *
+     * @param name - name of the new stock.
+     * @return {@code false} when there is a stock with such name or the name is already reserved.
+     */
+    public boolean reserve(@NonNull String name) {
+        ensureLoaded();
+        if (ids.putIfAbsent(name, RESERVED) != null) {
+            return false;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status != TransactionSynchronization.STATUS_COMMITTED) {
+                        ids.remove(name, RESERVED);
+                    }
+                }
+            });
+        }
+        return true;
+    }
+
+    /**
+     * Adds stocks which were inserted bypassing the services, e.g. by the seeder, when the index is already loaded.
+     */
+    public void refresh() {
+        synchronized (this) {
+            if (loaded) {
+                for (StockInfo stock : stockRepository.findAllInfo()) {
+                    ids.putIfAbsent(stock.getName(), stock.getId());
+                }
+            }
+        }
+    }
+
+    @TransactionalEventListener
+    public void onStockUpdated(@NonNull StockUpdatedEvent event) {
+        if (event.isNewStock()) {
+            StockInfo stock = event.getStock();
+            ids.put(stock.getName(), stock.getId());
+        }
+    }
+
+    public int size() {
+        return ids.size();
+    }
+
+    private void ensureLoaded() {
+        if (loaded) {
+            return;
+        }
+        synchronized (this) {
+            if (!loaded) {
+                for (StockInfo stock : stockRepository.findAllInfo()) {
+                    ids.putIfAbsent(stock.getName(), stock.getId());
+                }
+                loaded = true;
+            }
+        }
+    }
+}
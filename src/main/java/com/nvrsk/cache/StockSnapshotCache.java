@@ -0,0 +1,107 @@
+package com.nvrsk.cache;
+
+import com.nvrsk.event.StockUpdatedEvent;
+import com.nvrsk.model.StockInfo;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.lang.NonNull;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.Iterator;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free in-memory snapshot of the latest {@link StockInfo} of every stock, keyed by stock id.
+ * It is updated after every committed {@link StockUpdatedEvent}, so reads can be served without the database.
+ * <p>
+ * The snapshot holds at most {@code stocks.snapshot.max-size} stocks (0 disables it),
+ * when it is full an arbitrary stock is evicted and will be loaded again on the next miss.
+ */
+@Component
+public class StockSnapshotCache {
+
+    private final ConcurrentMap<Long, StockInfo> snapshots = new ConcurrentHashMap<>();
+
+    private final int maxSize;
+
+    private final LongAdder hits = new LongAdder();
+
+    private final LongAdder misses = new LongAdder();
+
+    private final LongAdder evictions = new LongAdder();
+
+    @Autowired
+    public StockSnapshotCache(@Value("${stocks.snapshot.max-size:100000}") int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Returns snapshot of the stock.
+     *
+     * @param id - id of stock to lookup.
+     * @return snapshot of the stock or empty if it is not cached.
+     */
+    @NonNull
+    public Optional<StockInfo> get(long id) {
+        StockInfo stock = snapshots.get(id);
+        if (stock == null) {
+            misses.increment();
+            return Optional.empty();
+        }
+        hits.increment();
+        return Optional.of(stock);
+    }
+
+    /**
+     * Caches snapshot of the stock unless the cached one is more recent.
+     *
+     * @param stock - snapshot of the stock.
+     */
+    public void put(@NonNull StockInfo stock) {
+        if (maxSize <= 0) {
+            return;
+        }
+        snapshots.merge(stock.getId(), stock, StockSnapshotCache::mostRecent);
+        evictOverflow(stock.getId());
+    }
+
+    @TransactionalEventListener
+    public void onStockUpdated(@NonNull StockUpdatedEvent event) {
+        put(event.getStock());
+    }
+
+    public int size() {
+        return snapshots.size();
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    private void evictOverflow(long keptId) {
+        Iterator<Long> ids = snapshots.keySet().iterator();
+        while (snapshots.size() > maxSize && ids.hasNext()) {
+            Long id = ids.next();
+            if (id != keptId && snapshots.remove(id) != null) {
+                evictions.increment();
+            }
+        }
+    }
+
+    @NonNull
+    private static StockInfo mostRecent(@NonNull StockInfo cached, @NonNull StockInfo stock) {
+        return stock.getLastUpdate().isBefore(cached.getLastUpdate()) ? cached : stock;
+    }
+}
@@ -0,0 +1,60 @@
+package com.nvrsk.candle;
+
+import com.nvrsk.exception.IncorrectRequestException;
+import org.springframework.lang.NonNull;
+
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * Supported candle intervals, buckets are aligned to the epoch (UTC).
+ */
+public enum CandleInterval {
+
+    ONE_MINUTE("1m", Duration.ofMinutes(1)),
+    FIVE_MINUTES("5m", Duration.ofMinutes(5)),
+    ONE_HOUR("1h", Duration.ofHours(1)),
+    ONE_DAY("1d", Duration.ofDays(1));
+
+    private final String code;
+
+    private final long seconds;
+
+    CandleInterval(String code, Duration duration) {
+        this.code = code;
+        this.seconds = duration.getSeconds();
+    }
+
+    public String getCode() {
+        return code;
+    }
+
+    public long getSeconds() {
+        return seconds;
+    }
+
+    /**
+     * @param time - any moment.
+     * @return epoch second of the start of the bucket which contains the moment.
+     */
+    long bucketOf(@NonNull Instant time) {
+        return Math.floorDiv(time.getEpochSecond(), seconds) * seconds;
+    }
+
+    /**
+     * Parses interval code, e.g. {@code 5m}.
+     *
+     * @param code - interval code.
+     * @return interval.
+     * @throws IncorrectRequestException when there is no such interval.
+     */
+    @NonNull
+    public static CandleInterval of(@NonNull String code) {
+        for (CandleInterval interval : values()) {
+            if (interval.code.equals(code)) {
+                return interval;
+            }
+        }
+        throw new IncorrectRequestException("Unsupported candle interval: " + code);
+    }
+}
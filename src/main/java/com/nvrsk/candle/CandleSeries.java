@@ -0,0 +1,123 @@
+package com.nvrsk.candle;
+
+import com.nvrsk.model.Candle;
+import org.springframework.lang.NonNull;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+
+/**
+ * Candles of a single stock for all {@link CandleInterval}s, updated tick by tick.
+ * Every interval keeps at most {@code maxBuckets} latest buckets.
+ */
+final class CandleSeries {
+
+    private final int maxBuckets;
+
+    private Map<CandleInterval, NavigableMap<Long, Bucket>> buckets = newBuckets();
+
+    private boolean loaded;
+
+    private Instant loadedUpTo;
+
+    CandleSeries(int maxBuckets) {
+        this.maxBuckets = maxBuckets;
+    }
+
+    /**
+     * Loads existing ticks once, before the series is used.
+     * Ticks are aggregated into separate buckets which replace the empty ones only when loading succeeds,
+     * so a failed load leaves nothing behind and can be retried.
+     *
+     * @param history - source of existing ticks, which feeds them to the given consumer.
+     */
+    synchronized void ensureLoaded(@NonNull Consumer<TickConsumer> history) {
+        if (loaded) {
+            return;
+        }
+        Map<CandleInterval, NavigableMap<Long, Bucket>> loadedBuckets = newBuckets();
+        history.accept((price, time) -> add(loadedBuckets, price, time));
+        // the latest tick is in the latest bucket of any interval
+        Map.Entry<Long, Bucket> latest = loadedBuckets.values().iterator().next().lastEntry();
+        buckets = loadedBuckets;
+        loadedUpTo = latest == null ? null : latest.getValue().closeTime;
+        loaded = true;
+    }
+
+    /**
+     * Applies a live tick. Ticks which arrive before the series is loaded, or which were already loaded, are skipped.
+     */
+    synchronized void addLive(double price, @NonNull Instant time) {
+        if (loaded && (loadedUpTo == null || time.isAfter(loadedUpTo))) {
+            add(buckets, price, time);
+        }
+    }
+
+    synchronized List<Candle> get(@NonNull CandleInterval interval, @NonNull Instant from, @NonNull Instant to) {
+        List<Candle> candles = new ArrayList<>();
+        for (Map.Entry<Long, Bucket> bucket : buckets.get(interval)
+                .subMap(interval.bucketOf(from), true, interval.bucketOf(to), true).entrySet()) {
+            candles.add(bucket.getValue().toCandle(Instant.ofEpochSecond(bucket.getKey())));
+        }
+        return candles;
+    }
+
+    private void add(@NonNull Map<CandleInterval, NavigableMap<Long, Bucket>> buckets, double price, @NonNull Instant time) {
+        for (Map.Entry<CandleInterval, NavigableMap<Long, Bucket>> intervalBuckets : buckets.entrySet()) {
+            NavigableMap<Long, Bucket> series = intervalBuckets.getValue();
+            series.computeIfAbsent(intervalBuckets.getKey().bucketOf(time), start -> new Bucket()).add(price, time);
+            while (series.size() > maxBuckets) {
+                series.pollFirstEntry();
+            }
+        }
+    }
+
+    @NonNull
+    private static Map<CandleInterval, NavigableMap<Long, Bucket>> newBuckets() {
+        Map<CandleInterval, NavigableMap<Long, Bucket>> buckets = new EnumMap<>(CandleInterval.class);
+        for (CandleInterval interval : CandleInterval.values()) {
+            buckets.put(interval, new TreeMap<>());
+        }
+        return buckets;
+    }
+
+    @FunctionalInterface
+    interface TickConsumer {
+        void accept(double price, Instant time);
+    }
+
+    private static final class Bucket {
+
+        private double open;
+        private Instant openTime;
+        private double high = Double.NEGATIVE_INFINITY;
+        private double low = Double.POSITIVE_INFINITY;
+        private double close;
+        private Instant closeTime;
+        private long ticks;
+
+        void add(double price, @NonNull Instant time) {
+            if (openTime == null || time.isBefore(openTime)) {
+                open = price;
+                openTime = time;
+            }
+            if (closeTime == null || !time.isBefore(closeTime)) {
+                close = price;
+                closeTime = time;
+            }
+            high = Math.max(high, price);
+            low = Math.min(low, price);
+            ticks++;
+        }
+
+        Candle toCandle(@NonNull Instant startDate) {
+            return new Candle(startDate, open, high, low, close, ticks);
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package com.nvrsk.candle;
+
+import com.nvrsk.event.StockUpdatedEvent;
+import com.nvrsk.exception.HistoryNotFlushedException;
+import com.nvrsk.exception.IncorrectRequestException;
+import com.nvrsk.exception.SeedingInProgressException;
+import com.nvrsk.model.Candle;
+import com.nvrsk.model.StockInfo;
+import com.nvrsk.service.PriceHistoryService;
+import com.nvrsk.history.PriceHistoryWriteBehind;
+import com.nvrsk.seed.StockSeeder;
+import com.sun.istack.Nullable;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.lang.NonNull;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Instant;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Service to serve open/high/low/close {@link Candle}s of stocks.
+ * <p>
+ * Candles of a stock are backfilled from its price history on the first request,
+ * after that they are updated incrementally by every committed {@link StockUpdatedEvent}.
+ * Candles aren't backfilled while {@link StockSeeder} loads history in background, since seeded ticks have no events.
+ * Every interval of a stock keeps at most {@code stocks.candles.max-buckets} latest candles.
+ */
+@Service
+public class CandleService {
+
+    /**
+     * Number of candles which are returned when client doesn't specify the start of the range.
+     */
+    public static final int DEFAULT_CANDLES = 500;
+
+    private static final long WRITE_BEHIND_FLUSH_TIMEOUT_MILLIS = 5_000;
+
+    private final ConcurrentMap<Long, CandleSeries> series = new ConcurrentHashMap<>();
+
+    private final int maxBuckets;
+
+    @Autowired
+    private PriceHistoryService priceHistoryService;
+
+    @Autowired(required = false)
+    private PriceHistoryWriteBehind priceHistoryWriteBehind;
+
+    @Autowired(required = false)
+    private StockSeeder stockSeeder;
+
+    @Autowired
+    public CandleService(@Value("${stocks.candles.max-buckets:10000}") int maxBuckets) {
+        this.maxBuckets = maxBuckets;
+    }
+
+    /**
+     * Returns candles of the stock which start within the given range, in chronological order.
+     *
+     * @param stockId  - id of the stock, it should exist.
+     * @param interval - candle interval code, see {@link CandleInterval}.
+     * @param from     - start of the range or {@code null} to return {@link #DEFAULT_CANDLES} latest candles.
+     * @param to       - end of the range or {@code null} to use the current moment.
+     * @return candles of the stock.
+     * @throws IncorrectRequestException when interval is unknown or the range is empty.
+     * @throws HistoryNotFlushedException when candles are loaded the first time and queued history isn't written in time.
+     * @throws SeedingInProgressException when candles are loaded the first time while the seeder still loads history.
+     */
+    @NonNull
+    public List<Candle> getCandles(long stockId, @NonNull String interval, @Nullable Instant from, @Nullable Instant to) {
+        CandleInterval candleInterval = CandleInterval.of(interval);
+        Instant end = to == null ? Instant.now() : to;
+        Instant start = from == null ? end.minusSeconds(candleInterval.getSeconds() * (DEFAULT_CANDLES - 1)) : from;
+        if (start.isAfter(end)) {
+            throw new IncorrectRequestException("Start of the range should not be after its end");
+        }
+        CandleSeries stockSeries = series.computeIfAbsent(stockId, id -> new CandleSeries(maxBuckets));
+        stockSeries.ensureLoaded(consumer -> backfill(stockId, consumer));
+        return stockSeries.get(candleInterval, start, end);
+    }
+
+    @TransactionalEventListener
+    public void onStockUpdated(@NonNull StockUpdatedEvent event) {
+        StockInfo stock = event.getStock();
+        CandleSeries stockSeries = series.get(stock.getId());
+        if (stockSeries != null) {
+            stockSeries.addLive(stock.getCurrentPrice(), stock.getLastUpdate());
+        }
+    }
+
+    /**
+     * @return number of stocks which have their candles kept in memory.
+     */
+    public int getSeriesCount() {
+        return series.size();
+    }
+
+    private void backfill(long stockId, @NonNull CandleSeries.TickConsumer consumer) {
+        if (stockSeeder != null && stockSeeder.isInProgress()) {
+            // seeded ticks don't produce events, so candles backfilled from a part of the history would stay incomplete
+            throw new SeedingInProgressException("Price history of stock " + stockId + " is still being loaded");
+        }
+        if (priceHistoryWriteBehind != null) {
+            // live ticks are skipped until the series is loaded, so the ones still queued can't be left out
+            boolean flushed;
+            try {
+                flushed = priceHistoryWriteBehind.awaitFlushed(WRITE_BEHIND_FLUSH_TIMEOUT_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                flushed = false;
+            }
+            if (!flushed) {
+                throw new HistoryNotFlushedException("Price history of stock " + stockId + " is not written yet");
+            }
+        }
+        priceHistoryService.exportHistory(Collections.singletonList(stockId),
+                tick -> consumer.accept(tick.getPrice(), tick.getStartDate()));
+    }
+}
@@ -0,0 +1,60 @@
+package com.nvrsk.config;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.nvrsk.export.HistoryColumnsHttpMessageConverter;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+import org.springframework.lang.NonNull;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.util.List;
+
+/**
+ * Binary encodings of response bodies, selected by {@code Accept: application/cbor} or {@code Accept: application/x-jackson-smile},
+ * plus {@link HistoryColumnsHttpMessageConverter} for price history pages.
+ * JSON stays the default, since the converters replace the default CBOR and Smile ones which come after the JSON converter,
+ * and the history converter is added after all of them.
+ * <p>
+ * Binary mappers are configured like the JSON one, but write dates as numbers instead of ISO strings:
+ * an {@link java.time.Instant} is a decimal number of seconds with nanoseconds as its fraction.
+ */
+@Configuration
+public class BinaryFormatsConfiguration implements WebMvcConfigurer {
+
+    @Bean
+    MappingJackson2CborHttpMessageConverter cborHttpMessageConverter(Jackson2ObjectMapperBuilder builder) {
+        return new MappingJackson2CborHttpMessageConverter(binaryObjectMapper(builder, new CBORFactory()));
+    }
+
+    @Bean
+    MappingJackson2SmileHttpMessageConverter smileHttpMessageConverter(Jackson2ObjectMapperBuilder builder) {
+        return new MappingJackson2SmileHttpMessageConverter(binaryObjectMapper(builder, new SmileFactory()));
+    }
+
+    @Override
+    public void extendMessageConverters(@NonNull List<HttpMessageConverter<?>> converters) {
+        converters.add(new HistoryColumnsHttpMessageConverter());
+    }
+
+    /**
+     * Creates object mapper for a binary format.
+     *
+     * @param builder - builder of the JSON object mapper, it is changed by the call.
+     * @param factory - factory of the binary format.
+     * @return object mapper which writes the binary format.
+     */
+    @NonNull
+    public static ObjectMapper binaryObjectMapper(@NonNull Jackson2ObjectMapperBuilder builder, @NonNull JsonFactory factory) {
+        return builder.factory(factory)
+                .featuresToEnable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+                .build();
+    }
+}
@@ -0,0 +1,107 @@
+package com.nvrsk.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.task.TaskExecutionAutoConfiguration;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Condition;
+import org.springframework.context.annotation.ConditionContext;
+import org.springframework.context.annotation.Conditional;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.support.TaskExecutorAdapter;
+import org.springframework.core.type.AnnotatedTypeMetadata;
+import org.springframework.lang.NonNull;
+import org.springframework.scheduling.annotation.AsyncAnnotationBeanPostProcessor;
+
+import javax.annotation.PostConstruct;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Runs request handling (and so {@link com.nvrsk.service.StockService} calls) and asynchronous requests on virtual threads,
+ * so a request blocked on JDBC doesn't hold a platform thread from a bounded pool.
+ * <p>
+ * Enabled with {@code virtual-threads} profile. The application is still built for Java 8,
+ * virtual threads are looked up reflectively and used only on Java 21 or later, on older runtimes the profile has no effect.
+ * JDBC calls still wait for one of the pooled connections, virtual threads only remove the request thread limit.
+ */
+@Configuration
+@Profile(VirtualThreadsConfiguration.PROFILE)
+public class VirtualThreadsConfiguration {
+
+    public static final String PROFILE = "virtual-threads";
+
+    private static final Logger LOG = LoggerFactory.getLogger(VirtualThreadsConfiguration.class);
+
+    private static final String EXECUTOR_FACTORY_METHOD = "newVirtualThreadPerTaskExecutor";
+
+    @PostConstruct
+    void checkSupport() {
+        if (!isSupported()) {
+            LOG.warn("Virtual threads require Java 21 or later, requests are handled on platform threads on Java {}",
+                    System.getProperty("java.version"));
+        }
+    }
+
+    /**
+     * @return {@code true} when the runtime supports virtual threads.
+     */
+    public static boolean isSupported() {
+        try {
+            Executors.class.getMethod(EXECUTOR_FACTORY_METHOD);
+            return true;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Creates executor which starts a new virtual thread for each task.
+     *
+     * @return executor.
+     * @throws IllegalStateException when the runtime doesn't support virtual threads.
+     */
+    @NonNull
+    static ExecutorService newVirtualThreadExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod(EXECUTOR_FACTORY_METHOD).invoke(null);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Virtual threads aren't supported on Java " + System.getProperty("java.version"), e);
+        }
+    }
+
+    @Configuration
+    @Conditional(VirtualThreadsSupported.class)
+    static class VirtualThreadExecutors {
+
+        @Bean(destroyMethod = "shutdown")
+        ExecutorService virtualThreadExecutor() {
+            return newVirtualThreadExecutor();
+        }
+
+        @Bean
+        TomcatProtocolHandlerCustomizer<?> virtualThreadProtocolHandlerCustomizer(ExecutorService virtualThreadExecutor) {
+            return protocolHandler -> protocolHandler.setExecutor(virtualThreadExecutor);
+        }
+
+        /**
+         * Replaces the default thread pool of asynchronous requests, e.g. price streams and history exports.
+         */
+        @Bean(name = {TaskExecutionAutoConfiguration.APPLICATION_TASK_EXECUTOR_BEAN_NAME,
+                AsyncAnnotationBeanPostProcessor.DEFAULT_TASK_EXECUTOR_BEAN_NAME})
+        AsyncTaskExecutor applicationTaskExecutor(ExecutorService virtualThreadExecutor) {
+            return new TaskExecutorAdapter(virtualThreadExecutor);
+        }
+    }
+
+    static class VirtualThreadsSupported implements Condition {
+
+        @Override
+        public boolean matches(@NonNull ConditionContext context, @NonNull AnnotatedTypeMetadata metadata) {
+            return isSupported();
+        }
+    }
+}
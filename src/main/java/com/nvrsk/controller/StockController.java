@@ -1,18 +1,41 @@
 package com.nvrsk.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nvrsk.export.HistoryExportFormat;
+import com.nvrsk.model.Candle;
+import com.nvrsk.model.HistoryPage;
+import com.nvrsk.model.NewStockResult;
 import com.nvrsk.model.PriceHistory;
+import com.nvrsk.model.PriceStats;
 import com.nvrsk.model.Stock;
+import com.nvrsk.model.StockInfo;
+import com.nvrsk.model.StockListVersion;
 import com.nvrsk.request.NewStockRequest;
 import com.nvrsk.request.PriceUpdateRequest;
+import com.nvrsk.request.StockPriceUpdateRequest;
+import com.nvrsk.service.PriceHistoryService;
 import com.nvrsk.service.StockService;
+import com.nvrsk.stream.PriceStreamService;
+import com.sun.istack.Nullable;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.lang.NonNull;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
+import javax.servlet.http.HttpServletResponse;
 import java.net.URI;
+import java.time.Instant;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
 
 /**
  * Main Stocks REST controller
@@ -21,25 +44,119 @@ import java.util.Collection;
 @RequestMapping("/api/stocks")
 public class StockController {
 
+    /**
+     * Response header with cursor of the next history page.
+     */
+    public static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
     @Autowired
     private StockService stockService;
 
+    @Autowired
+    private PriceHistoryService priceHistoryService;
+
+    @Autowired
+    private PriceStreamService priceStreamService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    /**
+     * Lists all stocks, answers {@code 304 Not Modified} without loading them when the client's copy is up to date.
+     * The list has no Last-Modified: a new or restored stock may be older than the latest update, so only the ETag changes.
+     */
     @GetMapping
-    @NonNull
-    public Collection<Stock> getStocks() {
+    public Collection<StockInfo> getStocks(ServletWebRequest request) {
+        StockListVersion version = stockService.getStockListVersion();
+        String etag = version.getCount() + "-" + version.getVersionSum() + "-" + timestampTag(version.getLastUpdate());
+        if (checkNotModified(request, etag, null)) {
+            return null;
+        }
         return stockService.getAllStocks();
     }
 
-    @GetMapping("/{id}")
+    /**
+     * Streams current state and then every committed update of the requested stocks as Server-Sent Events.
+     */
+    @GetMapping(path = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
     @NonNull
-    public Stock getStock(@PathVariable long id) {
-        return stockService.lookupStock(id);
+    public SseEmitter streamPrices(@RequestParam(required = false) List<Long> ids) {
+        List<Long> stockIds = ids == null ? Collections.emptyList() : ids;
+        return priceStreamService.subscribe(stockIds, () -> stockIds.isEmpty()
+                ? stockService.getAllStocks()
+                : stockIds.stream().map(stockService::lookupStock).collect(Collectors.toList()));
     }
 
+    @GetMapping("/{id}")
+    public StockInfo getStock(@PathVariable long id, ServletWebRequest request) {
+        StockInfo stock = stockService.lookupStock(id);
+        if (checkNotModified(request, timestampTag(stock.getLastUpdate()), stock.getLastUpdate())) {
+            return null;
+        }
+        return stock;
+    }
+
+    /**
+     * Returns a page of price history, answers {@code 304 Not Modified} without loading it
+     * when the stock wasn't updated since the client's copy.
+     */
     @GetMapping("/{id}/history")
+    public ResponseEntity<Collection<PriceHistory>> getHistory(@PathVariable long id,
+                                                               @RequestParam(required = false) Integer limit,
+                                                               @RequestParam(required = false) String cursor,
+                                                               @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant from,
+                                                               @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant to,
+                                                               ServletWebRequest request) {
+        Instant lastModified = stockService.getHistoryLastModified(id).orElse(null);
+        if (lastModified == null) {
+            varyByAccept(request);
+        } else if (checkNotModified(request, timestampTag(lastModified), lastModified)) {
+            return null;
+        }
+        HistoryPage page = stockService.getHistory(id, cursor, limit, from, to);
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (page.getNextCursor() != null) {
+            response.header(NEXT_CURSOR_HEADER, page.getNextCursor());
+        }
+        return response.body(page.getItems());
+    }
+
+    @GetMapping("/{id}/price")
     @NonNull
-    public Collection<PriceHistory> getHistory(@PathVariable long id) {
-        return getStock(id).getHistory();
+    public PriceHistory getPrice(@PathVariable long id,
+                                 @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant at) {
+        return stockService.getPriceAt(id, at);
+    }
+
+    @GetMapping("/{id}/candles")
+    @NonNull
+    public List<Candle> getCandles(@PathVariable long id,
+                                   @RequestParam(defaultValue = "1m") String interval,
+                                   @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant from,
+                                   @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant to) {
+        return stockService.getCandles(id, interval, from, to);
+    }
+
+    @GetMapping("/{id}/stats")
+    @NonNull
+    public PriceStats getStats(@PathVariable long id, @RequestParam(defaultValue = "5m") String window) {
+        return stockService.getStats(id, window);
+    }
+
+    /**
+     * Streams price history of the requested stocks (all stocks by default) as NDJSON or CSV.
+     */
+    @GetMapping("/history/export")
+    @NonNull
+    public ResponseEntity<StreamingResponseBody> exportHistory(@RequestParam(defaultValue = "ndjson") String format,
+                                                               @RequestParam(required = false) List<Long> ids) {
+        HistoryExportFormat exportFormat = HistoryExportFormat.of(format);
+        List<Long> stockIds = ids == null ? Collections.emptyList() : ids;
+        StreamingResponseBody body = output -> exportFormat.write(output, objectMapper,
+                consumer -> priceHistoryService.exportHistory(stockIds, consumer));
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(exportFormat.getContentType()))
+                .body(body);
     }
 
     @PutMapping("/{id}")
@@ -50,6 +167,14 @@ public class StockController {
         return ResponseEntity.ok("Stock price updated");
     }
 
+    @PutMapping("/prices")
+    @ResponseBody
+    @NonNull
+    public ResponseEntity<?> updatePrices(@RequestBody @NonNull List<StockPriceUpdateRequest> priceUpdateRequests) {
+        stockService.updateStockPrices(priceUpdateRequests);
+        return ResponseEntity.ok("Stock prices updated");
+    }
+
     @PostMapping
     @ResponseBody
     @NonNull
@@ -60,4 +185,42 @@ public class StockController {
         return ResponseEntity.created(newStockLocation).body("New stock was created");
     }
 
+    /**
+     * Adds many stocks at once, a stock which fails validation is reported in its result without failing the others.
+     */
+    @PostMapping("/batch")
+    @NonNull
+    public List<NewStockResult> addStocks(@RequestBody @NonNull List<NewStockRequest> newStockRequests) {
+        return stockService.addNewStocks(newStockRequests);
+    }
+
+    /**
+     * Checks conditional request headers against validators of the resource and sets the validators on the response.
+     * ETags are weak, since the same state may be encoded differently depending on the request headers.
+     * Validators are the same for every negotiated representation, so the response varies by {@code Accept}.
+     * Last-Modified has a precision of seconds, so clients which revalidate with {@code If-None-Match} see updates sooner.
+     *
+     * @param request      - current request.
+     * @param tag          - opaque tag of the resource state.
+     * @param lastModified - moment of the last change of the resource or {@code null} when it is unknown.
+     * @return {@code true} when the response is already complete as {@code 304 Not Modified}.
+     */
+    private static boolean checkNotModified(@NonNull ServletWebRequest request, @NonNull String tag, @Nullable Instant lastModified) {
+        varyByAccept(request);
+        return request.checkNotModified("W/\"" + tag + "\"", lastModified == null ? -1 : lastModified.toEpochMilli());
+    }
+
+    /**
+     * Tells shared caches that a response stored for one {@code Accept} header can't be used for another one.
+     */
+    private static void varyByAccept(@NonNull ServletWebRequest request) {
+        HttpServletResponse response = request.getResponse();
+        if (response != null) {
+            response.addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT);
+        }
+    }
+
+    private static String timestampTag(@Nullable Instant timestamp) {
+        return timestamp == null ? "0" : timestamp.getEpochSecond() + "." + timestamp.getNano();
+    }
 }
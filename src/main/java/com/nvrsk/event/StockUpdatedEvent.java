@@ -0,0 +1,42 @@
+package com.nvrsk.event;
+
+import com.nvrsk.model.Stock;
+import com.nvrsk.model.StockInfo;
+
+/**
+ * Event which is published whenever a {@link Stock} is added or gets a new price.
+ * Listeners which keep derived state should listen to it after the transaction commit.
+ */
+public class StockUpdatedEvent {
+
+    private final StockInfo stock;
+
+    private final boolean newStock;
+
+    public StockUpdatedEvent(StockInfo stock, boolean newStock) {
+        this.stock = stock;
+        this.newStock = newStock;
+    }
+
+    /**
+     * @return state of the stock right after the update.
+     */
+    public StockInfo getStock() {
+        return stock;
+    }
+
+    /**
+     * @return {@code true} when the stock was added by this update.
+     */
+    public boolean isNewStock() {
+        return newStock;
+    }
+
+    @Override
+    public String toString() {
+        return "StockUpdatedEvent{" +
+                "stock=" + stock +
+                ", newStock=" + newStock +
+                '}';
+    }
+}
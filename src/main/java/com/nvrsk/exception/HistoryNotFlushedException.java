@@ -0,0 +1,16 @@
+package com.nvrsk.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * Custom exception which will be thrown when price history which is still queued for writing
+ * is needed to serve the request, but it wasn't written in time.
+ */
+@ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+public class HistoryNotFlushedException extends RuntimeException {
+
+    public HistoryNotFlushedException(String message) {
+        super(message);
+    }
+}
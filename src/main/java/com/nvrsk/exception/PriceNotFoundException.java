@@ -0,0 +1,15 @@
+package com.nvrsk.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * Custom exception which will be thrown when stock had no price at the requested moment.
+ */
+@ResponseStatus(HttpStatus.NOT_FOUND)
+public class PriceNotFoundException extends RuntimeException {
+
+    public PriceNotFoundException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,16 @@
+package com.nvrsk.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * Custom exception which will be thrown when the whole price history of a stock is needed to serve the request,
+ * but the history is still being loaded by the seeder.
+ */
+@ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+public class SeedingInProgressException extends RuntimeException {
+
+    public SeedingInProgressException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,142 @@
+package com.nvrsk.export;
+
+import com.nvrsk.model.PriceHistory;
+import com.sun.istack.Nullable;
+import org.springframework.core.ResolvableType;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractGenericHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.lang.NonNull;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Type;
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Writes a page of price history as two columns: start dates, delta-encoded as variable-length integers, then prices.
+ * A record takes 11-13 bytes instead of about 50 bytes of JSON, and the columns compress well.
+ * <p>
+ * The body is the number of records as a varint, then for each record the zigzag varint difference of its start date
+ * epoch seconds from the previous record (from zero for the first one) and the varint nanoseconds of the start date,
+ * then for each record its price as an 8-byte IEEE 754 double, all in the order of the page.
+ * Only written for {@code Accept: application/x-price-history}, see {@link #read(InputStream)} for decoding.
+ */
+public class HistoryColumnsHttpMessageConverter extends AbstractGenericHttpMessageConverter<Collection<PriceHistory>> {
+
+    public static final MediaType MEDIA_TYPE = MediaType.parseMediaType("application/x-price-history");
+
+    private static final int MAX_VAR_LONG_BYTES = 10;
+
+    private static final int MAX_RECORD_BYTES = MAX_VAR_LONG_BYTES * 2 + Double.BYTES;
+
+    public HistoryColumnsHttpMessageConverter() {
+        super(MEDIA_TYPE);
+    }
+
+    @Override
+    protected boolean supports(@NonNull Class<?> clazz) {
+        return Collection.class.isAssignableFrom(clazz);
+    }
+
+    @Override
+    public boolean canRead(@NonNull Type type, @Nullable Class<?> contextClass, @Nullable MediaType mediaType) {
+        return false;
+    }
+
+    @Override
+    public boolean canWrite(@Nullable Type type, @NonNull Class<?> clazz, @Nullable MediaType mediaType) {
+        if (!supports(clazz) || !canWrite(mediaType)) {
+            return false;
+        }
+        Class<?> element = ResolvableType.forType(type == null ? clazz : type).asCollection().resolveGeneric(0);
+        return element != null && PriceHistory.class.isAssignableFrom(element);
+    }
+
+    @Override
+    protected void writeInternal(@NonNull Collection<PriceHistory> history, @Nullable Type type,
+                                 @NonNull HttpOutputMessage outputMessage) throws IOException {
+        // the body is encoded into one array, since writing it byte by byte to a stream costs more than the encoding
+        ByteBuffer body = ByteBuffer.allocate(MAX_VAR_LONG_BYTES + history.size() * MAX_RECORD_BYTES);
+        putVarLong(body, history.size());
+        long previousSeconds = 0;
+        for (PriceHistory record : history) {
+            long seconds = record.getStartDate().getEpochSecond();
+            long delta = seconds - previousSeconds;
+            putVarLong(body, delta << 1 ^ delta >> 63);
+            putVarLong(body, record.getStartDate().getNano());
+            previousSeconds = seconds;
+        }
+        for (PriceHistory record : history) {
+            body.putDouble(record.getPrice());
+        }
+        outputMessage.getBody().write(body.array(), 0, body.position());
+    }
+
+    @Override
+    @NonNull
+    protected Collection<PriceHistory> readInternal(@NonNull Class<? extends Collection<PriceHistory>> clazz,
+                                                    @NonNull HttpInputMessage inputMessage) {
+        throw new HttpMessageNotReadableException("Price history columns can't be read", inputMessage);
+    }
+
+    @Override
+    @NonNull
+    public Collection<PriceHistory> read(@NonNull Type type, @Nullable Class<?> contextClass,
+                                         @NonNull HttpInputMessage inputMessage) {
+        throw new HttpMessageNotReadableException("Price history columns can't be read", inputMessage);
+    }
+
+    /**
+     * Decodes price history written by the converter.
+     *
+     * @param input - body of the response.
+     * @return price history records in the order of the page.
+     * @throws IOException when the body can't be read or is truncated.
+     */
+    @NonNull
+    public static List<PriceHistory> read(@NonNull InputStream input) throws IOException {
+        DataInputStream dataInput = new DataInputStream(input);
+        int size = Math.toIntExact(readVarLong(dataInput));
+        List<PriceHistory> history = new ArrayList<>(size);
+        long seconds = 0;
+        for (int i = 0; i < size; i++) {
+            long zigzag = readVarLong(dataInput);
+            seconds += zigzag >>> 1 ^ -(zigzag & 1);
+            PriceHistory record = new PriceHistory();
+            record.setStartDate(Instant.ofEpochSecond(seconds, readVarLong(dataInput)));
+            history.add(record);
+        }
+        for (PriceHistory record : history) {
+            record.setPrice(dataInput.readDouble());
+        }
+        return history;
+    }
+
+    private static void putVarLong(ByteBuffer buffer, long value) {
+        while ((value & ~0x7FL) != 0) {
+            buffer.put((byte) (value & 0x7F | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    private static long readVarLong(DataInputStream input) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < Long.SIZE; shift += 7) {
+            byte b = input.readByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed variable-length integer");
+    }
+}
@@ -0,0 +1,109 @@
+package com.nvrsk.export;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import com.nvrsk.exception.IncorrectRequestException;
+import com.nvrsk.model.PriceTick;
+import org.springframework.lang.NonNull;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.function.Consumer;
+
+/**
+ * Formats of the price history export.
+ * Each format writes ticks one by one, so nothing but the current tick is kept in memory.
+ */
+public enum HistoryExportFormat {
+
+    /**
+     * Newline delimited json, one {@link PriceTick} object per line.
+     */
+    NDJSON("application/x-ndjson") {
+        @Override
+        public void write(@NonNull OutputStream output, @NonNull ObjectMapper objectMapper,
+                          @NonNull Consumer<Consumer<PriceTick>> ticks) throws IOException {
+            try (SequenceWriter writer = objectMapper.writerFor(PriceTick.class)
+                    .without(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+                    .withRootValueSeparator("\n")
+                    .writeValues(output)) {
+                ticks.accept(tick -> {
+                    try {
+                        writer.write(tick);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+                output.write('\n');
+            }
+        }
+    },
+
+    /**
+     * Comma separated values with {@code stockId,price,startDate} header.
+     */
+    CSV("text/csv") {
+        @Override
+        public void write(@NonNull OutputStream output, @NonNull ObjectMapper objectMapper,
+                          @NonNull Consumer<Consumer<PriceTick>> ticks) throws IOException {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8));
+            writer.write("stockId,price,startDate\n");
+            ticks.accept(tick -> {
+                try {
+                    writer.write(Long.toString(tick.getStockId()));
+                    writer.write(',');
+                    writer.write(Double.toString(tick.getPrice()));
+                    writer.write(',');
+                    writer.write(tick.getStartDate().toString());
+                    writer.write('\n');
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            writer.flush();
+        }
+    };
+
+    private final String contentType;
+
+    HistoryExportFormat(String contentType) {
+        this.contentType = contentType;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    /**
+     * Writes ticks to the output.
+     *
+     * @param output       - output to write to, it is left open.
+     * @param objectMapper - mapper to write json with.
+     * @param ticks        - source of ticks, which feeds all the ticks to the given consumer.
+     */
+    public abstract void write(@NonNull OutputStream output, @NonNull ObjectMapper objectMapper,
+                               @NonNull Consumer<Consumer<PriceTick>> ticks) throws IOException;
+
+    /**
+     * Parses format name ignoring case.
+     *
+     * @param name - format name.
+     * @return format.
+     * @throws IncorrectRequestException when there is no such format.
+     */
+    @NonNull
+    public static HistoryExportFormat of(@NonNull String name) {
+        for (HistoryExportFormat format : values()) {
+            if (format.name().equalsIgnoreCase(name)) {
+                return format;
+            }
+        }
+        throw new IncorrectRequestException("Unsupported export format: " + name);
+    }
+}
@@ -0,0 +1,138 @@
+package com.nvrsk.history;
+
+import com.nvrsk.model.PriceHistory;
+import com.nvrsk.model.PriceTick;
+import com.nvrsk.repository.PriceHistoryRepository;
+import com.sun.istack.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.lang.NonNull;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * {@link PriceHistoryStore} which keeps history in memory in primitive columns, see {@link TickColumns}.
+ * A tick takes 24 bytes, chunks are allocated off-heap unless {@code stocks.history.columnar.off-heap=false}.
+ * <p>
+ * History which is already in {@link PriceHistory} table is loaded on startup, new ticks aren't written to the table.
+ * The store is created eagerly even with lazy initialization, since the history is loaded once all singletons are created.
+ * Enabled with {@code stocks.history.store=columnar}.
+ */
+@Component
+@Lazy(false)
+@ConditionalOnProperty(name = "stocks.history.store", havingValue = "columnar")
+public class ColumnarPriceHistoryStore implements PriceHistoryStore, SmartInitializingSingleton {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ColumnarPriceHistoryStore.class);
+
+    private final ConcurrentMap<Long, TickColumns> columns = new ConcurrentHashMap<>();
+
+    private final boolean offHeap;
+
+    @Autowired
+    private PriceHistoryRepository priceHistoryRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    public ColumnarPriceHistoryStore(@Value("${stocks.history.columnar.off-heap:true}") boolean offHeap) {
+        this.offHeap = offHeap;
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.setReadOnly(true);
+        transactionTemplate.execute(status -> {
+            try (Stream<PriceTick> ticks = priceHistoryRepository.streamAll()) {
+                ticks.forEach(this::add);
+            }
+            return null;
+        });
+        LOG.info("Loaded price history of {} stocks into columnar store", columns.size());
+    }
+
+    @Override
+    public void append(@NonNull List<PriceTick> ticks) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            List<PriceTick> committedTicks = new ArrayList<>(ticks);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCommit() {
+                    committedTicks.forEach(ColumnarPriceHistoryStore.this::add);
+                }
+            });
+        } else {
+            ticks.forEach(this::add);
+        }
+    }
+
+    @NonNull
+    @Override
+    public List<PriceHistory> findPage(long stockId, @Nullable Instant beforeDate, long beforeId, @Nullable Instant from, int limit) {
+        TickColumns stockColumns = columns.get(stockId);
+        return stockColumns == null ? Collections.emptyList() : stockColumns.findPage(beforeDate, beforeId, from, limit);
+    }
+
+    @NonNull
+    @Override
+    public Optional<PriceHistory> findAt(long stockId, @NonNull Instant at) {
+        TickColumns stockColumns = columns.get(stockId);
+        return stockColumns == null ? Optional.empty() : Optional.ofNullable(stockColumns.findAt(at));
+    }
+
+    @Override
+    public void export(@NonNull Collection<Long> stockIds, @NonNull Consumer<PriceTick> consumer) {
+        List<Long> exportedIds = new ArrayList<>(stockIds.isEmpty() ? columns.keySet() : stockIds);
+        Collections.sort(exportedIds);
+        for (Long stockId : exportedIds) {
+            TickColumns stockColumns = columns.get(stockId);
+            if (stockColumns != null) {
+                stockColumns.export(consumer);
+            }
+        }
+    }
+
+    @NonNull
+    @Override
+    public Map<Long, Long> countByStock() {
+        Map<Long, Long> counts = new HashMap<>();
+        columns.forEach((stockId, stockColumns) -> counts.put(stockId, (long) stockColumns.size()));
+        return counts;
+    }
+
+    public long getTickCount() {
+        return columns.values().stream().mapToLong(TickColumns::size).sum();
+    }
+
+    public long getCapacityBytes() {
+        return columns.values().stream().mapToLong(TickColumns::capacityBytes).sum();
+    }
+
+    private void add(@NonNull PriceTick tick) {
+        columns.computeIfAbsent(tick.getStockId(), id -> new TickColumns(id, offHeap))
+                .append(tick.getPrice(), tick.getStartDate());
+    }
+}
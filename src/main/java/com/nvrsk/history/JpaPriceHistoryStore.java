@@ -0,0 +1,103 @@
+package com.nvrsk.history;
+
+import com.nvrsk.model.PriceHistory;
+import com.nvrsk.model.PriceTick;
+import com.nvrsk.model.Stock;
+import com.nvrsk.repository.PriceHistoryRepository;
+import com.nvrsk.repository.StockRepository;
+import com.sun.istack.Nullable;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.lang.NonNull;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * {@link PriceHistoryStore} which keeps history in {@link PriceHistory} table.
+ * Records are written within the caller's transaction, or by {@link PriceHistoryWriteBehind} when it is enabled.
+ */
+@Component
+@ConditionalOnProperty(name = "stocks.history.store", havingValue = "jpa", matchIfMissing = true)
+public class JpaPriceHistoryStore implements PriceHistoryStore {
+
+    @Autowired
+    private PriceHistoryRepository priceHistoryRepository;
+
+    @Autowired
+    private StockRepository stockRepository;
+
+    @Autowired(required = false)
+    private PriceHistoryWriteBehind priceHistoryWriteBehind;
+
+    @Override
+    public void append(@NonNull List<PriceTick> ticks) {
+        if (priceHistoryWriteBehind != null) {
+            priceHistoryWriteBehind.append(ticks);
+            return;
+        }
+        List<PriceHistory> records = new ArrayList<>(ticks.size());
+        for (PriceTick tick : ticks) {
+            records.add(newPriceHistory(stockRepository.getOne(tick.getStockId()), tick.getPrice(), tick.getStartDate()));
+        }
+        priceHistoryRepository.saveAll(records);
+    }
+
+    @NonNull
+    @Override
+    public List<PriceHistory> findPage(long stockId, @Nullable Instant beforeDate, long beforeId, @Nullable Instant from, int limit) {
+        Pageable pageable = PageRequest.of(0, limit);
+        if (beforeDate == null) {
+            return from == null
+                    ? priceHistoryRepository.findLatest(stockId, pageable)
+                    : priceHistoryRepository.findLatestFrom(stockId, from, pageable);
+        }
+        return from == null
+                ? priceHistoryRepository.findOlderThan(stockId, beforeDate, beforeId, pageable)
+                : priceHistoryRepository.findOlderThanFrom(stockId, beforeDate, beforeId, from, pageable);
+    }
+
+    @NonNull
+    @Override
+    public Optional<PriceHistory> findAt(long stockId, @NonNull Instant at) {
+        return priceHistoryRepository.findAt(stockId, at);
+    }
+
+    @Override
+    public void export(@NonNull Collection<Long> stockIds, @NonNull Consumer<PriceTick> consumer) {
+        try (Stream<PriceTick> ticks = stockIds.isEmpty()
+                ? priceHistoryRepository.streamAll()
+                : priceHistoryRepository.streamByStockIds(stockIds)) {
+            ticks.forEach(consumer);
+        }
+    }
+
+    @NonNull
+    @Override
+    public Map<Long, Long> countByStock() {
+        Map<Long, Long> counts = new HashMap<>();
+        for (Object[] row : priceHistoryRepository.countByStock()) {
+            counts.put((Long) row[0], (Long) row[1]);
+        }
+        return counts;
+    }
+
+    @NonNull
+    static PriceHistory newPriceHistory(@NonNull Stock stock, double price, @NonNull Instant startDate) {
+        PriceHistory priceHistory = new PriceHistory();
+        priceHistory.setPrice(price);
+        priceHistory.setStock(stock);
+        priceHistory.setStartDate(startDate);
+        return priceHistory;
+    }
+}
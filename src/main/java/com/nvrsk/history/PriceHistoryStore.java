@@ -0,0 +1,73 @@
+package com.nvrsk.history;
+
+import com.nvrsk.model.PriceHistory;
+import com.nvrsk.model.PriceTick;
+import com.sun.istack.Nullable;
+import org.springframework.lang.NonNull;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+/**
+ * Storage of stock price history.
+ * Records of a stock are ordered by their start date and then by a store specific sequence id,
+ * which is exposed as {@link PriceHistory#getId()} and is used as a tiebreaker by keyset paging.
+ * The id is stable for the lifetime of the store, but it is local to the store:
+ * ids of different stores (and of a columnar store after a restart) are unrelated, so cursors aren't portable between them.
+ * <p>
+ * Implementation is selected with {@code stocks.history.store} property:
+ * {@code jpa} (default) keeps history in {@link PriceHistory} table,
+ * {@code columnar} keeps it in memory in primitive columns.
+ */
+public interface PriceHistoryStore {
+
+    /**
+     * Appends ticks to the history. Ticks become visible only when the current transaction (if any) commits.
+     *
+     * @param ticks - ticks to append.
+     */
+    void append(@NonNull List<PriceTick> ticks);
+
+    /**
+     * Returns records of a stock older than the given position, ordered from the newest to the oldest one.
+     *
+     * @param stockId    - id of the stock.
+     * @param beforeDate - start date of the position or {@code null} to start from the newest record.
+     * @param beforeId   - sequence id of the position, records with {@code beforeDate} start date and bigger or equal id are skipped.
+     * @param from       - the oldest start date of returned records or {@code null} for no lower bound.
+     * @param limit      - max number of records to return.
+     * @return records of the stock.
+     */
+    @NonNull
+    List<PriceHistory> findPage(long stockId, @Nullable Instant beforeDate, long beforeId, @Nullable Instant from, int limit);
+
+    /**
+     * Returns record of a stock which was actual at the given moment.
+     *
+     * @param stockId - id of the stock.
+     * @param at      - moment to get record at.
+     * @return the latest record started not after the moment or empty when there is no such record.
+     */
+    @NonNull
+    Optional<PriceHistory> findAt(long stockId, @NonNull Instant at);
+
+    /**
+     * Feeds history ordered by stock and time to the consumer without loading it into memory.
+     *
+     * @param stockIds - ids of stocks to export history of or empty collection to export history of all stocks.
+     * @param consumer - consumer of exported ticks.
+     */
+    void export(@NonNull Collection<Long> stockIds, @NonNull Consumer<PriceTick> consumer);
+
+    /**
+     * Counts records of every stock which has any.
+     *
+     * @return number of records by stock ids.
+     */
+    @NonNull
+    Map<Long, Long> countByStock();
+}
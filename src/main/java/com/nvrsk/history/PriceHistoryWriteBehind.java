@@ -0,0 +1,287 @@
+package com.nvrsk.history;
+
+import com.nvrsk.model.PriceHistory;
+import com.nvrsk.model.PriceTick;
+import com.nvrsk.model.Stock;
+import com.nvrsk.repository.PriceHistoryRepository;
+import com.nvrsk.repository.StockRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.lang.NonNull;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+
+/**
+ * Write-behind appender of {@link PriceHistory} records.
+ * Ticks are put into a bounded queue once the transaction which produced them commits,
+ * a background thread drains the queue and inserts the records in batches.
+ * <p>
+ * Producers reserve room in the queue with {@link #withCapacity(int, Supplier)} before their transaction starts,
+ * so when the queue is full they wait without holding a database connection, which the writer needs to drain the queue.
+ * Ticks which weren't reserved for, e.g. appended in a caller's own transaction, wait for room after the commit.
+ * On shutdown the queue is drained before the application context is closed,
+ * ticks which are appended after that (e.g. by requests the web server still accepts) are written synchronously.
+ * Enabled with {@code stocks.history.write-behind.enabled=true}.
+ */
+@Component
+@ConditionalOnProperty(name = "stocks.history.write-behind.enabled", havingValue = "true")
+public class PriceHistoryWriteBehind {
+
+    private static final Logger LOG = LoggerFactory.getLogger(PriceHistoryWriteBehind.class);
+
+    private final BlockingQueue<PriceTick> queue;
+
+    /**
+     * Free room of the queue, a permit is taken by a reserved or a queued tick and returned once the writer takes the tick.
+     */
+    private final Semaphore capacity;
+
+    private final int queueCapacity;
+
+    private final ThreadLocal<Reservation> reservation = new ThreadLocal<>();
+
+    private final int batchSize;
+
+    private final long flushIntervalMillis;
+
+    private final LongAdder written = new LongAdder();
+
+    private final LongAdder failed = new LongAdder();
+
+    private final AtomicLong pending = new AtomicLong();
+
+    private final Object flushMonitor = new Object();
+
+    /**
+     * Producers enqueue under the read lock, so no tick is queued after {@link #stop()} marks the writer stopping.
+     */
+    private final ReadWriteLock stopLock = new ReentrantReadWriteLock();
+
+    @Autowired
+    private PriceHistoryRepository priceHistoryRepository;
+
+    @Autowired
+    private StockRepository stockRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private TransactionTemplate transactionTemplate;
+
+    private Thread writer;
+
+    private volatile boolean stopping;
+
+    @Autowired
+    public PriceHistoryWriteBehind(@Value("${stocks.history.write-behind.queue-capacity:65536}") int queueCapacity,
+                                   @Value("${stocks.history.write-behind.batch-size:500}") int batchSize,
+                                   @Value("${stocks.history.write-behind.flush-interval-ms:50}") long flushIntervalMillis) {
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.capacity = new Semaphore(queueCapacity, true);
+        this.queueCapacity = queueCapacity;
+        this.batchSize = batchSize;
+        this.flushIntervalMillis = flushIntervalMillis;
+    }
+
+    @PostConstruct
+    void start() {
+        // ticks written synchronously are appended in afterCommit of a transaction which can't be joined anymore
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        writer = new Thread(this::run, "price-history-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    @PreDestroy
+    void stop() throws InterruptedException {
+        stopLock.writeLock().lock();
+        try {
+            stopping = true;
+        } finally {
+            stopLock.writeLock().unlock();
+        }
+        writer.join();
+        LOG.info("Price history writer stopped, {} records written, {} failed", written.sum(), failed.sum());
+    }
+
+    /**
+     * Appends ticks to the queue after the current transaction commits, or right away when there is no transaction.
+     *
+     * @param ticks - ticks to append.
+     */
+    public void append(@NonNull Collection<PriceTick> ticks) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCommit() {
+                    enqueue(ticks);
+                }
+            });
+        } else {
+            enqueue(ticks);
+        }
+    }
+
+    /**
+     * Runs action which appends ticks, reserving room for them in the queue beforehand.
+     * The action should start its transaction itself, the ticks it appends are then queued after the commit without waiting.
+     * Reservations of nested calls are ignored, room which isn't used by the action is freed when it completes.
+     *
+     * @param ticks  - max number of ticks the action appends.
+     * @param action - action to run.
+     * @return result of the action.
+     */
+    public <T> T withCapacity(int ticks, @NonNull Supplier<T> action) {
+        if (reservation.get() != null) {
+            return action.get();
+        }
+        Reservation reserved = new Reservation(Math.min(ticks, queueCapacity));
+        capacity.acquireUninterruptibly(reserved.remaining);
+        reservation.set(reserved);
+        try {
+            return action.get();
+        } finally {
+            reservation.remove();
+            capacity.release(reserved.remaining);
+        }
+    }
+
+    /**
+     * Waits until all the ticks which were queued before the call are written.
+     *
+     * @param timeoutMillis - max time to wait.
+     * @return {@code false} if the timeout elapsed before the queue was drained.
+     */
+    public boolean awaitFlushed(long timeoutMillis) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        synchronized (flushMonitor) {
+            while (pending.get() > 0) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    return false;
+                }
+                flushMonitor.wait(remaining);
+            }
+        }
+        return true;
+    }
+
+    public int getQueueSize() {
+        return queue.size();
+    }
+
+    public long getWritten() {
+        return written.sum();
+    }
+
+    public long getFailed() {
+        return failed.sum();
+    }
+
+    private void enqueue(@NonNull Collection<PriceTick> ticks) {
+        List<PriceTick> unqueued = new ArrayList<>(ticks);
+        stopLock.readLock().lock();
+        try {
+            if (!stopping) {
+                pending.addAndGet(unqueued.size());
+                Reservation reserved = reservation.get();
+                int queued = 0;
+                try {
+                    for (; queued < unqueued.size(); queued++) {
+                        if (reserved != null && reserved.remaining > 0) {
+                            reserved.remaining--;
+                        } else {
+                            capacity.acquire();
+                        }
+                        queue.add(unqueued.get(queued));
+                    }
+                } catch (InterruptedException e) {
+                    List<PriceTick> lost = unqueued.subList(queued, unqueued.size());
+                    pending.addAndGet(-lost.size());
+                    Thread.currentThread().interrupt();
+                    LOG.warn("Interrupted while appending price history, ticks are lost: {}", lost);
+                }
+                return;
+            }
+        } finally {
+            stopLock.readLock().unlock();
+        }
+        write(unqueued);
+    }
+
+    private void run() {
+        List<PriceTick> batch = new ArrayList<>(batchSize);
+        while (!stopping || !queue.isEmpty()) {
+            try {
+                PriceTick first = queue.poll(flushIntervalMillis, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                capacity.release(batch.size());
+                write(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                if (!batch.isEmpty()) {
+                    pending.addAndGet(-batch.size());
+                    batch.clear();
+                    synchronized (flushMonitor) {
+                        flushMonitor.notifyAll();
+                    }
+                }
+            }
+        }
+    }
+
+    private void write(@NonNull List<PriceTick> batch) {
+        try {
+            transactionTemplate.execute(status -> {
+                List<PriceHistory> records = new ArrayList<>(batch.size());
+                for (PriceTick tick : batch) {
+                    Stock stock = stockRepository.getOne(tick.getStockId());
+                    records.add(JpaPriceHistoryStore.newPriceHistory(stock, tick.getPrice(), tick.getStartDate()));
+                }
+                return priceHistoryRepository.saveAll(records);
+            });
+            written.add(batch.size());
+        } catch (RuntimeException e) {
+            failed.add(batch.size());
+            LOG.error("Failed to write {} price history records", batch.size(), e);
+        }
+    }
+
+    private static final class Reservation {
+
+        private int remaining;
+
+        private Reservation(int remaining) {
+            this.remaining = remaining;
+        }
+    }
+}
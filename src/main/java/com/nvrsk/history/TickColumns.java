@@ -0,0 +1,285 @@
+package com.nvrsk.history;
+
+import com.nvrsk.model.PriceHistory;
+import com.nvrsk.model.PriceTick;
+import com.sun.istack.Nullable;
+import org.springframework.lang.NonNull;
+
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+/**
+ * Price history of a single stock in three primitive columns: epoch nanos of start dates, prices and sequence ids.
+ * Columns grow by chunks, every chunk is a single (optionally direct) buffer split into thirds, one per column.
+ * The last chunk doubles its capacity until it reaches {@link #CHUNK_SIZE} ticks, so short histories stay small.
+ * <p>
+ * Ticks are kept sorted by time, every tick gets the next sequence id of the stock when it is appended,
+ * so the id doesn't change when an older tick is inserted and ticks of the same time are ordered by it.
+ * Appends in time order are O(1), out of order ones shift the newer ticks.
+ */
+final class TickColumns {
+
+    static final int CHUNK_SHIFT = 12;
+
+    static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private static final int TICK_BYTES = Long.BYTES + Double.BYTES + Long.BYTES;
+
+    private static final int EXPORT_BATCH = 1024;
+
+    private static final long NANOS_PER_SECOND = 1_000_000_000L;
+
+    private final List<ByteBuffer> chunks = new ArrayList<>();
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final long stockId;
+
+    private final boolean offHeap;
+
+    private int size;
+
+    private int capacity;
+
+    private long lastId;
+
+    TickColumns(long stockId, boolean offHeap) {
+        this.stockId = stockId;
+        this.offHeap = offHeap;
+    }
+
+    void append(double price, @NonNull Instant startDate) {
+        long time = toNanos(startDate);
+        lock.writeLock().lock();
+        try {
+            if (size == capacity) {
+                grow();
+            }
+            int position = size;
+            if (size > 0 && time(size - 1) > time) {
+                position = upperBound(time);
+                for (int i = size; i > position; i--) {
+                    set(i, time(i - 1), price(i - 1), id(i - 1));
+                }
+            }
+            set(position, time, price, ++lastId);
+            size++;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @NonNull
+    List<PriceHistory> findPage(@Nullable Instant beforeDate, long beforeId, @Nullable Instant from, int limit) {
+        lock.readLock().lock();
+        try {
+            int end = size;
+            if (beforeDate != null) {
+                long before = toBound(beforeDate);
+                end = lowerBoundId(lowerBound(before), upperBound(before), beforeId);
+            }
+            long oldest = from == null ? Long.MIN_VALUE : toBound(from);
+            List<PriceHistory> records = new ArrayList<>(Math.min(limit, end));
+            for (int i = end - 1; i >= 0 && records.size() < limit && time(i) >= oldest; i--) {
+                records.add(record(i));
+            }
+            return records;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Nullable
+    PriceHistory findAt(@NonNull Instant at) {
+        lock.readLock().lock();
+        try {
+            int position = upperBound(toBound(at)) - 1;
+            return position < 0 ? null : record(position);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Feeds all ticks in time order, the lock is held only while copying a small batch of ticks.
+     */
+    void export(@NonNull Consumer<PriceTick> consumer) {
+        List<PriceTick> batch = new ArrayList<>(EXPORT_BATCH);
+        int position = 0;
+        while (true) {
+            lock.readLock().lock();
+            try {
+                for (int end = Math.min(size, position + EXPORT_BATCH); position < end; position++) {
+                    batch.add(new PriceTick(stockId, price(position), toInstant(time(position))));
+                }
+            } finally {
+                lock.readLock().unlock();
+            }
+            if (batch.isEmpty()) {
+                return;
+            }
+            batch.forEach(consumer);
+            batch.clear();
+        }
+    }
+
+    int size() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    long capacityBytes() {
+        lock.readLock().lock();
+        try {
+            return (long) capacity * TICK_BYTES;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void grow() {
+        int lastChunk = chunks.size() - 1;
+        int lastCapacity = lastChunk < 0 ? CHUNK_SIZE : chunks.get(lastChunk).capacity() / TICK_BYTES;
+        if (lastCapacity == CHUNK_SIZE) {
+            chunks.add(allocate(INITIAL_CAPACITY));
+            capacity += INITIAL_CAPACITY;
+            return;
+        }
+        ByteBuffer chunk = chunks.get(lastChunk);
+        ByteBuffer grown = allocate(lastCapacity * 2);
+        int base = lastChunk << CHUNK_SHIFT;
+        chunks.set(lastChunk, grown);
+        for (int i = 0; i < lastCapacity; i++) {
+            grown.putLong(i * Long.BYTES, chunk.getLong(i * Long.BYTES));
+            grown.putDouble(priceOffset(grown, i), chunk.getDouble(priceOffset(chunk, i)));
+            grown.putLong(idOffset(grown, i), chunk.getLong(idOffset(chunk, i)));
+        }
+        capacity = base + lastCapacity * 2;
+    }
+
+    @NonNull
+    private ByteBuffer allocate(int ticks) {
+        return offHeap ? ByteBuffer.allocateDirect(ticks * TICK_BYTES) : ByteBuffer.allocate(ticks * TICK_BYTES);
+    }
+
+    @NonNull
+    private PriceHistory record(int position) {
+        PriceHistory record = new PriceHistory();
+        record.setId(id(position));
+        record.setPrice(price(position));
+        record.setStartDate(toInstant(time(position)));
+        return record;
+    }
+
+    /**
+     * @return index of the first tick with time not less than the given one.
+     */
+    private int lowerBound(long time) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (time(middle) < time) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * @return index of the first tick with time greater than the given one.
+     */
+    private int upperBound(long time) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (time(middle) <= time) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * @return index of the first tick in the given range of ticks of the same time with id not less than the given one.
+     */
+    private int lowerBoundId(int low, int high, long id) {
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (id(middle) < id) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private long time(int position) {
+        return chunks.get(position >>> CHUNK_SHIFT).getLong((position & CHUNK_MASK) * Long.BYTES);
+    }
+
+    private double price(int position) {
+        ByteBuffer chunk = chunks.get(position >>> CHUNK_SHIFT);
+        return chunk.getDouble(priceOffset(chunk, position & CHUNK_MASK));
+    }
+
+    private long id(int position) {
+        ByteBuffer chunk = chunks.get(position >>> CHUNK_SHIFT);
+        return chunk.getLong(idOffset(chunk, position & CHUNK_MASK));
+    }
+
+    private void set(int position, long time, double price, long id) {
+        ByteBuffer chunk = chunks.get(position >>> CHUNK_SHIFT);
+        int index = position & CHUNK_MASK;
+        chunk.putLong(index * Long.BYTES, time);
+        chunk.putDouble(priceOffset(chunk, index), price);
+        chunk.putLong(idOffset(chunk, index), id);
+    }
+
+    private static int priceOffset(@NonNull ByteBuffer chunk, int index) {
+        return chunk.capacity() / TICK_BYTES * Long.BYTES + index * Double.BYTES;
+    }
+
+    private static int idOffset(@NonNull ByteBuffer chunk, int index) {
+        return chunk.capacity() / TICK_BYTES * (Long.BYTES + Double.BYTES) + index * Long.BYTES;
+    }
+
+    private static long toNanos(@NonNull Instant instant) {
+        return Math.addExact(Math.multiplyExact(instant.getEpochSecond(), NANOS_PER_SECOND), instant.getNano());
+    }
+
+    /**
+     * Converts a query bound, moments beyond the range of epoch nanos (about 1677 to 2262 years) are clamped to it.
+     */
+    private static long toBound(@NonNull Instant instant) {
+        try {
+            return toNanos(instant);
+        } catch (ArithmeticException e) {
+            return instant.getEpochSecond() < 0 ? Long.MIN_VALUE : Long.MAX_VALUE;
+        }
+    }
+
+    @NonNull
+    private static Instant toInstant(long nanos) {
+        return Instant.ofEpochSecond(Math.floorDiv(nanos, NANOS_PER_SECOND), Math.floorMod(nanos, NANOS_PER_SECOND));
+    }
+}
@@ -0,0 +1,45 @@
+package com.nvrsk.journal;
+
+import org.springframework.lang.NonNull;
+
+import java.util.Locale;
+
+/**
+ * Defines when journal pages which are written to memory are forced to the storage device.
+ */
+public enum FsyncPolicy {
+
+    /**
+     * Pages are written by the operating system when it decides to, or when a segment is closed.
+     * Ticks survive a crash of the application, but not a crash of the host.
+     */
+    NEVER,
+
+    /**
+     * Pages are forced periodically, at most the last interval of ticks can be lost.
+     */
+    INTERVAL,
+
+    /**
+     * Pages are forced after every record before its transaction commits,
+     * nothing acknowledged is lost but each tick waits for the device.
+     */
+    ALWAYS;
+
+    /**
+     * Returns policy by its name.
+     *
+     * @param name - name of the policy, case insensitive.
+     * @return fsync policy.
+     * @throws IllegalArgumentException when there is no policy with such name.
+     */
+    @NonNull
+    public static FsyncPolicy of(@NonNull String name) {
+        for (FsyncPolicy policy : values()) {
+            if (policy.name().equals(name.trim().toUpperCase(Locale.ROOT))) {
+                return policy;
+            }
+        }
+        throw new IllegalArgumentException("Unsupported journal fsync policy: " + name);
+    }
+}
@@ -0,0 +1,127 @@
+package com.nvrsk.journal;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.lang.NonNull;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Rebuilds stocks and their price history from snapshot and journal records with plain JDBC batches.
+ * Stocks keep their ids, history records are numbered in the order they are replayed.
+ * Must be used before any id is allocated by the entity sequences, {@link #finish()} moves the sequences past the restored ids.
+ * <p>
+ * A snapshot may already contain some records which were appended to the journal after its position,
+ * so after {@link #snapshotLoaded()} the stocks from the snapshot and their ticks which aren't newer than the snapshot are skipped.
+ */
+final class JournalReplay implements MappedJournal.Visitor {
+
+    private static final int BATCH_SIZE = 1000;
+
+    /**
+     * Sequences are restarted this far beyond the restored ids, it must not be less than allocation size of the entity sequences.
+     */
+    private static final long SEQUENCE_GAP = 50;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final List<Object[]> stocks = new ArrayList<>();
+
+    private final List<Object[]> ticks = new ArrayList<>();
+
+    private final Map<Long, Object[]> lastTicks = new HashMap<>();
+
+    private final Map<Long, Instant> lastStartDates = new HashMap<>();
+
+    private final Map<Long, Instant> snapshotStartDates = new HashMap<>();
+
+    private long stockCount;
+
+    private long maxStockId;
+
+    private long tickCount;
+
+    JournalReplay(@NonNull JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    public void onStock(long id, @NonNull String name) {
+        if (snapshotStartDates.containsKey(id)) {
+            return;
+        }
+        stocks.add(new Object[]{id, name});
+        lastStartDates.put(id, Instant.MIN);
+        stockCount++;
+        maxStockId = Math.max(maxStockId, id);
+        if (stocks.size() == BATCH_SIZE) {
+            flushStocks();
+        }
+    }
+
+    @Override
+    public void onTick(long stockId, double price, @NonNull Instant startDate) {
+        Instant snapshotStartDate = snapshotStartDates.get(stockId);
+        if (snapshotStartDate != null && !startDate.isAfter(snapshotStartDate)) {
+            return;
+        }
+        // history references stocks, so they have to be inserted first
+        flushStocks();
+        Timestamp timestamp = Timestamp.from(startDate);
+        ticks.add(new Object[]{++tickCount, stockId, price, timestamp});
+        lastTicks.put(stockId, new Object[]{price, timestamp, stockId});
+        lastStartDates.put(stockId, startDate);
+        if (ticks.size() == BATCH_SIZE) {
+            flushTicks();
+        }
+    }
+
+    /**
+     * Marks that all records of the snapshot were replayed and journal records are replayed next.
+     */
+    void snapshotLoaded() {
+        snapshotStartDates.putAll(lastStartDates);
+    }
+
+    /**
+     * Writes the rest of the records, sets current prices of the stocks to their last ticks and restarts the sequences.
+     */
+    void finish() {
+        flushStocks();
+        flushTicks();
+        jdbcTemplate.batchUpdate("update stock set current_price = ?, last_update = ? where id = ?",
+                new ArrayList<>(lastTicks.values()));
+        if (maxStockId > 0) {
+            jdbcTemplate.execute("alter sequence JPA_SEQUENCE restart with " + (maxStockId + SEQUENCE_GAP));
+        }
+        if (tickCount > 0) {
+            jdbcTemplate.execute("alter sequence PRICE_HISTORY_SEQUENCE restart with " + (tickCount + SEQUENCE_GAP));
+        }
+    }
+
+    long getStockCount() {
+        return stockCount;
+    }
+
+    long getTickCount() {
+        return tickCount;
+    }
+
+    private void flushStocks() {
+        if (!stocks.isEmpty()) {
+            jdbcTemplate.batchUpdate("insert into stock (id, name, current_price, version) values (?, ?, 0, 0)", stocks);
+            stocks.clear();
+        }
+    }
+
+    private void flushTicks() {
+        if (!ticks.isEmpty()) {
+            jdbcTemplate.batchUpdate("insert into price_history (id, stock_id, price, start_date) values (?, ?, ?, ?)", ticks);
+            ticks.clear();
+        }
+    }
+}
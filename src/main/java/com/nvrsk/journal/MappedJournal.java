@@ -0,0 +1,319 @@
+package com.nvrsk.journal;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.lang.NonNull;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only journal of stocks and their price ticks, kept in memory-mapped segment files of a fixed size.
+ * <p>
+ * Every record is its payload length, CRC32 of the payload and the payload itself.
+ * A zero length marks the end of written records in a segment, a record which doesn't fit starts a new segment.
+ * A record with a wrong checksum is considered torn by a crash, it and everything after it are discarded on open.
+ * <p>
+ * Appends are serialized, a record is visible to readers of the file as soon as it is written to the mapping.
+ */
+final class MappedJournal implements Closeable {
+
+    /**
+     * Receives records of the journal in the order they were appended.
+     */
+    interface Visitor {
+
+        void onStock(long id, @NonNull String name);
+
+        void onTick(long stockId, double price, @NonNull Instant startDate);
+    }
+
+    private static final Logger LOG = LoggerFactory.getLogger(MappedJournal.class);
+
+    private static final int HEADER_BYTES = Integer.BYTES * 2;
+
+    private static final byte STOCK = 1;
+
+    private static final byte TICK = 2;
+
+    private static final int TICK_BYTES = 1 + Long.BYTES + Double.BYTES + Long.BYTES + Integer.BYTES;
+
+    private static final String SEGMENT_SUFFIX = ".journal";
+
+    private final Path directory;
+
+    private final int segmentSize;
+
+    private final FsyncPolicy fsyncPolicy;
+
+    private final CRC32 crc = new CRC32();
+
+    private final ByteBuffer tick = ByteBuffer.allocate(TICK_BYTES);
+
+    private long segmentIndex;
+
+    private FileChannel channel;
+
+    private MappedByteBuffer segment;
+
+    private long records;
+
+    private boolean dirty;
+
+    private boolean tornTail;
+
+    private MappedJournal(Path directory, int segmentSize, FsyncPolicy fsyncPolicy) {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.fsyncPolicy = fsyncPolicy;
+    }
+
+    /**
+     * Opens journal in the directory, feeds its records to the visitor and positions it after the last one.
+     *
+     * @param directory    - directory of segment files, it is created when it doesn't exist.
+     * @param segmentSize  - size of a new segment file in bytes.
+     * @param fsyncPolicy  - when written records are forced to the device.
+     * @param fromPosition - {@link #position()} to replay records from, records before it are skipped.
+     * @param visitor      - visitor of existing records.
+     * @return opened journal.
+     * @throws UncheckedIOException when the journal can't be read or opened for writing.
+     */
+    @NonNull
+    static MappedJournal open(@NonNull Path directory, int segmentSize, @NonNull FsyncPolicy fsyncPolicy,
+                              long fromPosition, @NonNull Visitor visitor) {
+        MappedJournal journal = new MappedJournal(directory, segmentSize, fsyncPolicy);
+        long fromIndex = segmentOf(fromPosition);
+        try {
+            Files.createDirectories(directory);
+            List<Path> segments = journal.listSegments();
+            long lastIndex = -1;
+            int end = 0;
+            for (Path segment : segments) {
+                long index = indexOf(segment);
+                if (index >= fromIndex) {
+                    end = journal.replay(segment, index == fromIndex ? offsetOf(fromPosition) : 0, visitor);
+                    lastIndex = index;
+                }
+            }
+            if (lastIndex < 0) {
+                journal.openSegment(fromPosition == 0 ? 0 : fromIndex + 1, 0);
+            } else {
+                journal.openSegment(lastIndex, end);
+            }
+            return journal;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to open journal in " + directory, e);
+        }
+    }
+
+    /**
+     * Opens journal in the directory and feeds all its records to the visitor, see {@link #open(Path, int, FsyncPolicy, long, Visitor)}.
+     */
+    @NonNull
+    static MappedJournal open(@NonNull Path directory, int segmentSize, @NonNull FsyncPolicy fsyncPolicy,
+                              @NonNull Visitor visitor) {
+        return open(directory, segmentSize, fsyncPolicy, 0, visitor);
+    }
+
+    synchronized void appendStock(long id, @NonNull String name) {
+        byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer payload = ByteBuffer.allocate(1 + Long.BYTES + nameBytes.length);
+        payload.put(STOCK).putLong(id).put(nameBytes);
+        append(payload);
+    }
+
+    synchronized void appendTick(long stockId, double price, @NonNull Instant startDate) {
+        tick.clear();
+        tick.put(TICK).putLong(stockId).putDouble(price).putLong(startDate.getEpochSecond()).putInt(startDate.getNano());
+        append(tick);
+    }
+
+    /**
+     * Forces records which were written since the previous call to the device.
+     */
+    synchronized void force() {
+        if (dirty) {
+            segment.force();
+            dirty = false;
+        }
+    }
+
+    /**
+     * @return position right after the last appended record: index of its segment in the high half and offset in the low one.
+     */
+    synchronized long position() {
+        return segmentIndex << Integer.SIZE | segment.position();
+    }
+
+    /**
+     * Deletes segments which contain only records before the position.
+     *
+     * @param position - {@link #position()} which the journal is no longer replayed from.
+     */
+    synchronized void deleteSegmentsBefore(long position) {
+        try {
+            for (Path segment : listSegments()) {
+                if (indexOf(segment) < segmentOf(position)) {
+                    Files.delete(segment);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to delete journal segments in " + directory, e);
+        }
+    }
+
+    /**
+     * @return number of records which were replayed on open and appended since then.
+     */
+    synchronized long getRecords() {
+        return records;
+    }
+
+    /**
+     * Forces written records and closes the current segment.
+     * The mapping itself is released by the garbage collector.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (fsyncPolicy != FsyncPolicy.NEVER) {
+            force();
+        }
+        channel.close();
+    }
+
+    private void append(ByteBuffer payload) {
+        int length = payload.position();
+        if (HEADER_BYTES + length > segmentSize) {
+            throw new IllegalArgumentException("Journal record of " + length + " bytes doesn't fit into a segment");
+        }
+        if (segment.remaining() < HEADER_BYTES + length) {
+            rollSegment();
+        }
+        crc.reset();
+        crc.update(payload.array(), 0, length);
+        int position = segment.position();
+        segment.position(position + HEADER_BYTES);
+        segment.put(payload.array(), 0, length);
+        segment.putInt(position + Integer.BYTES, (int) crc.getValue());
+        // length is written last, so a reader never sees a partially written record
+        segment.putInt(position, length);
+        records++;
+        dirty = true;
+        if (fsyncPolicy == FsyncPolicy.ALWAYS) {
+            force();
+        }
+    }
+
+    private void rollSegment() {
+        try {
+            close();
+            openSegment(segmentIndex + 1, 0);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to roll journal segment in " + directory, e);
+        }
+    }
+
+    private void openSegment(long index, int position) throws IOException {
+        Path path = directory.resolve(String.format("%020d%s", index, SEGMENT_SUFFIX));
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        long size = channel.size() > 0 ? channel.size() : segmentSize;
+        segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        if (tornTail) {
+            // torn record is cleared, so its remains can't be mistaken for a record after new ones are appended
+            for (int i = position; i < size; i++) {
+                segment.put(i, (byte) 0);
+            }
+            tornTail = false;
+        }
+        segment.position(position);
+        segmentIndex = index;
+        dirty = false;
+    }
+
+    /**
+     * Feeds records of the segment which start at or after the offset to the visitor.
+     *
+     * @return offset after the last valid record of the segment.
+     */
+    private int replay(Path path, int offset, Visitor visitor) throws IOException {
+        tornTail = false;
+        try (FileChannel readChannel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer buffer = readChannel.map(FileChannel.MapMode.READ_ONLY, 0, readChannel.size());
+            buffer.position(Math.min(offset, buffer.limit()));
+            while (buffer.remaining() >= HEADER_BYTES) {
+                int position = buffer.position();
+                int length = buffer.getInt(position);
+                if (length <= 0 || length > buffer.remaining() - HEADER_BYTES) {
+                    if (length != 0) {
+                        LOG.warn("Discarding torn journal record at {} of {}", position, path);
+                        tornTail = true;
+                    }
+                    return position;
+                }
+                byte[] payload = new byte[length];
+                buffer.position(position + HEADER_BYTES);
+                buffer.get(payload);
+                crc.reset();
+                crc.update(payload, 0, length);
+                if ((int) crc.getValue() != buffer.getInt(position + Integer.BYTES)) {
+                    LOG.warn("Discarding torn journal record at {} of {}", position, path);
+                    tornTail = true;
+                    return position;
+                }
+                visit(ByteBuffer.wrap(payload), visitor);
+                records++;
+            }
+            return buffer.position();
+        }
+    }
+
+    private static void visit(ByteBuffer payload, Visitor visitor) {
+        byte type = payload.get();
+        long id = payload.getLong();
+        if (type == STOCK) {
+            visitor.onStock(id, new String(payload.array(), payload.position(), payload.remaining(), StandardCharsets.UTF_8));
+        } else if (type == TICK) {
+            double price = payload.getDouble();
+            visitor.onTick(id, price, Instant.ofEpochSecond(payload.getLong(), payload.getInt()));
+        } else {
+            throw new IllegalStateException("Unknown journal record type: " + type);
+        }
+    }
+
+    private static long segmentOf(long position) {
+        return position >>> Integer.SIZE;
+    }
+
+    private static int offsetOf(long position) {
+        return (int) position;
+    }
+
+    private static long indexOf(Path segment) {
+        String fileName = segment.getFileName().toString();
+        return Long.parseLong(fileName.substring(0, fileName.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    private List<Path> listSegments() throws IOException {
+        List<Path> segments = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + SEGMENT_SUFFIX)) {
+            files.forEach(segments::add);
+        }
+        Collections.sort(segments);
+        return segments;
+    }
+}
@@ -0,0 +1,157 @@
+package com.nvrsk.journal;
+
+import com.nvrsk.model.PriceHistory;
+import org.springframework.lang.NonNull;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Binary snapshot of all stocks with their recent price history, taken at a {@link MappedJournal#position()}.
+ * <p>
+ * The file is a header with the journal position, then every stock with its ticks from the oldest to the newest one,
+ * then an end marker and CRC32 of everything before it.
+ * A snapshot is written to a temporary file which is synced and then atomically moved over the previous snapshot,
+ * so a crash leaves either the old or the new snapshot in place.
+ */
+final class StateSnapshot implements Closeable {
+
+    private static final int MAGIC = 0x534e4150;
+
+    private static final int VERSION = 1;
+
+    private static final byte STOCK = 1;
+
+    private static final byte END = 0;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Path path;
+
+    private final Path temporaryPath;
+
+    private final FileOutputStream fileOutput;
+
+    private final CheckedOutputStream checkedOutput;
+
+    private final DataOutputStream output;
+
+    private int stocks;
+
+    private StateSnapshot(Path path, long position) throws IOException {
+        this.path = path;
+        this.temporaryPath = path.resolveSibling(path.getFileName() + ".tmp");
+        this.fileOutput = new FileOutputStream(temporaryPath.toFile());
+        this.checkedOutput = new CheckedOutputStream(new BufferedOutputStream(fileOutput, BUFFER_SIZE), new CRC32());
+        this.output = new DataOutputStream(checkedOutput);
+        output.writeInt(MAGIC);
+        output.writeInt(VERSION);
+        output.writeLong(position);
+    }
+
+    /**
+     * Starts a new snapshot, it replaces the existing one only after {@link #commit()}.
+     *
+     * @param path     - path of the snapshot file.
+     * @param position - journal position the snapshot is taken at.
+     * @return snapshot to write stocks to.
+     */
+    @NonNull
+    static StateSnapshot create(@NonNull Path path, long position) throws IOException {
+        return new StateSnapshot(path, position);
+    }
+
+    /**
+     * Writes stock with its recent history.
+     *
+     * @param id    - id of the stock.
+     * @param name  - name of the stock.
+     * @param ticks - recent history of the stock from the newest to the oldest record, the newest one is the current price.
+     */
+    void writeStock(long id, @NonNull String name, @NonNull List<PriceHistory> ticks) throws IOException {
+        output.writeByte(STOCK);
+        output.writeLong(id);
+        output.writeUTF(name);
+        output.writeInt(ticks.size());
+        for (int i = ticks.size() - 1; i >= 0; i--) {
+            PriceHistory tick = ticks.get(i);
+            output.writeDouble(tick.getPrice());
+            output.writeLong(tick.getStartDate().getEpochSecond());
+            output.writeInt(tick.getStartDate().getNano());
+        }
+        stocks++;
+    }
+
+    /**
+     * Completes the snapshot and atomically replaces the previous one with it.
+     *
+     * @return number of written stocks.
+     */
+    int commit() throws IOException {
+        output.writeByte(END);
+        output.flush();
+        output.writeLong(checkedOutput.getChecksum().getValue());
+        output.flush();
+        fileOutput.getFD().sync();
+        output.close();
+        Files.move(temporaryPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return stocks;
+    }
+
+    /**
+     * Discards snapshot which wasn't committed.
+     */
+    @Override
+    public void close() throws IOException {
+        output.close();
+        Files.deleteIfExists(temporaryPath);
+    }
+
+    /**
+     * Feeds stocks and ticks of the snapshot to the visitor, ticks of a stock go right after it.
+     *
+     * @param path    - path of the snapshot file.
+     * @param visitor - visitor of the snapshot records.
+     * @return journal position the snapshot was taken at or {@code -1} when there is no snapshot.
+     * @throws IOException when the snapshot can't be read or is corrupted.
+     */
+    static long read(@NonNull Path path, @NonNull MappedJournal.Visitor visitor) throws IOException {
+        if (!Files.exists(path)) {
+            return -1;
+        }
+        try (CheckedInputStream checkedInput = new CheckedInputStream(
+                new BufferedInputStream(Files.newInputStream(path), BUFFER_SIZE), new CRC32());
+             DataInputStream input = new DataInputStream(checkedInput)) {
+            if (input.readInt() != MAGIC || input.readInt() != VERSION) {
+                throw new IOException("Unsupported snapshot file " + path);
+            }
+            long position = input.readLong();
+            while (input.readByte() == STOCK) {
+                long id = input.readLong();
+                visitor.onStock(id, input.readUTF());
+                for (int ticks = input.readInt(); ticks > 0; ticks--) {
+                    double price = input.readDouble();
+                    visitor.onTick(id, price, Instant.ofEpochSecond(input.readLong(), input.readInt()));
+                }
+            }
+            long checksum = checkedInput.getChecksum().getValue();
+            if (input.readLong() != checksum) {
+                throw new IOException("Snapshot file " + path + " is corrupted");
+            }
+            return position;
+        }
+    }
+}
@@ -0,0 +1,280 @@
+package com.nvrsk.journal;
+
+import com.nvrsk.event.StockUpdatedEvent;
+import com.nvrsk.history.PriceHistoryStore;
+import com.nvrsk.history.PriceHistoryWriteBehind;
+import com.nvrsk.model.StockInfo;
+import com.nvrsk.repository.StockRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.lang.NonNull;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Durable capture of stocks and price ticks in a {@link MappedJournal}.
+ * Every {@link StockUpdatedEvent} is appended to the journal right before its transaction commits,
+ * which costs a memory write on top of the database transaction.
+ * <p>
+ * The journal is a recovery log, not a faster write path: updates still go through the database.
+ * Pending changes are flushed before the append, so updates which fail on optimistic lock conflicts never get into it,
+ * and an append which fails rolls the update back, so the client gets an error instead of an acknowledged update
+ * which isn't journaled. Under the {@code always} fsync policy an update is on the device before it is acknowledged.
+ * An update whose commit fails after its append is still replayed on the next start.
+ * <p>
+ * State of all stocks with their recent history is periodically and on shutdown written to a {@link StateSnapshot},
+ * journal segments before the snapshot are deleted.
+ * On startup the latest snapshot and the journal after it are replayed into the database before the application prepares its stocks,
+ * so stocks keep their ids and prices across restarts, and restart time depends on the snapshot size rather than on the uptime.
+ * When there is neither a snapshot nor a journal, the stocks which were prepared by the application are snapshotted instead.
+ * A loader which fills the database in background holds snapshots until it is done, see {@link #holdSnapshots()}.
+ * Enabled with {@code stocks.journal.enabled=true}.
+ */
+@Component
+@ConditionalOnProperty(name = "stocks.journal.enabled", havingValue = "true")
+public class TickJournal {
+
+    private static final Logger LOG = LoggerFactory.getLogger(TickJournal.class);
+
+    private static final long BYTES_PER_MEGABYTE = 1024 * 1024;
+
+    private static final String SNAPSHOT_FILE = "snapshot.bin";
+
+    private static final long WRITE_BEHIND_FLUSH_TIMEOUT_MILLIS = 5000;
+
+    private final Path directory;
+
+    private final int segmentSize;
+
+    private final FsyncPolicy fsyncPolicy;
+
+    private final long fsyncIntervalMillis;
+
+    private final long snapshotIntervalMillis;
+
+    private final boolean snapshotOnShutdown;
+
+    private final int snapshotHistoryTicks;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private StockRepository stockRepository;
+
+    @Autowired
+    private PriceHistoryStore priceHistoryStore;
+
+    @Autowired(required = false)
+    private PriceHistoryWriteBehind priceHistoryWriteBehind;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private MappedJournal journal;
+
+    /**
+     * Transactions hold the read lock from their first append until they complete,
+     * so every record before the position of a snapshot is committed by the time the snapshot reads the database.
+     */
+    private final ReadWriteLock appendLock = new ReentrantReadWriteLock();
+
+    private ScheduledExecutorService scheduler;
+
+    private boolean restored;
+
+    private volatile boolean snapshotsHeld;
+
+    @Autowired
+    public TickJournal(@Value("${stocks.journal.dir:journal}") String directory,
+                       @Value("${stocks.journal.segment-size-mb:64}") int segmentSizeMegabytes,
+                       @Value("${stocks.journal.fsync:interval}") String fsyncPolicy,
+                       @Value("${stocks.journal.fsync-interval-ms:1000}") long fsyncIntervalMillis,
+                       @Value("${stocks.journal.snapshot.interval-ms:300000}") long snapshotIntervalMillis,
+                       @Value("${stocks.journal.snapshot.on-shutdown:true}") boolean snapshotOnShutdown,
+                       @Value("${stocks.journal.snapshot.history-ticks:1000}") int snapshotHistoryTicks) {
+        this.directory = Paths.get(directory);
+        this.segmentSize = Math.toIntExact(segmentSizeMegabytes * BYTES_PER_MEGABYTE);
+        this.fsyncPolicy = FsyncPolicy.of(fsyncPolicy);
+        this.fsyncIntervalMillis = fsyncIntervalMillis;
+        this.snapshotIntervalMillis = snapshotIntervalMillis;
+        this.snapshotOnShutdown = snapshotOnShutdown;
+        this.snapshotHistoryTicks = snapshotHistoryTicks;
+    }
+
+    @PostConstruct
+    void replay() {
+        long started = System.nanoTime();
+        JournalReplay replay = new JournalReplay(jdbcTemplate);
+        long snapshotPosition = new TransactionTemplate(transactionManager).execute(status -> {
+            try {
+                long position = StateSnapshot.read(directory.resolve(SNAPSHOT_FILE), replay);
+                replay.snapshotLoaded();
+                journal = MappedJournal.open(directory, segmentSize, fsyncPolicy, Math.max(position, 0), replay);
+                replay.finish();
+                return position;
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to read snapshot in " + directory, e);
+            }
+        });
+        restored = snapshotPosition >= 0 || journal.getRecords() > 0;
+        LOG.info("Restored {} stocks and {} price ticks from {} in {} ms", replay.getStockCount(), replay.getTickCount(),
+                directory.toAbsolutePath(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "tick-journal");
+            thread.setDaemon(true);
+            return thread;
+        });
+        if (fsyncPolicy == FsyncPolicy.INTERVAL) {
+            scheduler.scheduleWithFixedDelay(journal::force, fsyncIntervalMillis, fsyncIntervalMillis, TimeUnit.MILLISECONDS);
+        }
+        if (snapshotIntervalMillis > 0) {
+            scheduler.scheduleWithFixedDelay(() -> {
+                try {
+                    takeSnapshot();
+                } catch (RuntimeException e) {
+                    LOG.error("Failed to take snapshot in {}", directory.toAbsolutePath(), e);
+                }
+            }, snapshotIntervalMillis, snapshotIntervalMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        if (!restored) {
+            takeSnapshot();
+        }
+    }
+
+    /**
+     * Holds snapshots (including the initial one and the one on shutdown) until {@link #releaseSnapshots()}.
+     * A snapshot of a partially loaded dataset would be restored on the next start instead of loading the whole one.
+     */
+    public void holdSnapshots() {
+        snapshotsHeld = true;
+    }
+
+    /**
+     * Releases snapshots which are held by {@link #holdSnapshots()} and takes one right away.
+     *
+     * @throws UncheckedIOException when the snapshot can't be written.
+     */
+    public synchronized void releaseSnapshots() {
+        snapshotsHeld = false;
+        takeSnapshot();
+    }
+
+    /**
+     * Appends update before its transaction commits, it isn't durable until the journal is synced according to the fsync policy.
+     *
+     * @throws UncheckedIOException when the record can't be written, the transaction is rolled back then.
+     */
+    @TransactionalEventListener(phase = TransactionPhase.BEFORE_COMMIT)
+    public void onStockUpdated(@NonNull StockUpdatedEvent event) {
+        // optimistic lock conflicts are reported by the flush, before anything is appended
+        stockRepository.flush();
+        appendLock.readLock().lock();
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+            @Override
+            public void afterCompletion(int status) {
+                appendLock.readLock().unlock();
+            }
+        });
+        StockInfo stock = event.getStock();
+        if (event.isNewStock()) {
+            journal.appendStock(stock.getId(), stock.getName());
+        }
+        journal.appendTick(stock.getId(), stock.getCurrentPrice(), stock.getLastUpdate());
+    }
+
+    /**
+     * Writes snapshot of all stocks with their recent history and deletes journal segments which precede it.
+     * Records which are appended while the snapshot is taken may get into it too, they are skipped when the journal is replayed.
+     * Does nothing while snapshots are held.
+     *
+     * @throws UncheckedIOException when the snapshot can't be written.
+     */
+    public synchronized void takeSnapshot() {
+        if (snapshotsHeld) {
+            LOG.info("Snapshot is held until the stocks are loaded");
+            return;
+        }
+        long started = System.nanoTime();
+        awaitWriteBehind();
+        long position;
+        appendLock.writeLock().lock();
+        try {
+            position = journal.position();
+        } finally {
+            appendLock.writeLock().unlock();
+        }
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.setReadOnly(true);
+        int stocks = transactionTemplate.execute(status -> {
+            try (StateSnapshot snapshot = StateSnapshot.create(directory.resolve(SNAPSHOT_FILE), position)) {
+                for (StockInfo stock : stockRepository.findAllInfo()) {
+                    snapshot.writeStock(stock.getId(), stock.getName(),
+                            priceHistoryStore.findPage(stock.getId(), null, 0, null, snapshotHistoryTicks));
+                }
+                return snapshot.commit();
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to write snapshot in " + directory, e);
+            }
+        });
+        journal.deleteSegmentsBefore(position);
+        LOG.info("Took snapshot of {} stocks in {} ms", stocks, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+    }
+
+    /**
+     * @return number of journal records after the latest snapshot.
+     */
+    public long getRecords() {
+        return journal.getRecords();
+    }
+
+    @PreDestroy
+    void close() throws IOException {
+        scheduler.shutdownNow();
+        try {
+            if (snapshotOnShutdown) {
+                takeSnapshot();
+            }
+        } finally {
+            journal.close();
+        }
+    }
+
+    private void awaitWriteBehind() {
+        if (priceHistoryWriteBehind != null) {
+            try {
+                priceHistoryWriteBehind.awaitFlushed(WRITE_BEHIND_FLUSH_TIMEOUT_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package com.nvrsk.metrics;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+/**
+ * Counts SQL statements which Hibernate prepares on the current thread, see {@link QueryCountFilter}.
+ * Registered with {@code spring.jpa.properties.hibernate.session_factory.statement_inspector}.
+ */
+public class QueryCountInspector implements StatementInspector {
+
+    private static final ThreadLocal<int[]> COUNTER = ThreadLocal.withInitial(() -> new int[1]);
+
+    @Override
+    public String inspect(String sql) {
+        COUNTER.get()[0]++;
+        return sql;
+    }
+
+    /**
+     * @return number of statements prepared on the current thread since the previous call.
+     */
+    static int reset() {
+        int[] counter = COUNTER.get();
+        int count = counter[0];
+        counter[0] = 0;
+        return count;
+    }
+}
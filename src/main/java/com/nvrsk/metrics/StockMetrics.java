@@ -0,0 +1,188 @@
+package com.nvrsk.metrics;
+
+import com.nvrsk.cache.StockNameIndex;
+import com.nvrsk.cache.StockSnapshotCache;
+import com.nvrsk.candle.CandleService;
+import com.nvrsk.history.ColumnarPriceHistoryStore;
+import com.nvrsk.history.PriceHistoryWriteBehind;
+import com.nvrsk.journal.TickJournal;
+import com.nvrsk.service.PriceHistoryService;
+import com.nvrsk.service.StockUpdateEngine;
+import com.nvrsk.stats.StatsService;
+import com.nvrsk.stream.PriceStreamService;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.MultiGauge;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.lang.NonNull;
+import org.springframework.stereotype.Component;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Gauges of the in-memory caches and internal queues of the application, plus price history size per stock.
+ * Components which are disabled by configuration have no meters.
+ * <p>
+ * History size is counted by the history store, which scans the whole history,
+ * so the counts are refreshed at most once per {@code stocks.metrics.history-refresh-ms}.
+ * Only stocks with the longest history, up to {@code stocks.metrics.history-top}, have their own gauge tagged by stock id,
+ * so the number of time series doesn't grow with the number of stocks.
+ */
+@Component
+public class StockMetrics implements MeterBinder {
+
+    @Autowired
+    private StockSnapshotCache stockSnapshotCache;
+
+    @Autowired
+    private StockNameIndex stockNameIndex;
+
+    @Autowired
+    private CandleService candleService;
+
+    @Autowired
+    private StatsService statsService;
+
+    @Autowired
+    private PriceStreamService priceStreamService;
+
+    @Autowired
+    private PriceHistoryService priceHistoryService;
+
+    @Autowired(required = false)
+    private PriceHistoryWriteBehind priceHistoryWriteBehind;
+
+    @Autowired(required = false)
+    private StockUpdateEngine stockUpdateEngine;
+
+    @Autowired(required = false)
+    private ColumnarPriceHistoryStore columnarPriceHistoryStore;
+
+    @Autowired(required = false)
+    private TickJournal tickJournal;
+
+    private final long historyRefreshMillis;
+
+    private final int historyTop;
+
+    private MultiGauge historyTopRows;
+
+    private long historyRefreshedAt;
+
+    private HistorySize historySize = new HistorySize(0, 0, 0);
+
+    @Autowired
+    public StockMetrics(@Value("${stocks.metrics.history-refresh-ms:60000}") long historyRefreshMillis,
+                        @Value("${stocks.metrics.history-top:10}") int historyTop) {
+        this.historyRefreshMillis = historyRefreshMillis;
+        this.historyTop = historyTop;
+    }
+
+    @Override
+    public void bindTo(@NonNull MeterRegistry registry) {
+        Gauge.builder("stocks.cache.size", stockSnapshotCache, StockSnapshotCache::size)
+                .tag("cache", "snapshot").register(registry);
+        FunctionCounter.builder("stocks.cache.requests", stockSnapshotCache, StockSnapshotCache::getHits)
+                .tag("cache", "snapshot").tag("result", "hit").register(registry);
+        FunctionCounter.builder("stocks.cache.requests", stockSnapshotCache, StockSnapshotCache::getMisses)
+                .tag("cache", "snapshot").tag("result", "miss").register(registry);
+        FunctionCounter.builder("stocks.cache.evictions", stockSnapshotCache, StockSnapshotCache::getEvictions)
+                .tag("cache", "snapshot").register(registry);
+        Gauge.builder("stocks.cache.size", stockNameIndex, StockNameIndex::size)
+                .tag("cache", "names").register(registry);
+        Gauge.builder("stocks.cache.size", candleService, CandleService::getSeriesCount)
+                .tag("cache", "candles").register(registry);
+        Gauge.builder("stocks.cache.size", statsService, StatsService::getStatsCount)
+                .tag("cache", "stats").register(registry);
+
+        Gauge.builder("stocks.stream.subscribers", priceStreamService, PriceStreamService::getSubscriberCount)
+                .register(registry);
+        FunctionCounter.builder("stocks.stream.dropped", priceStreamService, PriceStreamService::getDroppedSubscribers)
+                .register(registry);
+
+        if (priceHistoryWriteBehind != null) {
+            Gauge.builder("stocks.queue.size", priceHistoryWriteBehind, PriceHistoryWriteBehind::getQueueSize)
+                    .tag("queue", "history-write-behind").register(registry);
+            FunctionCounter.builder("stocks.history.write-behind.written", priceHistoryWriteBehind, PriceHistoryWriteBehind::getWritten)
+                    .register(registry);
+            FunctionCounter.builder("stocks.history.write-behind.failed", priceHistoryWriteBehind, PriceHistoryWriteBehind::getFailed)
+                    .register(registry);
+        }
+        if (stockUpdateEngine != null) {
+            Gauge.builder("stocks.queue.size", stockUpdateEngine, StockUpdateEngine::getQueueSize)
+                    .tag("queue", "update-engine").register(registry);
+        }
+        if (columnarPriceHistoryStore != null) {
+            Gauge.builder("stocks.history.columnar.capacity", columnarPriceHistoryStore, ColumnarPriceHistoryStore::getCapacityBytes)
+                    .baseUnit("bytes").register(registry);
+        }
+        if (tickJournal != null) {
+            Gauge.builder("stocks.journal.records", tickJournal, TickJournal::getRecords)
+                    .register(registry);
+        }
+
+        Gauge.builder("stocks.history.rows", this, metrics -> metrics.getHistorySize().rows)
+                .description("Price history records of all stocks").register(registry);
+        Gauge.builder("stocks.history.rows.per.stock", this, metrics -> metrics.getHistorySize().maxRowsPerStock)
+                .tag("statistic", "max").register(registry);
+        Gauge.builder("stocks.history.rows.per.stock", this, metrics -> metrics.getHistorySize().meanRowsPerStock())
+                .tag("statistic", "mean").register(registry);
+        historyTopRows = MultiGauge.builder("stocks.history.rows.top")
+                .description("Price history records of the stocks with the longest history").register(registry);
+    }
+
+    private synchronized HistorySize getHistorySize() {
+        long now = System.currentTimeMillis();
+        if (historyRefreshedAt == 0 || now - historyRefreshedAt >= historyRefreshMillis) {
+            Map<Long, Long> counts = priceHistoryService.countByStock();
+            long rows = 0;
+            long maxRows = 0;
+            for (long stockRows : counts.values()) {
+                rows += stockRows;
+                maxRows = Math.max(maxRows, stockRows);
+            }
+            historySize = new HistorySize(rows, counts.size(), maxRows);
+            historyRefreshedAt = now;
+            registerHistoryTop(counts);
+        }
+        return historySize;
+    }
+
+    private void registerHistoryTop(@NonNull Map<Long, Long> counts) {
+        if (historyTopRows == null) {
+            return;
+        }
+        List<MultiGauge.Row<?>> rows = counts.entrySet().stream()
+                .sorted(Map.Entry.<Long, Long>comparingByValue(Comparator.reverseOrder()).thenComparing(Map.Entry.comparingByKey()))
+                .limit(historyTop)
+                .map(count -> MultiGauge.Row.of(Tags.of("stock", String.valueOf(count.getKey())), count.getValue()))
+                .collect(Collectors.toList());
+        historyTopRows.register(rows, true);
+    }
+
+    private static final class HistorySize {
+
+        private final long rows;
+
+        private final int stocks;
+
+        private final long maxRowsPerStock;
+
+        private HistorySize(long rows, int stocks, long maxRowsPerStock) {
+            this.rows = rows;
+            this.stocks = stocks;
+            this.maxRowsPerStock = maxRowsPerStock;
+        }
+
+        private double meanRowsPerStock() {
+            return stocks == 0 ? 0 : rows / (double) stocks;
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.nvrsk.model;
+
+import java.time.Instant;
+
+/**
+ * Immutable open/high/low/close bar of stock prices within a time interval.
+ */
+public final class Candle {
+
+    private final Instant startDate;
+
+    private final double open;
+
+    private final double high;
+
+    private final double low;
+
+    private final double close;
+
+    private final long ticks;
+
+    public Candle(Instant startDate, double open, double high, double low, double close, long ticks) {
+        this.startDate = startDate;
+        this.open = open;
+        this.high = high;
+        this.low = low;
+        this.close = close;
+        this.ticks = ticks;
+    }
+
+
+    public Instant getStartDate() {
+        return startDate;
+    }
+
+    public double getOpen() {
+        return open;
+    }
+
+    public double getHigh() {
+        return high;
+    }
+
+    public double getLow() {
+        return low;
+    }
+
+    public double getClose() {
+        return close;
+    }
+
+    public long getTicks() {
+        return ticks;
+    }
+
+
+    @Override
+    public String toString() {
+        return "Candle{" +
+                "startDate=" + startDate +
+                ", open=" + open +
+                ", high=" + high +
+                ", low=" + low +
+                ", close=" + close +
+                ", ticks=" + ticks +
+                '}';
+    }
+}
@@ -0,0 +1,37 @@
+package com.nvrsk.model;
+
+import java.util.List;
+
+/**
+ * One page of {@link PriceHistory} records of a stock, ordered from the newest to the oldest one.
+ */
+public class HistoryPage {
+
+    private final List<PriceHistory> items;
+
+    private final String nextCursor;
+
+    public HistoryPage(List<PriceHistory> items, String nextCursor) {
+        this.items = items;
+        this.nextCursor = nextCursor;
+    }
+
+    public List<PriceHistory> getItems() {
+        return items;
+    }
+
+    /**
+     * @return opaque cursor to request the next page with or {@code null} when this page is the last one.
+     */
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    @Override
+    public String toString() {
+        return "HistoryPage{" +
+                "items=" + items +
+                ", nextCursor='" + nextCursor + '\'' +
+                '}';
+    }
+}
@@ -0,0 +1,57 @@
+package com.nvrsk.model;
+
+/**
+ * Immutable outcome of a single stock addition within a batch:
+ * either id of the added stock or the reason why it wasn't added.
+ */
+public final class NewStockResult {
+
+    private final String name;
+
+    private final Long id;
+
+    private final String error;
+
+    private NewStockResult(String name, Long id, String error) {
+        this.name = name;
+        this.id = id;
+        this.error = error;
+    }
+
+    public static NewStockResult added(Stock stock) {
+        return new NewStockResult(stock.getName(), stock.getId(), null);
+    }
+
+    public static NewStockResult failed(String name, String error) {
+        return new NewStockResult(name, null, error);
+    }
+
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return id of the added stock or {@code null} when it wasn't added.
+     */
+    public Long getId() {
+        return id;
+    }
+
+    /**
+     * @return reason why the stock wasn't added or {@code null} when it was added.
+     */
+    public String getError() {
+        return error;
+    }
+
+
+    @Override
+    public String toString() {
+        return "NewStockResult{" +
+                "name='" + name + '\'' +
+                ", id=" + id +
+                ", error='" + error + '\'' +
+                '}';
+    }
+}
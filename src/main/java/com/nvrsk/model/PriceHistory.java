@@ -2,21 +2,20 @@ package com.nvrsk.model;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
 
-import javax.persistence.Entity;
-import javax.persistence.GeneratedValue;
-import javax.persistence.Id;
-import javax.persistence.ManyToOne;
+import javax.persistence.*;
 import java.time.Instant;
 
 @Entity
+@Table(indexes = @Index(name = "IDX_PRICE_HISTORY_STOCK_START", columnList = "stock_id, startDate DESC, id DESC"))
 public class PriceHistory {
 
     @Id
-    @GeneratedValue
+    @SequenceGenerator( name = "priceHistorySequence", sequenceName = "PRICE_HISTORY_SEQUENCE", allocationSize = 50, initialValue = 1 )
+    @GeneratedValue( strategy = GenerationType.SEQUENCE, generator = "priceHistorySequence")
     @JsonIgnore
     private Long id;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JsonIgnore
     private Stock stock;
 
@@ -0,0 +1,82 @@
+package com.nvrsk.model;
+
+/**
+ * Immutable statistics of stock prices within a rolling time window.
+ * Everything but the number of ticks is {@code null} when there were no ticks within the window.
+ */
+public final class PriceStats {
+
+    private final String window;
+
+    private final long ticks;
+
+    private final Double average;
+
+    private final Double min;
+
+    private final Double max;
+
+    private final Double stdDev;
+
+    private final Double volatility;
+
+    public PriceStats(String window, long ticks, Double average, Double min, Double max, Double stdDev, Double volatility) {
+        this.window = window;
+        this.ticks = ticks;
+        this.average = average;
+        this.min = min;
+        this.max = max;
+        this.stdDev = stdDev;
+        this.volatility = volatility;
+    }
+
+
+    public String getWindow() {
+        return window;
+    }
+
+    public long getTicks() {
+        return ticks;
+    }
+
+    public Double getAverage() {
+        return average;
+    }
+
+    public Double getMin() {
+        return min;
+    }
+
+    public Double getMax() {
+        return max;
+    }
+
+    /**
+     * @return population standard deviation of prices.
+     */
+    public Double getStdDev() {
+        return stdDev;
+    }
+
+    /**
+     * @return standard deviation of log returns between consecutive ticks, not annualized,
+     * or {@code null} when there was a single tick within the window.
+     */
+    public Double getVolatility() {
+        return volatility;
+    }
+
+
+    @Override
+    public String toString() {
+        return "PriceStats{" +
+                "window='" + window + '\'' +
+                ", ticks=" + ticks +
+                ", average=" + average +
+                ", min=" + min +
+                ", max=" + max +
+                ", stdDev=" + stdDev +
+                ", volatility=" + volatility +
+                '}';
+    }
+}
@@ -0,0 +1,44 @@
+package com.nvrsk.model;
+
+import java.time.Instant;
+
+/**
+ * Immutable price of a stock since the given moment, the detached counterpart of {@link PriceHistory}.
+ */
+public final class PriceTick {
+
+    private final long stockId;
+
+    private final double price;
+
+    private final Instant startDate;
+
+    public PriceTick(long stockId, double price, Instant startDate) {
+        this.stockId = stockId;
+        this.price = price;
+        this.startDate = startDate;
+    }
+
+
+    public long getStockId() {
+        return stockId;
+    }
+
+    public double getPrice() {
+        return price;
+    }
+
+    public Instant getStartDate() {
+        return startDate;
+    }
+
+
+    @Override
+    public String toString() {
+        return "PriceTick{" +
+                "stockId=" + stockId +
+                ", price=" + price +
+                ", startDate=" + startDate +
+                '}';
+    }
+}
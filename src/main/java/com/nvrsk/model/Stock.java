@@ -9,10 +9,16 @@ import java.util.List;
 
 
 @Entity
+@Table(uniqueConstraints = @UniqueConstraint(name = Stock.NAME_CONSTRAINT, columnNames = "name"))
 public class Stock {
 
+    /**
+     * Name of the unique constraint (and its index) on stock name.
+     */
+    public static final String NAME_CONSTRAINT = "UK_STOCK_NAME";
+
     @Id
-    @SequenceGenerator( name = "jpaSequence", sequenceName = "JPA_SEQUENCE", allocationSize = 1, initialValue = 1 )
+    @SequenceGenerator( name = "jpaSequence", sequenceName = "JPA_SEQUENCE", allocationSize = 50, initialValue = 1 )
     @GeneratedValue( strategy = GenerationType.SEQUENCE, generator = "jpaSequence")
     @Column(name = "id", nullable = false, updatable = false)
     private Long id;
@@ -23,7 +29,11 @@ public class Stock {
 
     private Instant lastUpdate;
 
-    @OneToMany(fetch = FetchType.EAGER, mappedBy = "stock")
+    @Version
+    @JsonIgnore
+    private long version;
+
+    @OneToMany(fetch = FetchType.LAZY, mappedBy = "stock")
     @OrderBy("startDate DESC")
     @JsonIgnore
     private List<PriceHistory> history = new ArrayList<>();
@@ -45,6 +55,10 @@ public class Stock {
         return lastUpdate;
     }
 
+    public long getVersion() {
+        return version;
+    }
+
     public List<PriceHistory> getHistory() {
         return history;
     }
@@ -67,6 +81,10 @@ public class Stock {
         this.lastUpdate = lastUpdate;
     }
 
+    public void setVersion(long version) {
+        this.version = version;
+    }
+
     public void setHistory(List<PriceHistory> history) {
         this.history = history;
     }
@@ -0,0 +1,56 @@
+package com.nvrsk.model;
+
+import java.time.Instant;
+
+/**
+ * Immutable view of a {@link Stock} without its price history.
+ */
+public final class StockInfo {
+
+    private final long id;
+
+    private final String name;
+
+    private final double currentPrice;
+
+    private final Instant lastUpdate;
+
+    public StockInfo(long id, String name, double currentPrice, Instant lastUpdate) {
+        this.id = id;
+        this.name = name;
+        this.currentPrice = currentPrice;
+        this.lastUpdate = lastUpdate;
+    }
+
+    public static StockInfo of(Stock stock) {
+        return new StockInfo(stock.getId(), stock.getName(), stock.getCurrentPrice(), stock.getLastUpdate());
+    }
+
+
+    public long getId() {
+        return id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public double getCurrentPrice() {
+        return currentPrice;
+    }
+
+    public Instant getLastUpdate() {
+        return lastUpdate;
+    }
+
+
+    @Override
+    public String toString() {
+        return "StockInfo{" +
+                "id=" + id +
+                ", name='" + name + '\'' +
+                ", currentPrice=" + currentPrice +
+                ", lastUpdate=" + lastUpdate +
+                '}';
+    }
+}
@@ -0,0 +1,43 @@
+package com.nvrsk.model;
+
+import java.time.Instant;
+
+/**
+ * Aggregated version of all {@link Stock}s, it changes whenever a stock is added or updated.
+ */
+public final class StockListVersion {
+
+    private final long count;
+
+    private final long versionSum;
+
+    private final Instant lastUpdate;
+
+    public StockListVersion(Long count, Long versionSum, Instant lastUpdate) {
+        this.count = count == null ? 0 : count;
+        this.versionSum = versionSum == null ? 0 : versionSum;
+        this.lastUpdate = lastUpdate;
+    }
+
+
+    /**
+     * @return number of stocks.
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * @return sum of {@link Stock#getVersion()} of all stocks, every update of a stock increments it.
+     */
+    public long getVersionSum() {
+        return versionSum;
+    }
+
+    /**
+     * @return the latest {@link Stock#getLastUpdate()} or {@code null} when there are no stocks.
+     */
+    public Instant getLastUpdate() {
+        return lastUpdate;
+    }
+}
@@ -1,12 +1,128 @@
 package com.nvrsk.repository;
 
 import com.nvrsk.model.PriceHistory;
+import com.nvrsk.model.PriceTick;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import javax.persistence.QueryHint;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.QueryHints.HINT_READONLY;
+
 /**
  * Repository for {@link PriceHistory} entities to perform base operations.
+ * Paging queries order by stock id too, so their order matches the {@code (stock_id, startDate desc, id desc)} index
+ * and a page is read from the index without sorting the whole history of the stock.
  */
 @Repository
 public interface PriceHistoryRepository extends JpaRepository<PriceHistory, Long> {
+
+    /**
+     * Fetch size of streaming queries.
+     */
+    String STREAM_FETCH_SIZE = "1000";
+
+    /**
+     * Upper bound of start dates, which gives the first page a range to seek in the index like the next pages have.
+     * Without a range H2 reads the stock from its single column foreign key index and sorts the whole history.
+     */
+    Instant MAX_START_DATE = Instant.parse("9999-12-31T23:59:59Z");
+
+    /**
+     * Returns the newest price history records of a stock.
+     */
+    default List<PriceHistory> findLatest(long stockId, Pageable pageable) {
+        return findLatestAt(stockId, MAX_START_DATE, pageable);
+    }
+
+    /**
+     * Returns the newest price history records of a stock which started not before {@code from}.
+     */
+    @Query("select h from PriceHistory h where h.stock.id = :stockId" +
+            " and h.startDate >= :from" +
+            " order by h.stock.id, h.startDate desc, h.id desc")
+    List<PriceHistory> findLatestFrom(@Param("stockId") long stockId,
+                                      @Param("from") Instant from,
+                                      Pageable pageable);
+
+    /**
+     * Returns price history records of a stock which are older than the given (startDate, id) position.
+     * The position predicate is preceded by a plain bound on the start date, so the index is sought to the position
+     * instead of being scanned from the newest record.
+     */
+    @Query("select h from PriceHistory h where h.stock.id = :stockId" +
+            " and h.startDate <= :startDate" +
+            " and (h.startDate < :startDate or (h.startDate = :startDate and h.id < :id))" +
+            " order by h.stock.id, h.startDate desc, h.id desc")
+    List<PriceHistory> findOlderThan(@Param("stockId") long stockId,
+                                     @Param("startDate") Instant startDate,
+                                     @Param("id") long id,
+                                     Pageable pageable);
+
+    /**
+     * Returns price history records of a stock which are older than the given (startDate, id) position
+     * and started not before {@code from}, see {@link #findOlderThan(long, Instant, long, Pageable)}.
+     */
+    @Query("select h from PriceHistory h where h.stock.id = :stockId" +
+            " and h.startDate <= :startDate and h.startDate >= :from" +
+            " and (h.startDate < :startDate or (h.startDate = :startDate and h.id < :id))" +
+            " order by h.stock.id, h.startDate desc, h.id desc")
+    List<PriceHistory> findOlderThanFrom(@Param("stockId") long stockId,
+                                         @Param("startDate") Instant startDate,
+                                         @Param("id") long id,
+                                         @Param("from") Instant from,
+                                         Pageable pageable);
+
+    /**
+     * Returns price history records of a stock started not after the given moment, from the newest one.
+     */
+    @Query("select h from PriceHistory h where h.stock.id = :stockId" +
+            " and h.startDate <= :at" +
+            " order by h.stock.id, h.startDate desc, h.id desc")
+    List<PriceHistory> findLatestAt(@Param("stockId") long stockId,
+                                    @Param("at") Instant at,
+                                    Pageable pageable);
+
+    /**
+     * Returns price history record of a stock which was actual at the given moment, i.e. the latest one started before it.
+     * It is the first entry of the index after a seek to the moment.
+     */
+    default Optional<PriceHistory> findAt(long stockId, Instant at) {
+        return findLatestAt(stockId, at, PageRequest.of(0, 1)).stream().findFirst();
+    }
+
+    /**
+     * Streams whole price history ordered by stock and time.
+     * Rows are read as detached {@link PriceTick}s, so they aren't kept by the persistence context.
+     * Must be consumed within a transaction and closed afterwards.
+     */
+    @QueryHints({@QueryHint(name = HINT_FETCH_SIZE, value = STREAM_FETCH_SIZE), @QueryHint(name = HINT_READONLY, value = "true")})
+    @Query("select new com.nvrsk.model.PriceTick(h.stock.id, h.price, h.startDate) from PriceHistory h" +
+            " order by h.stock.id, h.startDate, h.id")
+    Stream<PriceTick> streamAll();
+
+    /**
+     * Streams price history of the given stocks ordered by stock and time, see {@link #streamAll()}.
+     */
+    @QueryHints({@QueryHint(name = HINT_FETCH_SIZE, value = STREAM_FETCH_SIZE), @QueryHint(name = HINT_READONLY, value = "true")})
+    @Query("select new com.nvrsk.model.PriceTick(h.stock.id, h.price, h.startDate) from PriceHistory h" +
+            " where h.stock.id in :stockIds order by h.stock.id, h.startDate, h.id")
+    Stream<PriceTick> streamByStockIds(@Param("stockIds") Collection<Long> stockIds);
+
+    /**
+     * Returns (stock id, number of records) pairs of the stocks which have any price history.
+     */
+    @Query("select h.stock.id, count(h) from PriceHistory h group by h.stock.id")
+    List<Object[]> countByStock();
 }
@@ -1,9 +1,15 @@
 package com.nvrsk.repository;
 
 import com.nvrsk.model.Stock;
+import com.nvrsk.model.StockInfo;
+import com.nvrsk.model.StockListVersion;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 /**
@@ -12,5 +18,18 @@ import java.util.Optional;
 @Repository
 public interface StockRepository extends JpaRepository<Stock, Long> {
 
-    Optional<Stock> findByName(String name);
+    @Query("select new com.nvrsk.model.StockInfo(s.id, s.name, s.currentPrice, s.lastUpdate) from Stock s order by s.id")
+    List<StockInfo> findAllInfo();
+
+    @Query("select new com.nvrsk.model.StockInfo(s.id, s.name, s.currentPrice, s.lastUpdate) from Stock s where s.id = :id")
+    Optional<StockInfo> findInfoById(@Param("id") long id);
+
+    @Query("select new com.nvrsk.model.StockListVersion(count(s), sum(s.version), max(s.lastUpdate)) from Stock s")
+    StockListVersion findListVersion();
+
+    @Query("select s.id from Stock s where s.id in :ids")
+    List<Long> findExistingIds(@Param("ids") Collection<Long> ids);
+
+    @Query("select s.name from Stock s where s.name in :names")
+    List<String> findExistingNames(@Param("names") Collection<String> names);
 }
@@ -0,0 +1,35 @@
+package com.nvrsk.request;
+
+/**
+ * Class containing data about incoming requests to update price for a stock as a part of a batch.
+ */
+public class StockPriceUpdateRequest {
+
+    private Long id;
+
+    private Double price;
+
+    public Long getId() {
+        return id;
+    }
+
+    public Double getPrice() {
+        return price;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public void setPrice(Double price) {
+        this.price = price;
+    }
+
+    @Override
+    public String toString() {
+        return "StockPriceUpdateRequest{" +
+                "id=" + id +
+                ", price=" + price +
+                '}';
+    }
+}
@@ -0,0 +1,31 @@
+package com.nvrsk.seed;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * {@code seed} health component with progress of the {@link StockSeeder}, it is down once seeding fails.
+ */
+@Component
+@ConditionalOnProperty(name = "stocks.seed.stocks-file")
+public class SeedHealthIndicator implements HealthIndicator {
+
+    @Autowired
+    private StockSeeder stockSeeder;
+
+    @Override
+    public Health health() {
+        StockSeeder.State state = stockSeeder.getState();
+        Health.Builder health = state == StockSeeder.State.FAILED
+                ? Health.down().withDetail("error", stockSeeder.getFailure())
+                : Health.up();
+        return health.withDetail("state", state)
+                .withDetail("stocks", stockSeeder.getStockCount())
+                .withDetail("ticks", stockSeeder.getTickCount())
+                .withDetail("loadMillis", stockSeeder.getLoadMillis())
+                .build();
+    }
+}
@@ -0,0 +1,38 @@
+package com.nvrsk.seed;
+
+import org.springframework.lang.NonNull;
+
+import java.util.Locale;
+
+/**
+ * Defines when seed files are loaded.
+ */
+public enum SeedMode {
+
+    /**
+     * Files are loaded while the application context starts, so the application is ready only with the whole dataset.
+     */
+    SYNC,
+
+    /**
+     * Files are loaded in background once the application is ready, requests are served while the dataset is being loaded.
+     */
+    ASYNC;
+
+    /**
+     * Returns mode by its name.
+     *
+     * @param name - name of the mode, case insensitive.
+     * @return seed mode.
+     * @throws IllegalArgumentException when there is no mode with such name.
+     */
+    @NonNull
+    public static SeedMode of(@NonNull String name) {
+        for (SeedMode mode : values()) {
+            if (mode.name().equals(name.trim().toUpperCase(Locale.ROOT))) {
+                return mode;
+            }
+        }
+        throw new IllegalArgumentException("Unsupported seed mode: " + name);
+    }
+}
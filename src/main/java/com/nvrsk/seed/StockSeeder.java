@@ -0,0 +1,437 @@
+package com.nvrsk.seed;
+
+import com.nvrsk.cache.StockNameIndex;
+import com.nvrsk.history.ColumnarPriceHistoryStore;
+import com.nvrsk.history.PriceHistoryStore;
+import com.nvrsk.journal.TickJournal;
+import com.nvrsk.model.PriceTick;
+import com.nvrsk.repository.StockRepository;
+import com.sun.istack.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.lang.NonNull;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * Bulk loader of stocks and their price history from local CSV files, which prepares a big dataset for staging and performance runs.
+ * <p>
+ * Stocks file has {@code id,name,currentPrice,lastUpdate} header and must be ordered by id,
+ * history file has {@code stockId,price,startDate} header as written by the CSV history export. Values aren't quoted.
+ * A single reader splits the lines into batches of {@code stocks.seed.batch-size} rows,
+ * {@code stocks.seed.threads} writers insert every batch with a plain JDBC batch in its own transaction.
+ * <p>
+ * Stocks keep their ids, the entity sequence is moved past the last of them before any id is allocated.
+ * History records take ids from their sequence in blocks of its allocation size, the same way Hibernate does,
+ * so stocks and ticks which are added while seeding is in progress don't clash with the seeded ones.
+ * With {@code columnar} history store the ticks are appended to the store by the reader, in the order of the file.
+ * <p>
+ * Nothing is loaded when the database already has stocks, e.g. restored from the journal.
+ * Seeded rows don't go through the journal, in {@code async} mode its snapshots are held until the files are loaded
+ * and a snapshot is taken right after that, so the next start restores the whole dataset instead of a part of it.
+ * For the same reason candles and statistics aren't backfilled until the files are loaded,
+ * and {@link StockNameIndex} picks up the seeded stocks once they are loaded.
+ * Enabled with {@code stocks.seed.stocks-file}, {@code stocks.seed.mode} is one of {@link SeedMode}.
+ */
+@Component
+@Lazy(false)
+@ConditionalOnProperty(name = "stocks.seed.stocks-file")
+public class StockSeeder {
+
+    private static final Logger LOG = LoggerFactory.getLogger(StockSeeder.class);
+
+    /**
+     * Allocation size of the entity sequences.
+     */
+    private static final long SEQUENCE_BLOCK = 50;
+
+    /**
+     * Length of the stocks file tail which is read to find the last stock id.
+     */
+    private static final int TAIL_BYTES = 64 * 1024;
+
+    private static final int STOCK_COLUMNS = 4;
+
+    private static final int TICK_COLUMNS = 3;
+
+    /**
+     * Seeding progress.
+     */
+    public enum State {
+        PENDING, LOADING, LOADED, SKIPPED, FAILED
+    }
+
+    private final Path stocksFile;
+
+    @Nullable
+    private final Path historyFile;
+
+    private final SeedMode mode;
+
+    private final int threads;
+
+    private final int batchSize;
+
+    private final AtomicLong stockCount = new AtomicLong();
+
+    private final AtomicLong tickCount = new AtomicLong();
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private StockRepository stockRepository;
+
+    @Autowired
+    private PriceHistoryStore priceHistoryStore;
+
+    @Autowired
+    private StockNameIndex stockNameIndex;
+
+    /**
+     * Journal (when it is enabled) is replayed before seeding, so restored stocks aren't overwritten.
+     */
+    @Autowired(required = false)
+    private TickJournal tickJournal;
+
+    private volatile State state = State.PENDING;
+
+    private volatile long loadMillis;
+
+    @Nullable
+    private volatile String failure;
+
+    private long lastStockId;
+
+    @Nullable
+    private Thread thread;
+
+    @Autowired
+    public StockSeeder(@Value("${stocks.seed.stocks-file}") String stocksFile,
+                       @Value("${stocks.seed.history-file:}") String historyFile,
+                       @Value("${stocks.seed.mode:sync}") String mode,
+                       @Value("${stocks.seed.threads:0}") int threads,
+                       @Value("${stocks.seed.batch-size:1000}") int batchSize) {
+        this.stocksFile = Paths.get(stocksFile);
+        this.historyFile = historyFile.isEmpty() ? null : Paths.get(historyFile);
+        this.mode = SeedMode.of(mode);
+        this.threads = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        this.batchSize = batchSize;
+    }
+
+    @PostConstruct
+    void prepare() {
+        if (stockRepository.count() > 0) {
+            state = State.SKIPPED;
+            LOG.info("Database already has stocks, {} isn't loaded", stocksFile.toAbsolutePath());
+            return;
+        }
+        try {
+            lastStockId = readLastStockId(stocksFile);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read " + stocksFile, e);
+        }
+        if (lastStockId > 0) {
+            jdbcTemplate.execute("alter sequence JPA_SEQUENCE restart with " + (lastStockId + SEQUENCE_BLOCK));
+        }
+        if (mode == SeedMode.SYNC) {
+            seed();
+        } else if (tickJournal != null) {
+            tickJournal.holdSnapshots();
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        if (mode == SeedMode.ASYNC && state == State.PENDING) {
+            thread = new Thread(this::seed, "stock-seeder");
+            thread.start();
+        }
+    }
+
+    @PreDestroy
+    void stop() throws InterruptedException {
+        if (thread != null) {
+            thread.interrupt();
+            thread.join();
+        }
+    }
+
+    @NonNull
+    public State getState() {
+        return state;
+    }
+
+    /**
+     * @return {@code true} while the files are still to be loaded or being loaded.
+     */
+    public boolean isInProgress() {
+        State current = state;
+        return current == State.PENDING || current == State.LOADING;
+    }
+
+    /**
+     * @return number of stocks which are already inserted.
+     */
+    public long getStockCount() {
+        return stockCount.get();
+    }
+
+    /**
+     * @return number of price ticks which are already inserted.
+     */
+    public long getTickCount() {
+        return tickCount.get();
+    }
+
+    /**
+     * @return time it took to load the files once they are loaded.
+     */
+    public long getLoadMillis() {
+        return loadMillis;
+    }
+
+    /**
+     * @return error which seeding failed with.
+     */
+    @Nullable
+    public String getFailure() {
+        return failure;
+    }
+
+    private void seed() {
+        state = State.LOADING;
+        long started = System.nanoTime();
+        AtomicInteger writerNumber = new AtomicInteger();
+        ExecutorService writers = Executors.newFixedThreadPool(threads,
+                runnable -> new Thread(runnable, "stock-seeder-" + writerNumber.getAndIncrement()));
+        try {
+            load(stocksFile, STOCK_COLUMNS, writers, this::insertStocks);
+            if (historyFile != null) {
+                // ticks of a stock must be appended to its columns in order
+                Executor tickWriters = priceHistoryStore instanceof ColumnarPriceHistoryStore ? Runnable::run : writers;
+                load(historyFile, TICK_COLUMNS, tickWriters, this::insertTicks);
+            }
+            loadMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+            if (mode == SeedMode.ASYNC && tickJournal != null) {
+                tickJournal.releaseSnapshots();
+            }
+            state = State.LOADED;
+            if (mode == SeedMode.ASYNC) {
+                stockNameIndex.refresh();
+            }
+            LOG.info("Seeded {} stocks and {} price ticks in {} ms with {} writers",
+                    stockCount.get(), tickCount.get(), loadMillis, threads);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            fail(new IllegalStateException("Seeding is interrupted", e));
+        } catch (RuntimeException e) {
+            fail(e);
+        } finally {
+            writers.shutdownNow();
+        }
+    }
+
+    private void fail(RuntimeException e) {
+        failure = e.toString();
+        state = State.FAILED;
+        if (mode == SeedMode.SYNC) {
+            throw e;
+        }
+        LOG.error("Failed to seed stocks after {} stocks and {} price ticks", stockCount.get(), tickCount.get(), e);
+    }
+
+    /**
+     * Reads lines of a file in batches and hands them over to the writers.
+     * At most two batches per writer are waiting, so the reader doesn't run ahead of the database.
+     */
+    private void load(Path file, int columns, Executor writers, Consumer<List<String[]>> insert) throws InterruptedException {
+        Batches batches = new Batches(writers, insert);
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            reader.readLine();
+            long lineNumber = 1;
+            List<String[]> batch = new ArrayList<>(batchSize);
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.isEmpty()) {
+                    continue;
+                }
+                String[] values = line.split(",", -1);
+                if (values.length != columns) {
+                    throw new IllegalStateException(String.format("Line %d of %s has %d values instead of %d",
+                            lineNumber, file, values.length, columns));
+                }
+                batch.add(values);
+                if (batch.size() == batchSize) {
+                    batches.submit(batch);
+                    batch = new ArrayList<>(batchSize);
+                }
+            }
+            if (!batch.isEmpty()) {
+                batches.submit(batch);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read " + file, e);
+        } finally {
+            batches.await();
+        }
+        batches.rethrowFailure();
+    }
+
+    private void insertStocks(List<String[]> batch) {
+        List<Object[]> rows = new ArrayList<>(batch.size());
+        for (String[] values : batch) {
+            long id = Long.parseLong(values[0]);
+            if (id > lastStockId) {
+                throw new IllegalStateException(String.format("Stocks in %s aren't ordered by id, %d is after the last %d",
+                        stocksFile, id, lastStockId));
+            }
+            rows.add(new Object[]{id, values[1], Double.parseDouble(values[2]), Timestamp.from(Instant.parse(values[3]))});
+        }
+        new TransactionTemplate(transactionManager).execute(status -> jdbcTemplate.batchUpdate(
+                "insert into stock (id, name, current_price, last_update, version) values (?, ?, ?, ?, 0)", rows));
+        stockCount.addAndGet(rows.size());
+    }
+
+    private void insertTicks(List<String[]> batch) {
+        if (priceHistoryStore instanceof ColumnarPriceHistoryStore) {
+            List<PriceTick> ticks = new ArrayList<>(batch.size());
+            for (String[] values : batch) {
+                ticks.add(new PriceTick(Long.parseLong(values[0]), Double.parseDouble(values[1]), Instant.parse(values[2])));
+            }
+            priceHistoryStore.append(ticks);
+            tickCount.addAndGet(ticks.size());
+            return;
+        }
+        List<Object[]> rows = new ArrayList<>(batch.size());
+        long nextId = 0;
+        long lastId = -1;
+        for (String[] values : batch) {
+            if (nextId > lastId) {
+                // the first value of a new sequence doesn't have a whole block below it
+                lastId = jdbcTemplate.queryForObject("select next value for PRICE_HISTORY_SEQUENCE", Long.class);
+                nextId = Math.max(1, lastId - SEQUENCE_BLOCK + 1);
+            }
+            rows.add(new Object[]{nextId++, Long.parseLong(values[0]), Double.parseDouble(values[1]),
+                    Timestamp.from(Instant.parse(values[2]))});
+        }
+        new TransactionTemplate(transactionManager).execute(status -> jdbcTemplate.batchUpdate(
+                "insert into price_history (id, stock_id, price, start_date) values (?, ?, ?, ?)", rows));
+        tickCount.addAndGet(rows.size());
+    }
+
+    /**
+     * @return id of the last stock in the file or 0 when it has no stocks.
+     */
+    private static long readLastStockId(Path file) throws IOException {
+        try (SeekableByteChannel channel = Files.newByteChannel(file)) {
+            ByteBuffer tail = ByteBuffer.allocate((int) Math.min(channel.size(), TAIL_BYTES));
+            channel.position(channel.size() - tail.capacity());
+            while (tail.hasRemaining() && channel.read(tail) >= 0) {
+                // read the whole tail
+            }
+            String[] lines = new String(tail.array(), 0, tail.position(), StandardCharsets.UTF_8).split("\n");
+            for (int i = lines.length - 1; i >= 0; i--) {
+                String line = lines[i].trim();
+                if (!line.isEmpty()) {
+                    // the only line is the header
+                    if (!Character.isDigit(line.charAt(0))) {
+                        return 0;
+                    }
+                    int comma = line.indexOf(',');
+                    return Long.parseLong(comma < 0 ? line : line.substring(0, comma));
+                }
+            }
+            return 0;
+        }
+    }
+
+    /**
+     * Batches handed over to the writers, the first failed batch stops the reader.
+     */
+    private final class Batches {
+
+        private final int maxQueued = threads * 2;
+
+        private final Semaphore queued = new Semaphore(maxQueued);
+
+        private final AtomicReference<RuntimeException> failure = new AtomicReference<>();
+
+        private final Executor writers;
+
+        private final Consumer<List<String[]>> insert;
+
+        private Batches(Executor writers, Consumer<List<String[]>> insert) {
+            this.writers = writers;
+            this.insert = insert;
+        }
+
+        private void submit(List<String[]> batch) throws InterruptedException {
+            queued.acquire();
+            try {
+                rethrowFailure();
+                writers.execute(() -> {
+                    try {
+                        insert.accept(batch);
+                    } catch (RuntimeException e) {
+                        failure.compareAndSet(null, e);
+                    } finally {
+                        queued.release();
+                    }
+                });
+            } catch (RuntimeException e) {
+                queued.release();
+                throw e;
+            }
+        }
+
+        private void await() throws InterruptedException {
+            queued.acquire(maxQueued);
+            queued.release(maxQueued);
+        }
+
+        private void rethrowFailure() {
+            RuntimeException e = failure.get();
+            if (e != null) {
+                throw e;
+            }
+        }
+    }
+}
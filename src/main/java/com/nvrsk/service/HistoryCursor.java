@@ -0,0 +1,72 @@
+package com.nvrsk.service;
+
+import com.nvrsk.exception.IncorrectRequestException;
+import com.nvrsk.model.PriceHistory;
+import org.springframework.lang.NonNull;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * Position in the price history of a stock: the {@link PriceHistory#getStartDate()} and
+ * {@link PriceHistory#getId()} of the last record which was returned to the client.
+ * Clients see it only as an opaque url-safe string.
+ */
+public final class HistoryCursor {
+
+    private static final String SEPARATOR = "|";
+
+    private final Instant startDate;
+
+    private final long id;
+
+    private HistoryCursor(Instant startDate, long id) {
+        this.startDate = startDate;
+        this.id = id;
+    }
+
+    public Instant getStartDate() {
+        return startDate;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    /**
+     * Encodes position right after the given record.
+     *
+     * @param priceHistory - last record of the page.
+     * @return opaque cursor.
+     */
+    @NonNull
+    public static String encode(@NonNull PriceHistory priceHistory) {
+        String value = priceHistory.getStartDate() + SEPARATOR + priceHistory.getId();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Decodes cursor which was previously created by {@link #encode(PriceHistory)}.
+     *
+     * @param cursor - opaque cursor.
+     * @return decoded cursor.
+     * @throws IncorrectRequestException when cursor can't be decoded.
+     */
+    @NonNull
+    public static HistoryCursor decode(@NonNull String cursor) {
+        try {
+            String value = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separatorIndex = value.lastIndexOf(SEPARATOR);
+            if (separatorIndex < 0) {
+                throw new IncorrectRequestException("Incorrect history cursor: " + cursor);
+            }
+            return new HistoryCursor(
+                    Instant.parse(value.substring(0, separatorIndex)),
+                    Long.parseLong(value.substring(separatorIndex + 1)));
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            throw new IncorrectRequestException("Incorrect history cursor: " + cursor);
+        }
+    }
+}
@@ -1,14 +1,28 @@
 package com.nvrsk.service;
 
+import com.nvrsk.exception.IncorrectRequestException;
+import com.nvrsk.history.PriceHistoryStore;
+import com.nvrsk.model.HistoryPage;
 import com.nvrsk.model.PriceHistory;
+import com.nvrsk.model.PriceTick;
 import com.nvrsk.model.Stock;
-import com.nvrsk.repository.PriceHistoryRepository;
+import com.sun.istack.Nullable;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.lang.NonNull;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import javax.annotation.PostConstruct;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Consumer;
 
 /**
  * Service to perform business logic for {@link PriceHistory} entities.
@@ -16,22 +30,151 @@ import java.time.Instant;
 @Service
 public class PriceHistoryService {
 
+    /**
+     * Page size which is used when client doesn't specify it.
+     */
+    public static final int DEFAULT_PAGE_SIZE = 100;
+
+    /**
+     * The biggest page size client can request.
+     */
+    public static final int MAX_PAGE_SIZE = 1000;
+
     @Autowired
-    private PriceHistoryRepository priceHistoryRepository;
+    private PriceHistoryStore priceHistoryStore;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private Timer updateStockPriceTimer;
+
+    @PostConstruct
+    void registerTimers() {
+        updateStockPriceTimer = StockService.serviceTimer(meterRegistry, PriceHistoryService.class, "updateStockPrice");
+    }
 
     /**
      * Updates price history for specified {@link Stock}.
-     * Opens new price history record
+     * Opens new price history record, it becomes visible when the transaction commits.
      *
      * @param stock      - stock to update price for.
      * @param lastUpdate - timestamp which was taken for {@link Stock#getLastUpdate()}.
      */
     @Transactional
     public void updateStockPrice(@NonNull Stock stock, @NonNull Instant lastUpdate) {
-        PriceHistory priceHistory = new PriceHistory();
-        priceHistory.setPrice(stock.getCurrentPrice());
-        priceHistory.setStock(stock);
-        priceHistory.setStartDate(lastUpdate);
-        priceHistoryRepository.saveAndFlush(priceHistory);
+        updateStockPriceTimer.record(() ->
+                priceHistoryStore.append(Collections.singletonList(new PriceTick(stock.getId(), stock.getCurrentPrice(), lastUpdate))));
+    }
+
+    /**
+     * Updates price history for all specified {@link Stock}s at once.
+     * Records are appended in a single call to the store, so the default store inserts them as JDBC batches.
+     *
+     * @param stocks     - stocks to update price for.
+     * @param lastUpdate - timestamp which was taken for {@link Stock#getLastUpdate()} of all the stocks.
+     */
+    @Transactional
+    public void updateStockPrices(@NonNull Collection<Stock> stocks, @NonNull Instant lastUpdate) {
+        List<PriceTick> ticks = new ArrayList<>(stocks.size());
+        for (Stock stock : stocks) {
+            ticks.add(new PriceTick(stock.getId(), stock.getCurrentPrice(), lastUpdate));
+        }
+        priceHistoryStore.append(ticks);
+    }
+
+    /**
+     * Appends ticks of different stocks and times to price history at once.
+     *
+     * @param ticks - ticks to append.
+     */
+    @Transactional
+    public void addTicks(@NonNull List<PriceTick> ticks) {
+        priceHistoryStore.append(ticks);
+    }
+
+    /**
+     * Returns a page of price history of the stock, ordered from the newest to the oldest record.
+     * Pages are addressed by keyset cursor, so the cost of a page doesn't depend on how deep into the history it is.
+     *
+     * @param stockId - id of stock to get history for.
+     * @param cursor  - cursor returned with the previous page or {@code null} to get the newest records.
+     * @param limit   - max number of records in the page or {@code null} to use {@link #DEFAULT_PAGE_SIZE}.
+     * @param from    - the oldest start date of returned records or {@code null} to return records up to the first one.
+     * @param to      - the newest start date of returned records or {@code null} to return records from the latest one.
+     * @return page of price history.
+     * @throws IncorrectRequestException when limit is out of range or cursor is malformed.
+     */
+    @Transactional(readOnly = true)
+    @NonNull
+    public HistoryPage getHistory(long stockId, @Nullable String cursor, @Nullable Integer limit,
+                                  @Nullable Instant from, @Nullable Instant to) {
+        int pageSize = validatePageSize(limit);
+        // one extra record tells whether there is a next page
+        List<PriceHistory> records;
+        if (cursor != null) {
+            HistoryCursor position = HistoryCursor.decode(cursor);
+            records = priceHistoryStore.findPage(stockId, position.getStartDate(), position.getId(), from, pageSize + 1);
+        } else if (to != null) {
+            records = priceHistoryStore.findPage(stockId, to, Long.MAX_VALUE, from, pageSize + 1);
+        } else {
+            records = priceHistoryStore.findPage(stockId, null, 0, from, pageSize + 1);
+        }
+        if (records.size() <= pageSize) {
+            return new HistoryPage(records, null);
+        }
+        List<PriceHistory> items = records.subList(0, pageSize);
+        return new HistoryPage(items, HistoryCursor.encode(items.get(pageSize - 1)));
+    }
+
+    /**
+     * Returns price of the stock at the given moment with a single index seek.
+     *
+     * @param stockId - id of stock to get price for.
+     * @param at      - moment to get price at.
+     * @return price history record which was actual at the moment or empty when the stock had no price yet.
+     */
+    @Transactional(readOnly = true)
+    @NonNull
+    public Optional<PriceHistory> getPriceAt(long stockId, @NonNull Instant at) {
+        return priceHistoryStore.findAt(stockId, at);
+    }
+
+    /**
+     * Feeds price history ordered by stock and time to the consumer without loading it into memory.
+     *
+     * @param stockIds - ids of stocks to export history of or empty collection to export history of all stocks.
+     * @param consumer - consumer of exported ticks.
+     */
+    @Transactional(readOnly = true)
+    public void exportHistory(@NonNull Collection<Long> stockIds, @NonNull Consumer<PriceTick> consumer) {
+        priceHistoryStore.export(stockIds, consumer);
+    }
+
+    /**
+     * Counts price history records of every stock which has any.
+     *
+     * @return number of records by stock ids.
+     */
+    @Transactional(readOnly = true)
+    @NonNull
+    public Map<Long, Long> countByStock() {
+        return priceHistoryStore.countByStock();
+    }
+
+    /**
+     * Validates that page size is between 1 and {@link #MAX_PAGE_SIZE}.
+     *
+     * @param limit - requested page size.
+     * @return page size to use.
+     * @throws IncorrectRequestException when page size is out of range.
+     */
+    private static int validatePageSize(@Nullable Integer limit) {
+        if (limit == null) {
+            return DEFAULT_PAGE_SIZE;
+        }
+        if (limit <= 0 || limit > MAX_PAGE_SIZE) {
+            throw new IncorrectRequestException("History limit should be between 1 and " + MAX_PAGE_SIZE);
+        }
+        return limit;
     }
 }
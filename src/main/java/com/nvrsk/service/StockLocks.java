@@ -0,0 +1,85 @@
+package com.nvrsk.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.lang.NonNull;
+import org.springframework.stereotype.Component;
+
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Striped locks which serialize updates of the same stock, while updates of different stocks run in parallel.
+ * Stock is mapped to one of a fixed number of locks by its id, so the number of locks doesn't grow with the number of stocks.
+ */
+@Component
+class StockLocks {
+
+    private final ReentrantLock[] stripes;
+
+    private final int mask;
+
+    @Autowired
+    StockLocks(@Value("${stocks.update.lock-stripes:1024}") int stripeCount) {
+        int size = 1;
+        while (size < stripeCount) {
+            size <<= 1;
+        }
+        stripes = new ReentrantLock[size];
+        for (int i = 0; i < size; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+        mask = size - 1;
+    }
+
+    /**
+     * Runs action holding the lock of the stock.
+     *
+     * @param id     - id of the stock.
+     * @param action - action to run.
+     * @return result of the action.
+     */
+    <T> T withLock(long id, @NonNull Supplier<T> action) {
+        ReentrantLock lock = stripes[stripeOf(id)];
+        lock.lock();
+        try {
+            return action.get();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Runs action holding the locks of all the stocks.
+     * Locks are taken in the order of their stripes, so concurrent batches can't deadlock.
+     *
+     * @param ids    - ids of the stocks.
+     * @param action - action to run.
+     * @return result of the action.
+     */
+    <T> T withLocks(@NonNull Collection<Long> ids, @NonNull Supplier<T> action) {
+        BitSet locked = new BitSet(stripes.length);
+        for (Long id : ids) {
+            locked.set(stripeOf(id));
+        }
+        int acquired = 0;
+        try {
+            for (int stripe = locked.nextSetBit(0); stripe >= 0; stripe = locked.nextSetBit(stripe + 1)) {
+                stripes[stripe].lock();
+                acquired = stripe + 1;
+            }
+            return action.get();
+        } finally {
+            for (int stripe = locked.previousSetBit(acquired - 1); stripe >= 0; stripe = locked.previousSetBit(stripe - 1)) {
+                stripes[stripe].unlock();
+            }
+        }
+    }
+
+    private int stripeOf(long id) {
+        int hash = Long.hashCode(id);
+        return (hash ^ (hash >>> 16)) & mask;
+    }
+}
@@ -1,20 +1,59 @@
 package com.nvrsk.service;
 
+import com.nvrsk.cache.StockNameIndex;
+import com.nvrsk.candle.CandleService;
+import com.nvrsk.cache.StockSnapshotCache;
+import com.nvrsk.event.StockUpdatedEvent;
+import com.nvrsk.exception.ConcurrentUpdateException;
 import com.nvrsk.exception.IncorrectRequestException;
+import com.nvrsk.exception.PriceNotFoundException;
 import com.nvrsk.exception.StockAlreadyExistsException;
 import com.nvrsk.exception.StockNotFoundException;
+import com.nvrsk.history.PriceHistoryWriteBehind;
+import com.nvrsk.model.Candle;
+import com.nvrsk.model.HistoryPage;
+import com.nvrsk.model.NewStockResult;
+import com.nvrsk.model.PriceHistory;
+import com.nvrsk.model.PriceStats;
 import com.nvrsk.model.Stock;
+import com.nvrsk.model.StockInfo;
+import com.nvrsk.model.StockListVersion;
 import com.nvrsk.repository.StockRepository;
 import com.nvrsk.request.NewStockRequest;
+import com.nvrsk.request.StockPriceUpdateRequest;
+import com.nvrsk.stats.StatsService;
 import com.sun.istack.Nullable;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.hibernate.exception.ConstraintViolationException;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.lang.NonNull;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import javax.annotation.PostConstruct;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
 
 /**
  * Service to perform business logic on {@link Stock} entities.
@@ -22,36 +61,197 @@ import java.util.Optional;
 @Service
 public class StockService {
 
+    /**
+     * The biggest number of price updates which can be applied as a single batch.
+     */
+    public static final int MAX_BATCH_SIZE = 10_000;
+
+    /**
+     * The biggest number of names which are looked up by a single query.
+     */
+    private static final int NAME_LOOKUP_CHUNK = 1000;
+
     @Autowired
     private StockRepository stockRepository;
 
     @Autowired
     private PriceHistoryService priceHistoryService;
 
+    @Autowired
+    private StockSnapshotCache stockSnapshotCache;
+
+    @Autowired
+    private StockNameIndex stockNameIndex;
+
+    @Autowired
+    private CandleService candleService;
+
+    @Autowired
+    private StatsService statsService;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private StockLocks stockLocks;
+
+    @Autowired(required = false)
+    private StockUpdateEngine stockUpdateEngine;
+
+    @Autowired(required = false)
+    private PriceHistoryWriteBehind priceHistoryWriteBehind;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${stocks.update.max-attempts:3}")
+    private int maxUpdateAttempts;
+
+    @Value("${stocks.update.batch-chunk-size:100}")
+    private int batchChunkSize;
+
+    private Timer updateStockPriceTimer;
+
+    private Timer saveStockTimer;
+
+    @PostConstruct
+    void registerTimers() {
+        updateStockPriceTimer = serviceTimer(meterRegistry, StockService.class, "updateStockPrice");
+        saveStockTimer = serviceTimer(meterRegistry, StockService.class, "saveStock");
+    }
 
     /**
-     * Returns list of all {@link Stock}s.
+     * Returns list of all {@link Stock}s without their price history.
      *
      * @return list of all {@link Stock}s.
      */
-    @Transactional
+    @Transactional(readOnly = true)
+    @NonNull
+    public Collection<StockInfo> getAllStocks() {
+        return stockRepository.findAllInfo();
+    }
+
+    /**
+     * Returns version of the list of all stocks, which is much cheaper than the list itself.
+     * Being read before the list, it is never newer than the list.
+     *
+     * @return version of all stocks.
+     */
+    @Transactional(readOnly = true)
     @NonNull
-    public Collection<Stock> getAllStocks() {
-        return stockRepository.findAll();
+    public StockListVersion getStockListVersion() {
+        return stockRepository.findListVersion();
     }
 
     /**
-     * Returns {@link Stock} by its id.
+     * Returns {@link Stock} by its id without its price history.
+     * It is served from {@link StockSnapshotCache}, the database is queried only on a cache miss.
      *
      * @param id - id of stock to lookup.
      * @return {@link Stock} by its id.
      * @throws StockNotFoundException when there is no stock with such id.
      */
-    @Transactional
     @NonNull
-    public Stock lookupStock(long id) {
-        return stockRepository.findById(id)
-                .orElseThrow(() -> new StockNotFoundException("Stock with id " + id + " not found"));
+    public StockInfo lookupStock(long id) {
+        Optional<StockInfo> cachedStock = stockSnapshotCache.get(id);
+        if (cachedStock.isPresent()) {
+            return cachedStock.get();
+        }
+        StockInfo stock = stockRepository.findInfoById(id)
+                .orElseThrow(() -> stockNotFound(id));
+        stockSnapshotCache.put(stock);
+        return stock;
+    }
+
+    /**
+     * Returns a page of price history of a stock,
+     * see {@link PriceHistoryService#getHistory(long, String, Integer, Instant, Instant)}.
+     *
+     * @param id     - id of stock to get history for.
+     * @param cursor - cursor returned with the previous page or {@code null} to get the newest records.
+     * @param limit  - max number of records in the page or {@code null} to use default one.
+     * @param from   - the oldest start date of returned records or {@code null} for no lower bound.
+     * @param to     - the newest start date of returned records or {@code null} for no upper bound.
+     * @return page of price history.
+     * @throws StockNotFoundException    when there is no stock with such id.
+     * @throws IncorrectRequestException when limit is out of range, cursor is malformed or the range is empty.
+     */
+    @NonNull
+    public HistoryPage getHistory(long id, @Nullable String cursor, @Nullable Integer limit,
+                                  @Nullable Instant from, @Nullable Instant to) {
+        if (from != null && to != null && from.isAfter(to)) {
+            throw new IncorrectRequestException("Start of the range should not be after its end");
+        }
+        lookupStock(id);
+        return priceHistoryService.getHistory(id, cursor, limit, from, to);
+    }
+
+    /**
+     * Returns moment of the last change of price history of a stock, which is {@link Stock#getLastUpdate()},
+     * since every update of a stock opens a new history record in the same transaction.
+     * When history is written behind, records appear after their stock update commits,
+     * so history has no reliable last change moment and nothing is returned.
+     *
+     * @param id - id of stock to get last history change for.
+     * @return moment of the last change or empty if it is unknown.
+     * @throws StockNotFoundException when there is no stock with such id.
+     */
+    @NonNull
+    public Optional<Instant> getHistoryLastModified(long id) {
+        Instant lastUpdate = lookupStock(id).getLastUpdate();
+        return priceHistoryWriteBehind == null ? Optional.ofNullable(lastUpdate) : Optional.empty();
+    }
+
+    /**
+     * Returns price of a stock at the given moment.
+     *
+     * @param id - id of stock to get price for.
+     * @param at - moment to get price at or {@code null} to get the current price.
+     * @return price history record which was actual at the moment.
+     * @throws StockNotFoundException when there is no stock with such id.
+     * @throws PriceNotFoundException when the stock had no price at the moment.
+     */
+    @NonNull
+    public PriceHistory getPriceAt(long id, @Nullable Instant at) {
+        lookupStock(id);
+        Instant moment = at == null ? Instant.now() : at;
+        return priceHistoryService.getPriceAt(id, moment)
+                .orElseThrow(() -> new PriceNotFoundException("Stock with id " + id + " had no price at " + moment));
+    }
+
+    /**
+     * Returns open/high/low/close candles of a stock, see {@link CandleService#getCandles(long, String, Instant, Instant)}.
+     *
+     * @param id       - id of stock to get candles for.
+     * @param interval - candle interval code, e.g. {@code 5m}.
+     * @param from     - start of the range or {@code null} to get the latest candles.
+     * @param to       - end of the range or {@code null} to use the current moment.
+     * @return candles of the stock in chronological order.
+     * @throws StockNotFoundException    when there is no stock with such id.
+     * @throws IncorrectRequestException when interval is unknown or the range is empty.
+     */
+    @NonNull
+    public List<Candle> getCandles(long id, @NonNull String interval, @Nullable Instant from, @Nullable Instant to) {
+        lookupStock(id);
+        return candleService.getCandles(id, interval, from, to);
+    }
+
+    /**
+     * Returns rolling price statistics of a stock, see {@link StatsService#getStats(long, String)}.
+     *
+     * @param id     - id of stock to get statistics for.
+     * @param window - window code, e.g. {@code 5m}.
+     * @return statistics of the stock within the window which ends at the current moment.
+     * @throws StockNotFoundException    when there is no stock with such id.
+     * @throws IncorrectRequestException when window is unknown.
+     */
+    @NonNull
+    public PriceStats getStats(long id, @NonNull String window) {
+        lookupStock(id);
+        return statsService.getStats(id, window);
     }
 
     /**
@@ -62,13 +262,114 @@ public class StockService {
      * @throws IncorrectRequestException when price is 0 or below or stock name is empty.
      * @throws StockAlreadyExistsException when stock with such name already exists.
      */
-    @Transactional
     @NonNull
     public Stock addNewStock(@NonNull NewStockRequest newStockRequest) {
         Stock newStock = new Stock();
         newStock.setCurrentPrice(validatePrice(newStockRequest.getPrice()));
         newStock.setName(validateName(newStockRequest.getName()));
-        return saveStock(newStock);
+        return withHistoryCapacity(1, () -> new TransactionTemplate(transactionManager).execute(status -> {
+            if (!stockNameIndex.reserve(newStock.getName())) {
+                throw stockAlreadyExists(newStock.getName());
+            }
+            try {
+                return saveStock(newStock);
+            } catch (DataIntegrityViolationException e) {
+                if (isNameConstraintViolation(e)) {
+                    throw stockAlreadyExists(newStock.getName());
+                }
+                throw e;
+            }
+        }));
+    }
+
+    /**
+     * Adds many new stocks in a single transaction, every stock is validated separately.
+     * Stock names are checked against {@link StockNameIndex} and then against the database by one query per
+     * {@value #NAME_LOOKUP_CHUNK} names, so stocks inserted bypassing the services are reported too.
+     * Valid stocks and their initial price history are inserted as JDBC batches and share the same timestamp.
+     * When a stock with one of the names is concurrently added bypassing the services, the unique constraint rejects
+     * the whole transaction, so the batch is repeated and the name is then reported as an existing one.
+     *
+     * @param newStockRequests - {@link NewStockRequest}s of new stocks to add.
+     * @return outcomes of the requests in the same order: ids of added stocks or reasons why they weren't added,
+     * e.g. missing request, non-positive price, empty name or a name of an existing stock or of a previous request of the batch.
+     * @throws IncorrectRequestException   when batch is empty or too big.
+     * @throws StockAlreadyExistsException when stocks with the names were concurrently added bypassing the services on every attempt.
+     */
+    @NonNull
+    public List<NewStockResult> addNewStocks(@NonNull List<NewStockRequest> newStockRequests) {
+        if (newStockRequests.isEmpty() || newStockRequests.size() > MAX_BATCH_SIZE) {
+            throw new IncorrectRequestException("Batch should contain from 1 to " + MAX_BATCH_SIZE + " new stocks");
+        }
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return withHistoryCapacity(newStockRequests.size(),
+                        () -> new TransactionTemplate(transactionManager).execute(status -> insertNewStocks(newStockRequests)));
+            } catch (DataIntegrityViolationException e) {
+                if (!isNameConstraintViolation(e)) {
+                    throw e;
+                }
+                if (attempt >= maxUpdateAttempts) {
+                    throw new StockAlreadyExistsException("Some of the stocks were added concurrently, please retry");
+                }
+            }
+        }
+    }
+
+    /**
+     * Validates and inserts new stocks in the current transaction, see {@link #addNewStocks(List)}.
+     *
+     * @param newStockRequests - {@link NewStockRequest}s of new stocks to add.
+     * @return outcomes of the requests in the same order.
+     * @throws DataIntegrityViolationException when one of the stocks was concurrently added bypassing the services.
+     */
+    @NonNull
+    private List<NewStockResult> insertNewStocks(@NonNull List<NewStockRequest> newStockRequests) {
+        NewStockResult[] results = new NewStockResult[newStockRequests.size()];
+        Map<String, Integer> requestIndexes = new LinkedHashMap<>();
+        Map<String, Double> prices = new HashMap<>();
+        for (int i = 0; i < newStockRequests.size(); i++) {
+            NewStockRequest newStockRequest = newStockRequests.get(i);
+            if (newStockRequest == null) {
+                results[i] = NewStockResult.failed(null, "Stock can't be empty");
+                continue;
+            }
+            try {
+                double price = validatePrice(newStockRequest.getPrice());
+                String name = validateName(newStockRequest.getName());
+                if (requestIndexes.putIfAbsent(name, i) != null) {
+                    throw stockAlreadyExists(name);
+                }
+                prices.put(name, price);
+            } catch (IncorrectRequestException | StockAlreadyExistsException e) {
+                results[i] = NewStockResult.failed(newStockRequest.getName(), e.getMessage());
+            }
+        }
+
+        Set<String> existingNames = findExistingNames(requestIndexes.keySet());
+        Instant lastUpdate = Instant.now();
+        List<Stock> newStocks = new ArrayList<>(requestIndexes.size());
+        for (Map.Entry<String, Integer> requestIndex : requestIndexes.entrySet()) {
+            String name = requestIndex.getKey();
+            if (existingNames.contains(name) || !stockNameIndex.reserve(name)) {
+                results[requestIndex.getValue()] = NewStockResult.failed(
+                        newStockRequests.get(requestIndex.getValue()).getName(), stockAlreadyExists(name).getMessage());
+                continue;
+            }
+            Stock stock = new Stock();
+            stock.setName(name);
+            stock.setCurrentPrice(prices.get(name));
+            stock.setLastUpdate(lastUpdate);
+            newStocks.add(stock);
+        }
+        stockRepository.saveAll(newStocks);
+        stockRepository.flush();
+        priceHistoryService.updateStockPrices(newStocks, lastUpdate);
+        for (Stock stock : newStocks) {
+            eventPublisher.publishEvent(new StockUpdatedEvent(StockInfo.of(stock), true));
+            results[requestIndexes.get(stock.getName())] = NewStockResult.added(stock);
+        }
+        return Arrays.asList(results);
     }
 
     /**
@@ -79,18 +380,171 @@ public class StockService {
      * @return update result response.
      * @throws StockNotFoundException    when there is no stock with such id.
      * @throws IncorrectRequestException when price is 0 or below.
+     * @throws ConcurrentUpdateException when the stock was concurrently updated on every attempt.
      */
-    @Transactional
     @NonNull
     public Stock updateStockPrice(long id, @Nullable Double price) {
-        validatePrice(price);
-        Stock stock = lookupStock(id);
-        stock.setCurrentPrice(price);
-        return saveStock(stock);
+        return updateStockPriceTimer.record(() -> {
+            validatePrice(price);
+            if (stockUpdateEngine != null) {
+                return await(stockUpdateEngine.updateStockPrice(id, price));
+            }
+            return withHistoryCapacity(1, () -> stockLocks.withLock(id, () -> retryOnConflict(
+                    () -> new TransactionTemplate(transactionManager).execute(status -> {
+                        Stock stock = stockRepository.findById(id)
+                                .orElseThrow(() -> stockNotFound(id));
+                        stock.setCurrentPrice(price);
+                        return saveStock(stock);
+                    }))));
+        });
+    }
+
+    /**
+     * Updates prices of many stocks.
+     * Stocks are updated by chunks of {@code stocks.update.batch-chunk-size} stocks, every chunk in its own transaction
+     * holding the locks of its stocks only, so a big batch doesn't block updates of unrelated stocks until it completes.
+     * A batch which fits into one chunk is applied atomically, a bigger one is atomic per chunk:
+     * existence of all the stocks is checked upfront, but a chunk which failed on concurrent updates leaves the previous ones applied.
+     * Stocks of a chunk are loaded by one query, stock and price history changes are written as JDBC batches.
+     * When the same stock is updated more than once, the last price wins, since all updates of a chunk share one timestamp.
+     *
+     * @param priceUpdateRequests - price updates to apply.
+     * @return number of updated stocks.
+     * @throws StockNotFoundException    when there is no stock with one of the ids.
+     * @throws IncorrectRequestException when batch is empty or too big, some id is missing or some price is 0 or below.
+     * @throws ConcurrentUpdateException when some of the stocks were concurrently updated on every attempt.
+     */
+    public int updateStockPrices(@NonNull List<StockPriceUpdateRequest> priceUpdateRequests) {
+        if (priceUpdateRequests.isEmpty() || priceUpdateRequests.size() > MAX_BATCH_SIZE) {
+            throw new IncorrectRequestException("Batch should contain from 1 to " + MAX_BATCH_SIZE + " price updates");
+        }
+        Map<Long, Double> prices = new LinkedHashMap<>();
+        for (StockPriceUpdateRequest priceUpdateRequest : priceUpdateRequests) {
+            if (priceUpdateRequest.getId() == null) {
+                throw new IncorrectRequestException("Stock id can't be empty");
+            }
+            prices.put(priceUpdateRequest.getId(), validatePrice(priceUpdateRequest.getPrice()));
+        }
+        if (stockUpdateEngine != null) {
+            return updateStockPricesByEngine(prices);
+        }
+        if (prices.size() <= batchChunkSize) {
+            return applyStockPricesLocked(prices);
+        }
+        checkStocksExist(prices.keySet());
+        int updated = 0;
+        Map<Long, Double> chunk = new LinkedHashMap<>();
+        for (Map.Entry<Long, Double> price : prices.entrySet()) {
+            chunk.put(price.getKey(), price.getValue());
+            if (chunk.size() == batchChunkSize) {
+                updated += applyStockPricesLocked(chunk);
+                chunk.clear();
+            }
+        }
+        if (!chunk.isEmpty()) {
+            updated += applyStockPricesLocked(chunk);
+        }
+        return updated;
+    }
+
+    /**
+     * Applies validated prices in one transaction holding the locks of the stocks, see {@link #updateStockPrices(List)}.
+     *
+     * @param prices - prices by stock ids.
+     * @return number of updated stocks.
+     */
+    private int applyStockPricesLocked(@NonNull Map<Long, Double> prices) {
+        return withHistoryCapacity(prices.size(), () -> stockLocks.withLocks(prices.keySet(), () -> retryOnConflict(
+                () -> new TransactionTemplate(transactionManager).execute(status -> applyStockPrices(prices)))));
+    }
+
+    /**
+     * Runs an update which appends price history, reserving room for it in {@link PriceHistoryWriteBehind} when it is enabled.
+     * Room is reserved before the locks and the transaction are taken, so a full queue doesn't hold a database connection.
+     *
+     * @param ticks  - max number of price history records the update appends.
+     * @param update - update to run.
+     * @return result of the update.
+     */
+    private <T> T withHistoryCapacity(int ticks, @NonNull Supplier<T> update) {
+        return priceHistoryWriteBehind == null ? update.get() : priceHistoryWriteBehind.withCapacity(ticks, update);
+    }
+
+    /**
+     * Applies validated prices through {@link StockUpdateEngine}, see {@link #updateStockPrices(List)}.
+     * Existence of all the stocks is checked upfront, but the updates are applied by their partitions independently.
+     *
+     * @param prices - prices by stock ids.
+     * @return number of updated stocks.
+     */
+    private int updateStockPricesByEngine(@NonNull Map<Long, Double> prices) {
+        checkStocksExist(prices.keySet());
+        List<CompletableFuture<Stock>> updates = new ArrayList<>(prices.size());
+        prices.forEach((id, price) -> updates.add(stockUpdateEngine.updateStockPrice(id, price)));
+        updates.forEach(StockService::await);
+        return updates.size();
+    }
+
+    /**
+     * Checks that all the stocks exist by one query.
+     *
+     * @param ids - ids of the stocks.
+     * @throws StockNotFoundException when there is no stock with one of the ids.
+     */
+    private void checkStocksExist(@NonNull Collection<Long> ids) {
+        Set<Long> existingIds = new HashSet<>(stockRepository.findExistingIds(ids));
+        for (Long id : ids) {
+            if (!existingIds.contains(id)) {
+                throw stockNotFound(id);
+            }
+        }
+    }
+
+    /**
+     * Waits for an update applied by {@link StockUpdateEngine}.
+     *
+     * @param update - future of the update.
+     * @return updated stock.
+     */
+    @NonNull
+    private static Stock await(@NonNull CompletableFuture<Stock> update) {
+        try {
+            return update.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
     }
 
     /**
-     * Saves a {@link Stock}.
+     * Applies validated prices to the stocks, see {@link #updateStockPrices(List)}.
+     *
+     * @param prices - prices by stock ids.
+     * @return number of updated stocks.
+     */
+    private int applyStockPrices(@NonNull Map<Long, Double> prices) {
+        Map<Long, Stock> stocks = stockRepository.findAllById(prices.keySet()).stream()
+                .collect(Collectors.toMap(Stock::getId, Function.identity()));
+        Instant lastUpdate = Instant.now();
+        for (Map.Entry<Long, Double> price : prices.entrySet()) {
+            Stock stock = stocks.get(price.getKey());
+            if (stock == null) {
+                throw stockNotFound(price.getKey());
+            }
+            stock.setCurrentPrice(price.getValue());
+            stock.setLastUpdate(lastUpdate);
+        }
+        priceHistoryService.updateStockPrices(stocks.values(), lastUpdate);
+        for (Stock stock : stocks.values()) {
+            eventPublisher.publishEvent(new StockUpdatedEvent(StockInfo.of(stock), false));
+        }
+        return stocks.size();
+    }
+
+    /**
+     * Saves a {@link Stock} and publishes {@link StockUpdatedEvent} about it.
      *
      * @param stock - {@link Stock} to save.
      * @return saved Stock.
@@ -98,13 +552,87 @@ public class StockService {
     @Transactional
     @NonNull
     private Stock saveStock(@NonNull Stock stock) {
-        Instant lastUpdate = Instant.now();
-        stock.setLastUpdate(lastUpdate);
-        Stock savedStock = stockRepository.save(stock);
+        return saveStockTimer.record(() -> {
+            boolean newStock = stock.getId() == null;
+            Instant lastUpdate = Instant.now();
+            stock.setLastUpdate(lastUpdate);
+            // new stock is flushed right away, so name constraint violation is reported before the transaction commits
+            Stock savedStock = newStock ? stockRepository.saveAndFlush(stock) : stockRepository.save(stock);
+
+            priceHistoryService.updateStockPrice(savedStock, lastUpdate);
+            eventPublisher.publishEvent(new StockUpdatedEvent(StockInfo.of(savedStock), newStock));
+
+            return savedStock;
+        });
+    }
+
+    /**
+     * Runs an update, repeating it while it fails because the same stocks were updated concurrently,
+     * e.g. directly in the database. Updates through the service are already serialized by {@link StockLocks}.
+     * The application is meant to run as a single instance: {@link StockSnapshotCache} and {@link StockNameIndex}
+     * are kept per process and refreshed only by its own events, so another instance would serve stale stocks.
+     *
+     * @param update - update which runs in its own transaction.
+     * @return result of the update.
+     * @throws ConcurrentUpdateException when the update failed on every attempt.
+     */
+    private <T> T retryOnConflict(@NonNull Supplier<T> update) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return update.get();
+            } catch (OptimisticLockingFailureException e) {
+                if (attempt >= maxUpdateAttempts) {
+                    throw new ConcurrentUpdateException("Stock was updated concurrently, please retry");
+                }
+            }
+        }
+    }
+
+    /**
+     * Looks up which of the names belong to stocks in the database.
+     *
+     * @param names - names to look up.
+     * @return names of existing stocks.
+     */
+    @NonNull
+    private Set<String> findExistingNames(@NonNull Collection<String> names) {
+        Set<String> existingNames = new HashSet<>();
+        List<String> chunk = new ArrayList<>(NAME_LOOKUP_CHUNK);
+        for (String name : names) {
+            chunk.add(name);
+            if (chunk.size() == NAME_LOOKUP_CHUNK) {
+                existingNames.addAll(stockRepository.findExistingNames(chunk));
+                chunk.clear();
+            }
+        }
+        if (!chunk.isEmpty()) {
+            existingNames.addAll(stockRepository.findExistingNames(chunk));
+        }
+        return existingNames;
+    }
 
-        priceHistoryService.updateStockPrice(savedStock, lastUpdate);
+    @NonNull
+    static StockNotFoundException stockNotFound(long id) {
+        return new StockNotFoundException("Stock with id " + id + " not found");
+    }
+
+    @NonNull
+    private static StockAlreadyExistsException stockAlreadyExists(@NonNull String name) {
+        return new StockAlreadyExistsException("Stock already exists with name: " + name);
+    }
 
-        return savedStock;
+    /**
+     * Checks whether the exception is caused by the unique constraint on stock name.
+     *
+     * @param exception - exception thrown on insert.
+     * @return {@code true} when the stock name isn't unique.
+     */
+    private static boolean isNameConstraintViolation(@NonNull DataIntegrityViolationException exception) {
+        if (!(exception.getCause() instanceof ConstraintViolationException)) {
+            return false;
+        }
+        String constraintName = ((ConstraintViolationException) exception.getCause()).getConstraintName();
+        return constraintName != null && constraintName.toUpperCase().contains(Stock.NAME_CONSTRAINT);
     }
 
     /**
@@ -125,7 +653,7 @@ public class StockService {
      * Validates that name is:
      * - not null
      * - not empty
-     * - unique among all Stocks.
+     * - unique among all Stocks, according to {@link StockNameIndex}.
      *
      * @param name - name to validate.
      * @return input name without leading and trailing whitespaces.
@@ -136,11 +664,27 @@ public class StockService {
             throw new IncorrectRequestException("Stock name can't be empty");
         }
         String cleanedName = name.trim();
-        Optional<Stock> actualStock = stockRepository.findByName(cleanedName);
-        if (actualStock.isPresent()) {
-            throw new StockAlreadyExistsException("Stock already exists with name: " + cleanedName);
+        if (stockNameIndex.findId(cleanedName).isPresent()) {
+            throw stockAlreadyExists(cleanedName);
         }
         return cleanedName;
     }
-}
 
+    /**
+     * Creates timer of a service method, published as {@code stocks.service} with a histogram for percentiles.
+     *
+     * @param registry - registry to register the timer in.
+     * @param service  - class of the service.
+     * @param method   - name of the timed method.
+     * @return registered timer.
+     */
+    @NonNull
+    static Timer serviceTimer(@NonNull MeterRegistry registry, @NonNull Class<?> service, @NonNull String method) {
+        return Timer.builder("stocks.service")
+                .description("Latency of hot service methods")
+                .tag("class", service.getSimpleName())
+                .tag("method", method)
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+}
@@ -0,0 +1,308 @@
+package com.nvrsk.service;
+
+import com.nvrsk.event.StockUpdatedEvent;
+import com.nvrsk.history.PriceHistoryWriteBehind;
+import com.nvrsk.model.PriceTick;
+import com.nvrsk.model.Stock;
+import com.nvrsk.model.StockInfo;
+import com.nvrsk.repository.StockRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.lang.NonNull;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Price update engine which hash-partitions stocks across a fixed set of single-writer threads.
+ * <p>
+ * Every partition owns the state of its stocks: it loads a stock on the first update and then applies its updates
+ * one by one without any locks, so each update gets its own history record with a strictly increasing start date
+ * (in microseconds, the precision of the column).
+ * Updates which are queued together are persisted as a batch in one transaction:
+ * one JDBC batch of stock rows plus one append of history records.
+ * Callers get updated stocks via futures, which complete once the batch commits.
+ * <p>
+ * Stocks mustn't be updated bypassing the engine while it is enabled.
+ * Enabled with {@code stocks.engine.enabled=true}.
+ */
+@Component
+@ConditionalOnProperty(name = "stocks.engine.enabled", havingValue = "true")
+public class StockUpdateEngine {
+
+    private static final Logger LOG = LoggerFactory.getLogger(StockUpdateEngine.class);
+
+    private static final long POLL_TIMEOUT_MILLIS = 100;
+
+    private final Partition[] partitions;
+
+    private final int batchSize;
+
+    @Autowired
+    private StockRepository stockRepository;
+
+    @Autowired
+    private PriceHistoryService priceHistoryService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired(required = false)
+    private PriceHistoryWriteBehind priceHistoryWriteBehind;
+
+    private volatile boolean stopping;
+
+    @Autowired
+    public StockUpdateEngine(@Value("${stocks.engine.partitions:0}") int partitionCount,
+                             @Value("${stocks.engine.queue-capacity:10000}") int queueCapacity,
+                             @Value("${stocks.engine.batch-size:500}") int batchSize) {
+        int size = partitionCount > 0 ? partitionCount : Runtime.getRuntime().availableProcessors();
+        this.partitions = new Partition[size];
+        for (int i = 0; i < size; i++) {
+            partitions[i] = new Partition(i, queueCapacity);
+        }
+        this.batchSize = batchSize;
+    }
+
+    @PostConstruct
+    void start() {
+        for (Partition partition : partitions) {
+            partition.thread.start();
+        }
+        LOG.info("Started update engine with {} partitions", partitions.length);
+    }
+
+    /**
+     * Queues price update of a stock to its partition, blocks while the partition queue is full.
+     *
+     * @param id    - id of the stock.
+     * @param price - validated price.
+     * @return future of the updated stock, it fails with {@link com.nvrsk.exception.StockNotFoundException}
+     * when there is no stock with such id and with {@link IllegalStateException} when the engine is stopped.
+     */
+    @NonNull
+    public CompletableFuture<Stock> updateStockPrice(long id, double price) {
+        Update update = new Update(id, price);
+        if (stopping) {
+            update.result.completeExceptionally(stopped());
+            return update.result;
+        }
+        BlockingQueue<Update> queue = partitionOf(id).queue;
+        try {
+            queue.put(update);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            update.result.completeExceptionally(e);
+            return update.result;
+        }
+        // the engine may have stopped after the check, then the update is either applied, failed by stop() or failed here
+        if (stopping && queue.remove(update)) {
+            update.result.completeExceptionally(stopped());
+        }
+        return update.result;
+    }
+
+    /**
+     * @return number of partitions.
+     */
+    public int getPartitionCount() {
+        return partitions.length;
+    }
+
+    /**
+     * @return number of updates waiting in the partition queues.
+     */
+    public int getQueueSize() {
+        int size = 0;
+        for (Partition partition : partitions) {
+            size += partition.queue.size();
+        }
+        return size;
+    }
+
+    /**
+     * Stops accepting updates and waits until the queued ones are applied.
+     * Updates which are queued while the partitions finish are failed.
+     */
+    @PreDestroy
+    void stop() throws InterruptedException {
+        stopping = true;
+        for (Partition partition : partitions) {
+            partition.thread.join();
+        }
+        List<Update> rest = new ArrayList<>();
+        for (Partition partition : partitions) {
+            partition.queue.drainTo(rest);
+        }
+        for (Update update : rest) {
+            update.result.completeExceptionally(stopped());
+        }
+    }
+
+    private static IllegalStateException stopped() {
+        return new IllegalStateException("Update engine is stopped");
+    }
+
+    private Partition partitionOf(long id) {
+        int hash = Long.hashCode(id);
+        return partitions[Math.floorMod(hash ^ (hash >>> 16), partitions.length)];
+    }
+
+    /**
+     * Returns start date of the next update of a partition.
+     * Start dates are stored with microsecond precision, so the time is truncated to microseconds
+     * and updates within the same microsecond are moved a microsecond apart.
+     *
+     * @param now        - current time.
+     * @param lastUpdate - start date of the previous update of the partition.
+     * @return current time truncated to microseconds, but strictly after the previous update.
+     */
+    @NonNull
+    static Instant nextUpdateTime(@NonNull Instant now, @NonNull Instant lastUpdate) {
+        Instant time = now.truncatedTo(ChronoUnit.MICROS);
+        return time.isAfter(lastUpdate) ? time : lastUpdate.plus(1, ChronoUnit.MICROS);
+    }
+
+    private static final class Update {
+
+        private final long id;
+
+        private final double price;
+
+        private final CompletableFuture<Stock> result = new CompletableFuture<>();
+
+        private Update(long id, double price) {
+            this.id = id;
+            this.price = price;
+        }
+    }
+
+    private final class Partition implements Runnable {
+
+        private final BlockingQueue<Update> queue;
+
+        private final Thread thread;
+
+        private final Map<Long, StockInfo> stocks = new HashMap<>();
+
+        private Instant lastUpdate = Instant.EPOCH;
+
+        private Partition(int index, int queueCapacity) {
+            this.queue = new ArrayBlockingQueue<>(queueCapacity);
+            this.thread = new Thread(this, "stock-update-engine-" + index);
+        }
+
+        @Override
+        public void run() {
+            List<Update> batch = new ArrayList<>(batchSize);
+            while (true) {
+                try {
+                    Update first = queue.poll(POLL_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+                    if (first == null) {
+                        if (stopping) {
+                            return;
+                        }
+                        continue;
+                    }
+                    batch.add(first);
+                    queue.drainTo(batch, batchSize - 1);
+                    apply(batch);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                } catch (RuntimeException e) {
+                    LOG.error("Failed to apply {} price updates", batch.size(), e);
+                    // owned state may be ahead of the rolled back database, it is loaded again on the next update
+                    for (Update update : batch) {
+                        stocks.remove(update.id);
+                        update.result.completeExceptionally(e);
+                    }
+                } finally {
+                    batch.clear();
+                }
+            }
+        }
+
+        private void apply(List<Update> batch) {
+            Map<Update, Stock> results = new LinkedHashMap<>();
+            if (priceHistoryWriteBehind == null) {
+                persist(batch, results);
+            } else {
+                // room for the history is reserved before the transaction takes a database connection
+                priceHistoryWriteBehind.withCapacity(batch.size(), () -> persist(batch, results));
+            }
+            results.forEach((update, stock) -> update.result.complete(stock));
+        }
+
+        private Object persist(List<Update> batch, Map<Update, Stock> results) {
+            return new TransactionTemplate(transactionManager).execute(status -> {
+                Map<Long, StockInfo> updatedStocks = new LinkedHashMap<>();
+                List<PriceTick> ticks = new ArrayList<>(batch.size());
+                for (Update update : batch) {
+                    StockInfo stock = stocks.get(update.id);
+                    if (stock == null) {
+                        stock = stockRepository.findInfoById(update.id).orElse(null);
+                        if (stock == null) {
+                            update.result.completeExceptionally(StockService.stockNotFound(update.id));
+                            continue;
+                        }
+                    }
+                    StockInfo updatedStock = new StockInfo(stock.getId(), stock.getName(), update.price, nextUpdateTime());
+                    stocks.put(updatedStock.getId(), updatedStock);
+                    updatedStocks.put(updatedStock.getId(), updatedStock);
+                    ticks.add(new PriceTick(updatedStock.getId(), updatedStock.getCurrentPrice(), updatedStock.getLastUpdate()));
+                    eventPublisher.publishEvent(new StockUpdatedEvent(updatedStock, false));
+                    results.put(update, toStock(updatedStock));
+                }
+                List<Object[]> rows = new ArrayList<>(updatedStocks.size());
+                for (StockInfo stock : updatedStocks.values()) {
+                    rows.add(new Object[]{stock.getCurrentPrice(), Timestamp.from(stock.getLastUpdate()), stock.getId()});
+                }
+                jdbcTemplate.batchUpdate(
+                        "update stock set current_price = ?, last_update = ?, version = version + 1 where id = ?", rows);
+                priceHistoryService.addTicks(ticks);
+                return null;
+            });
+        }
+
+        private Instant nextUpdateTime() {
+            lastUpdate = StockUpdateEngine.nextUpdateTime(Instant.now(), lastUpdate);
+            return lastUpdate;
+        }
+
+        private Stock toStock(StockInfo stockInfo) {
+            Stock stock = new Stock();
+            stock.setId(stockInfo.getId());
+            stock.setName(stockInfo.getName());
+            stock.setCurrentPrice(stockInfo.getCurrentPrice());
+            stock.setLastUpdate(stockInfo.getLastUpdate());
+            return stock;
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.nvrsk.stats;
+
+import java.util.NoSuchElementException;
+
+/**
+ * Double-ended queue of primitive longs in a growable ring buffer, so it doesn't box its elements.
+ */
+final class LongDeque {
+
+    private long[] elements = new long[16];
+
+    private int head;
+
+    private int size;
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    long peekFirst() {
+        checkNotEmpty();
+        return elements[head];
+    }
+
+    long peekLast() {
+        checkNotEmpty();
+        return elements[(head + size - 1) & (elements.length - 1)];
+    }
+
+    void pollFirst() {
+        checkNotEmpty();
+        head = (head + 1) & (elements.length - 1);
+        size--;
+    }
+
+    void pollLast() {
+        checkNotEmpty();
+        size--;
+    }
+
+    void addLast(long element) {
+        if (size == elements.length) {
+            long[] grown = new long[elements.length * 2];
+            for (int i = 0; i < size; i++) {
+                grown[i] = elements[(head + i) & (elements.length - 1)];
+            }
+            elements = grown;
+            head = 0;
+        }
+        elements[(head + size) & (elements.length - 1)] = element;
+        size++;
+    }
+
+    void clear() {
+        head = 0;
+        size = 0;
+    }
+
+    private void checkNotEmpty() {
+        if (size == 0) {
+            throw new NoSuchElementException();
+        }
+    }
+}
@@ -0,0 +1,297 @@
+package com.nvrsk.stats;
+
+import com.nvrsk.model.PriceStats;
+import org.springframework.lang.NonNull;
+
+import java.time.Instant;
+import java.util.function.Consumer;
+
+/**
+ * Rolling price statistics of a single stock for all {@link StatsWindow}s, updated in amortized O(1) per tick.
+ * <p>
+ * Ticks of the widest window are kept in a ring buffer, every window is a range of it.
+ * A window keeps running sums of prices and of log returns with their squares, so it adds and evicts a tick in O(1),
+ * and monotonic deques of ticks whose prices may still become the window min or max.
+ * Sums are taken of prices shifted by the first price of the series, so the variance doesn't lose precision
+ * when prices are large compared to their spread.
+ * <p>
+ * The buffer keeps at most {@code maxTicks} latest ticks, older ticks are evicted from all windows,
+ * so on a busy stock the wide windows cover only the latest ticks.
+ * Ticks which are older than the previous tick are applied at its time.
+ */
+final class RollingStats {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final int maxTicks;
+
+    private final Window[] windows;
+
+    private long[] times = new long[INITIAL_CAPACITY];
+
+    private double[] prices = new double[INITIAL_CAPACITY];
+
+    private double[] returns = new double[INITIAL_CAPACITY];
+
+    /**
+     * Sequence number of the oldest kept tick.
+     */
+    private long head;
+
+    /**
+     * Sequence number of the next tick.
+     */
+    private long tail;
+
+    private double reference = Double.NaN;
+
+    private long lastTime = Long.MIN_VALUE;
+
+    private boolean loaded;
+
+    private long loadedUpTo = Long.MIN_VALUE;
+
+    RollingStats(int maxTicks) {
+        this.maxTicks = maxTicks;
+        StatsWindow[] statsWindows = StatsWindow.values();
+        this.windows = new Window[statsWindows.length];
+        for (int i = 0; i < statsWindows.length; i++) {
+            windows[i] = new Window(statsWindows[i]);
+        }
+    }
+
+    /**
+     * Loads existing ticks once, before the statistics are used.
+     * Ticks are applied to a separate instance whose state is taken over only when loading succeeds,
+     * so a failed load leaves nothing behind and can be retried.
+     *
+     * @param history - source of existing ticks in chronological order, which feeds them to the given consumer.
+     */
+    synchronized void ensureLoaded(@NonNull Consumer<TickConsumer> history) {
+        if (loaded) {
+            return;
+        }
+        RollingStats backfilled = new RollingStats(maxTicks);
+        history.accept((price, time) -> {
+            long nanos = toNanos(time);
+            backfilled.loadedUpTo = Math.max(backfilled.loadedUpTo, nanos);
+            backfilled.add(price, nanos);
+        });
+        takeOver(backfilled);
+        loaded = true;
+    }
+
+    /**
+     * Applies a live tick. Ticks which arrive before the statistics are loaded, or which were already loaded, are skipped.
+     */
+    synchronized void addLive(double price, @NonNull Instant time) {
+        long nanos = toNanos(time);
+        if (loaded && nanos > loadedUpTo) {
+            add(price, nanos);
+        }
+    }
+
+    /**
+     * Returns statistics of the window which ends at the given moment.
+     */
+    synchronized PriceStats get(@NonNull StatsWindow statsWindow, @NonNull Instant now) {
+        Window window = windows[statsWindow.ordinal()];
+        window.expire(toNanos(now));
+        return window.toStats();
+    }
+
+    private void add(double price, long time) {
+        long tickTime = Math.max(time, lastTime);
+        if (Double.isNaN(reference)) {
+            reference = price;
+        }
+        double logReturn = tail == head ? Double.NaN : Math.log(price / prices[indexOf(tail - 1)]);
+        if (tail - head == maxTicks) {
+            for (Window window : windows) {
+                if (window.start == head) {
+                    window.evictFirst();
+                }
+            }
+            head++;
+        }
+        if (tail - head == times.length) {
+            grow();
+        }
+        int index = indexOf(tail);
+        times[index] = tickTime;
+        prices[index] = price;
+        returns[index] = logReturn;
+        long sequence = tail++;
+        for (Window window : windows) {
+            window.add(sequence);
+            window.expire(tickTime);
+        }
+        // windows are ordered by their duration, the widest one starts at the oldest tick anybody needs
+        head = windows[windows.length - 1].start;
+        lastTime = tickTime;
+    }
+
+    private void takeOver(@NonNull RollingStats other) {
+        times = other.times;
+        prices = other.prices;
+        returns = other.returns;
+        head = other.head;
+        tail = other.tail;
+        reference = other.reference;
+        lastTime = other.lastTime;
+        loadedUpTo = other.loadedUpTo;
+        for (int i = 0; i < windows.length; i++) {
+            windows[i].takeOver(other.windows[i]);
+        }
+    }
+
+    private void grow() {
+        long[] grownTimes = new long[times.length * 2];
+        double[] grownPrices = new double[times.length * 2];
+        double[] grownReturns = new double[times.length * 2];
+        for (long sequence = head; sequence < tail; sequence++) {
+            int from = indexOf(sequence);
+            int to = (int) (sequence & (grownTimes.length - 1));
+            grownTimes[to] = times[from];
+            grownPrices[to] = prices[from];
+            grownReturns[to] = returns[from];
+        }
+        times = grownTimes;
+        prices = grownPrices;
+        returns = grownReturns;
+    }
+
+    private int indexOf(long sequence) {
+        return (int) (sequence & (times.length - 1));
+    }
+
+    private static long toNanos(Instant time) {
+        return time.getEpochSecond() * 1_000_000_000L + time.getNano();
+    }
+
+    @FunctionalInterface
+    interface TickConsumer {
+        void accept(double price, Instant time);
+    }
+
+    private final class Window {
+
+        private final StatsWindow statsWindow;
+
+        private LongDeque minCandidates = new LongDeque();
+
+        private LongDeque maxCandidates = new LongDeque();
+
+        /**
+         * Sequence number of the oldest tick of the window.
+         */
+        private long start;
+
+        private double sum;
+
+        private double sumOfSquares;
+
+        private double returnSum;
+
+        private double returnSumOfSquares;
+
+        private Window(StatsWindow statsWindow) {
+            this.statsWindow = statsWindow;
+        }
+
+        private long size() {
+            return tail - start;
+        }
+
+        /**
+         * Adds the newest tick, which is already in the buffer.
+         */
+        private void add(long sequence) {
+            int index = indexOf(sequence);
+            double price = prices[index];
+            double shifted = price - reference;
+            sum += shifted;
+            sumOfSquares += shifted * shifted;
+            if (size() > 1) {
+                // return of the first tick of the window is relative to a tick outside of it
+                returnSum += returns[index];
+                returnSumOfSquares += returns[index] * returns[index];
+            }
+            while (!minCandidates.isEmpty() && prices[indexOf(minCandidates.peekLast())] >= price) {
+                minCandidates.pollLast();
+            }
+            minCandidates.addLast(sequence);
+            while (!maxCandidates.isEmpty() && prices[indexOf(maxCandidates.peekLast())] <= price) {
+                maxCandidates.pollLast();
+            }
+            maxCandidates.addLast(sequence);
+        }
+
+        /**
+         * Takes over the state of the same window of another instance, which is discarded afterwards.
+         */
+        private void takeOver(@NonNull Window other) {
+            minCandidates = other.minCandidates;
+            maxCandidates = other.maxCandidates;
+            start = other.start;
+            sum = other.sum;
+            sumOfSquares = other.sumOfSquares;
+            returnSum = other.returnSum;
+            returnSumOfSquares = other.returnSumOfSquares;
+        }
+
+        /**
+         * Evicts ticks which are at least the window duration older than the given moment.
+         */
+        private void expire(long now) {
+            long threshold = now - statsWindow.getNanos();
+            while (size() > 0 && times[indexOf(start)] <= threshold) {
+                evictFirst();
+            }
+        }
+
+        private void evictFirst() {
+            int index = indexOf(start);
+            double shifted = prices[index] - reference;
+            sum -= shifted;
+            sumOfSquares -= shifted * shifted;
+            if (size() > 1) {
+                double nextReturn = returns[indexOf(start + 1)];
+                returnSum -= nextReturn;
+                returnSumOfSquares -= nextReturn * nextReturn;
+            }
+            if (minCandidates.peekFirst() == start) {
+                minCandidates.pollFirst();
+            }
+            if (maxCandidates.peekFirst() == start) {
+                maxCandidates.pollFirst();
+            }
+            start++;
+            if (size() == 0) {
+                // rounding errors of the subtractions don't survive an empty window
+                sum = 0;
+                sumOfSquares = 0;
+                returnSum = 0;
+                returnSumOfSquares = 0;
+            }
+        }
+
+        private PriceStats toStats() {
+            long ticks = size();
+            if (ticks == 0) {
+                return new PriceStats(statsWindow.getCode(), 0, null, null, null, null, null);
+            }
+            double mean = sum / ticks;
+            double stdDev = Math.sqrt(Math.max(0, sumOfSquares / ticks - mean * mean));
+            Double volatility = null;
+            if (ticks > 1) {
+                long returnCount = ticks - 1;
+                double meanReturn = returnSum / returnCount;
+                volatility = Math.sqrt(Math.max(0, returnSumOfSquares / returnCount - meanReturn * meanReturn));
+            }
+            return new PriceStats(statsWindow.getCode(), ticks, reference + mean,
+                    prices[indexOf(minCandidates.peekFirst())], prices[indexOf(maxCandidates.peekFirst())],
+                    stdDev, volatility);
+        }
+    }
+}
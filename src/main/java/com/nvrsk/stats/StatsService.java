@@ -0,0 +1,110 @@
+package com.nvrsk.stats;
+
+import com.nvrsk.event.StockUpdatedEvent;
+import com.nvrsk.exception.HistoryNotFlushedException;
+import com.nvrsk.exception.IncorrectRequestException;
+import com.nvrsk.exception.SeedingInProgressException;
+import com.nvrsk.history.PriceHistoryWriteBehind;
+import com.nvrsk.model.PriceStats;
+import com.nvrsk.model.StockInfo;
+import com.nvrsk.seed.StockSeeder;
+import com.nvrsk.service.PriceHistoryService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.lang.NonNull;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Instant;
+import java.util.Collections;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Service to serve rolling {@link PriceStats} of stocks.
+ * <p>
+ * Statistics of a stock are backfilled from its price history on the first request,
+ * after that they are updated incrementally by every committed {@link StockUpdatedEvent},
+ * so a request costs O(1) instead of a scan of the history.
+ * Statistics aren't backfilled while {@link StockSeeder} loads history in background, since seeded ticks have no events.
+ * Every stock keeps at most {@code stocks.stats.max-ticks} latest ticks in memory.
+ */
+@Service
+public class StatsService {
+
+    private static final long WRITE_BEHIND_FLUSH_TIMEOUT_MILLIS = 5_000;
+
+    private final ConcurrentMap<Long, RollingStats> stats = new ConcurrentHashMap<>();
+
+    private final int maxTicks;
+
+    @Autowired
+    private PriceHistoryService priceHistoryService;
+
+    @Autowired(required = false)
+    private PriceHistoryWriteBehind priceHistoryWriteBehind;
+
+    @Autowired(required = false)
+    private StockSeeder stockSeeder;
+
+    @Autowired
+    public StatsService(@Value("${stocks.stats.max-ticks:100000}") int maxTicks) {
+        this.maxTicks = maxTicks;
+    }
+
+    /**
+     * Returns statistics of the stock within the window which ends at the current moment.
+     *
+     * @param stockId - id of the stock, it should exist.
+     * @param window  - window code, see {@link StatsWindow}.
+     * @return statistics of the stock.
+     * @throws IncorrectRequestException when window is unknown.
+     * @throws HistoryNotFlushedException when statistics are loaded the first time and queued history isn't written in time.
+     * @throws SeedingInProgressException when statistics are loaded the first time while the seeder still loads history.
+     */
+    @NonNull
+    public PriceStats getStats(long stockId, @NonNull String window) {
+        StatsWindow statsWindow = StatsWindow.of(window);
+        RollingStats stockStats = stats.computeIfAbsent(stockId, id -> new RollingStats(maxTicks));
+        stockStats.ensureLoaded(consumer -> backfill(stockId, consumer));
+        return stockStats.get(statsWindow, Instant.now());
+    }
+
+    @TransactionalEventListener
+    public void onStockUpdated(@NonNull StockUpdatedEvent event) {
+        StockInfo stock = event.getStock();
+        RollingStats stockStats = stats.get(stock.getId());
+        if (stockStats != null) {
+            stockStats.addLive(stock.getCurrentPrice(), stock.getLastUpdate());
+        }
+    }
+
+    /**
+     * @return number of stocks which have their statistics kept in memory.
+     */
+    public int getStatsCount() {
+        return stats.size();
+    }
+
+    private void backfill(long stockId, @NonNull RollingStats.TickConsumer consumer) {
+        if (stockSeeder != null && stockSeeder.isInProgress()) {
+            // seeded ticks don't produce events, so statistics backfilled from a part of the history would stay incomplete
+            throw new SeedingInProgressException("Price history of stock " + stockId + " is still being loaded");
+        }
+        if (priceHistoryWriteBehind != null) {
+            // live ticks are skipped until the statistics are loaded, so the ones still queued can't be left out
+            boolean flushed;
+            try {
+                flushed = priceHistoryWriteBehind.awaitFlushed(WRITE_BEHIND_FLUSH_TIMEOUT_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                flushed = false;
+            }
+            if (!flushed) {
+                throw new HistoryNotFlushedException("Price history of stock " + stockId + " is not written yet");
+            }
+        }
+        priceHistoryService.exportHistory(Collections.singletonList(stockId),
+                tick -> consumer.accept(tick.getPrice(), tick.getStartDate()));
+    }
+}
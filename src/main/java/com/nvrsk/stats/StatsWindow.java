@@ -0,0 +1,51 @@
+package com.nvrsk.stats;
+
+import com.nvrsk.exception.IncorrectRequestException;
+import org.springframework.lang.NonNull;
+
+import java.time.Duration;
+
+/**
+ * Supported rolling windows of price statistics, a window ends at the moment it is queried.
+ */
+public enum StatsWindow {
+
+    ONE_MINUTE("1m", Duration.ofMinutes(1)),
+    FIVE_MINUTES("5m", Duration.ofMinutes(5)),
+    ONE_HOUR("1h", Duration.ofHours(1)),
+    ONE_DAY("1d", Duration.ofDays(1));
+
+    private final String code;
+
+    private final long nanos;
+
+    StatsWindow(String code, Duration duration) {
+        this.code = code;
+        this.nanos = duration.toNanos();
+    }
+
+    public String getCode() {
+        return code;
+    }
+
+    long getNanos() {
+        return nanos;
+    }
+
+    /**
+     * Parses window code, e.g. {@code 5m}.
+     *
+     * @param code - window code.
+     * @return window.
+     * @throws IncorrectRequestException when there is no such window.
+     */
+    @NonNull
+    public static StatsWindow of(@NonNull String code) {
+        for (StatsWindow window : values()) {
+            if (window.code.equals(code)) {
+                return window;
+            }
+        }
+        throw new IncorrectRequestException("Unsupported stats window: " + code);
+    }
+}
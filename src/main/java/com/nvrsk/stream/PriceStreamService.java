@@ -0,0 +1,150 @@
+package com.nvrsk.stream;
+
+import com.nvrsk.event.StockUpdatedEvent;
+import com.nvrsk.model.StockInfo;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.lang.NonNull;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import javax.annotation.PreDestroy;
+import java.util.Collection;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Pushes committed stock updates to Server-Sent Events subscribers.
+ * <p>
+ * Writers only put the update into every interested subscriber's buffer, sending happens on a dedicated pool.
+ * Buffers are conflated by stock id, so a slow subscriber gets the latest price of every stock instead of every tick.
+ * A subscriber which hasn't been sent any event for {@code stocks.stream.max-lag-ms} while its events are waiting
+ * is disconnected, so a client which doesn't read can't hold a sender thread for long.
+ * Lag is checked on every update and periodically, since a blocked subscriber may get no more updates.
+ */
+@Service
+public class PriceStreamService {
+
+    private static final Logger LOG = LoggerFactory.getLogger(PriceStreamService.class);
+
+    /**
+     * Name of events sent to subscribers.
+     */
+    public static final String PRICE_EVENT = "price";
+
+    private final Set<PriceSubscriber> subscribers = new CopyOnWriteArraySet<>();
+
+    private final ExecutorService senders;
+
+    private final ScheduledExecutorService lagChecker;
+
+    private final long timeoutMillis;
+
+    private final long maxLagMillis;
+
+    private final LongAdder dropped = new LongAdder();
+
+    public PriceStreamService(@Value("${stocks.stream.senders:4}") int senders,
+                              @Value("${stocks.stream.timeout-ms:0}") long timeoutMillis,
+                              @Value("${stocks.stream.max-lag-ms:5000}") long maxLagMillis) {
+        this.senders = Executors.newFixedThreadPool(senders, new SenderThreadFactory());
+        this.timeoutMillis = timeoutMillis;
+        this.maxLagMillis = maxLagMillis;
+        this.lagChecker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "price-stream-lag-checker");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long checkIntervalMillis = Math.max(maxLagMillis / 2, 1);
+        lagChecker.scheduleWithFixedDelay(this::disconnectLagging, checkIntervalMillis, checkIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    void stop() {
+        lagChecker.shutdownNow();
+        // drains which are already queued see the subscribers closed and complete their emitters
+        subscribers.forEach(PriceSubscriber::complete);
+        senders.shutdown();
+    }
+
+    /**
+     * Subscribes to price updates.
+     * The subscriber is registered before the initial state is read, so no update committed in between is missed.
+     *
+     * @param stockIds - ids of stocks to get updates for or empty collection to get updates of all stocks.
+     * @param initial  - reads current state of the stocks to send right away.
+     * @return emitter to return to the client.
+     */
+    @NonNull
+    public SseEmitter subscribe(@NonNull Collection<Long> stockIds, @NonNull Supplier<Collection<StockInfo>> initial) {
+        SseEmitter emitter = new SseEmitter(timeoutMillis);
+        PriceSubscriber subscriber = new PriceSubscriber(emitter, stockIds, maxLagMillis, senders);
+        emitter.onCompletion(() -> subscribers.remove(subscriber));
+        emitter.onTimeout(() -> subscribers.remove(subscriber));
+        emitter.onError(error -> subscribers.remove(subscriber));
+        subscribers.add(subscriber);
+        try {
+            subscriber.offerInitial(initial.get());
+        } catch (RuntimeException e) {
+            subscribers.remove(subscriber);
+            throw e;
+        }
+        return emitter;
+    }
+
+    @TransactionalEventListener
+    public void onStockUpdated(@NonNull StockUpdatedEvent event) {
+        StockInfo stock = event.getStock();
+        for (PriceSubscriber subscriber : subscribers) {
+            if (subscriber.isInterestedIn(stock.getId()) && !subscriber.offer(stock)) {
+                disconnected(subscriber);
+            }
+        }
+    }
+
+    private void disconnectLagging() {
+        long now = System.currentTimeMillis();
+        for (PriceSubscriber subscriber : subscribers) {
+            if (subscriber.isLagging(now)) {
+                subscriber.complete();
+                disconnected(subscriber);
+            }
+        }
+    }
+
+    private void disconnected(@NonNull PriceSubscriber subscriber) {
+        subscribers.remove(subscriber);
+        dropped.increment();
+        LOG.warn("Price stream subscriber is too slow and was disconnected");
+    }
+
+    public int getSubscriberCount() {
+        return subscribers.size();
+    }
+
+    public long getDroppedSubscribers() {
+        return dropped.sum();
+    }
+
+    private static class SenderThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger counter = new AtomicInteger();
+
+        @Override
+        public Thread newThread(@NonNull Runnable runnable) {
+            Thread thread = new Thread(runnable, "price-stream-sender-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
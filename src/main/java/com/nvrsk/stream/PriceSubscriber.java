@@ -0,0 +1,187 @@
+package com.nvrsk.stream;
+
+import com.nvrsk.model.StockInfo;
+import org.springframework.http.MediaType;
+import org.springframework.lang.NonNull;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Single Server-Sent Events subscriber with its own buffer of not yet sent stock updates.
+ * Buffer keeps only the latest update of every stock, at most one drain task per subscriber is scheduled at a time.
+ * Initial state of the stocks is queued separately and is sent before the updates.
+ * <p>
+ * Subscriber lags when events have been waiting for longer than the max lag without any of them sent,
+ * e.g. because its client doesn't read and a send blocks, or because all the sender threads are busy.
+ */
+class PriceSubscriber {
+
+    private final SseEmitter emitter;
+
+    private final Set<Long> stockIds;
+
+    private final long maxLagMillis;
+
+    private final Executor sender;
+
+    private final ConcurrentMap<Long, StockInfo> pending = new ConcurrentHashMap<>();
+
+    private final Queue<StockInfo> initial = new ConcurrentLinkedQueue<>();
+
+    private final AtomicBoolean draining = new AtomicBoolean();
+
+    /**
+     * Moment since which events have been waiting without any of them sent, {@code 0} when nothing is waiting.
+     */
+    private final AtomicLong waitingSince = new AtomicLong();
+
+    private volatile boolean closed;
+
+    private volatile Throwable error;
+
+    PriceSubscriber(@NonNull SseEmitter emitter, @NonNull Collection<Long> stockIds, long maxLagMillis, @NonNull Executor sender) {
+        this.emitter = emitter;
+        this.stockIds = new HashSet<>(stockIds);
+        this.maxLagMillis = maxLagMillis;
+        this.sender = sender;
+    }
+
+    boolean isInterestedIn(long stockId) {
+        return stockIds.isEmpty() || stockIds.contains(stockId);
+    }
+
+    /**
+     * Checks whether events have been waiting for longer than the max lag without any of them sent.
+     *
+     * @param now - current time in milliseconds.
+     * @return {@code true} when the subscriber can't keep up.
+     */
+    boolean isLagging(long now) {
+        long since = waitingSince.get();
+        return !closed && since != 0 && now - since > maxLagMillis;
+    }
+
+    /**
+     * Buffers the update and schedules sending, never blocks.
+     *
+     * @param stock - updated stock.
+     * @return {@code false} when the subscriber can't keep up and was completed.
+     */
+    boolean offer(@NonNull StockInfo stock) {
+        if (closed) {
+            return true;
+        }
+        pending.merge(stock.getId(), stock, (buffered, update) ->
+                update.getLastUpdate().isBefore(buffered.getLastUpdate()) ? buffered : update);
+        long now = System.currentTimeMillis();
+        waitingSince.compareAndSet(0, now);
+        if (isLagging(now)) {
+            complete();
+            return false;
+        }
+        scheduleDrain();
+        return true;
+    }
+
+    /**
+     * Queues initial state of the stocks to send before the buffered updates, never blocks.
+     *
+     * @param stocks - current state of the stocks.
+     */
+    void offerInitial(@NonNull Collection<StockInfo> stocks) {
+        if (closed) {
+            return;
+        }
+        initial.addAll(stocks);
+        waitingSince.compareAndSet(0, System.currentTimeMillis());
+        scheduleDrain();
+    }
+
+    /**
+     * Closes the subscriber, never blocks.
+     * Emitter methods are synchronized, so while a send is blocked by a client which doesn't read,
+     * the emitter is completed by the sender thread once the send returns, e.g. on the connection write timeout.
+     */
+    void complete() {
+        closed = true;
+        initial.clear();
+        pending.clear();
+        completeUnlessDraining();
+    }
+
+    private void completeUnlessDraining() {
+        // draining flag stays set, so the emitter is completed only once and no more drains are scheduled
+        if (draining.compareAndSet(false, true)) {
+            if (error == null) {
+                emitter.complete();
+            } else {
+                emitter.completeWithError(error);
+            }
+        }
+    }
+
+    private void scheduleDrain() {
+        if (draining.compareAndSet(false, true)) {
+            try {
+                sender.execute(this::drain);
+            } catch (RejectedExecutionException e) {
+                draining.set(false);
+            }
+        }
+    }
+
+    private void drain() {
+        try {
+            StockInfo stock;
+            while (!closed && (stock = initial.poll()) != null) {
+                // an update buffered since the state was read replaces it, an older one is dropped
+                StockInfo buffered = pending.remove(stock.getId());
+                send(buffered != null && !buffered.getLastUpdate().isBefore(stock.getLastUpdate()) ? buffered : stock);
+            }
+            Iterator<Map.Entry<Long, StockInfo>> updates = pending.entrySet().iterator();
+            while (!closed && updates.hasNext()) {
+                Map.Entry<Long, StockInfo> update = updates.next();
+                if (pending.remove(update.getKey(), update.getValue())) {
+                    send(update.getValue());
+                }
+            }
+        } catch (IOException | IllegalStateException e) {
+            error = e;
+            closed = true;
+            initial.clear();
+            pending.clear();
+        } finally {
+            if (initial.isEmpty() && pending.isEmpty()) {
+                waitingSince.set(0);
+            }
+            draining.set(false);
+        }
+        if (closed) {
+            completeUnlessDraining();
+        } else if (!(initial.isEmpty() && pending.isEmpty())) {
+            scheduleDrain();
+        }
+    }
+
+    private void send(@NonNull StockInfo stock) throws IOException {
+        // events have no id: the stream can't be resumed from an event, a reconnected client gets the current state
+        emitter.send(SseEmitter.event()
+                .name(PriceStreamService.PRICE_EVENT)
+                .data(stock, MediaType.APPLICATION_JSON));
+        waitingSince.set(System.currentTimeMillis());
+    }
+}
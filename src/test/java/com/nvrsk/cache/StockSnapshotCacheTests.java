@@ -0,0 +1,59 @@
+package com.nvrsk.cache;
+
+import com.nvrsk.event.StockUpdatedEvent;
+import com.nvrsk.model.StockInfo;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class StockSnapshotCacheTests {
+
+    private static final Instant TIMESTAMP = Instant.parse("2020-05-01T22:56:04Z");
+
+    private static StockInfo stock(long id, double price, Instant lastUpdate) {
+        return new StockInfo(id, "Stock" + id, price, lastUpdate);
+    }
+
+    @Test
+    void testHitsAndMisses() {
+        StockSnapshotCache cache = new StockSnapshotCache(10);
+        assertThat(cache.get(1)).isEmpty();
+
+        cache.onStockUpdated(new StockUpdatedEvent(stock(1, 2d, TIMESTAMP), true));
+
+        assertThat(cache.get(1)).hasValueSatisfying(stock -> assertThat(stock.getCurrentPrice()).isEqualTo(2d));
+        assertThat(cache.getHits()).isEqualTo(1);
+        assertThat(cache.getMisses()).isEqualTo(1);
+    }
+
+    @Test
+    void testKeepsMostRecentSnapshot() {
+        StockSnapshotCache cache = new StockSnapshotCache(10);
+        cache.put(stock(1, 3d, TIMESTAMP.plusSeconds(1)));
+        cache.put(stock(1, 2d, TIMESTAMP));
+
+        assertThat(cache.get(1)).hasValueSatisfying(stock -> assertThat(stock.getCurrentPrice()).isEqualTo(3d));
+    }
+
+    @Test
+    void testEvictsWhenFull() {
+        StockSnapshotCache cache = new StockSnapshotCache(2);
+        cache.put(stock(1, 1d, TIMESTAMP));
+        cache.put(stock(2, 2d, TIMESTAMP));
+        cache.put(stock(3, 3d, TIMESTAMP));
+
+        assertThat(cache.size()).isEqualTo(2);
+        assertThat(cache.getEvictions()).isEqualTo(1);
+        assertThat(cache.get(3)).isPresent();
+    }
+
+    @Test
+    void testDisabled() {
+        StockSnapshotCache cache = new StockSnapshotCache(0);
+        cache.put(stock(1, 1d, TIMESTAMP));
+
+        assertThat(cache.get(1)).isEmpty();
+    }
+}
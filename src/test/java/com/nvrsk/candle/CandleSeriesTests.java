@@ -0,0 +1,83 @@
+package com.nvrsk.candle;
+
+import com.nvrsk.model.Candle;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CandleSeriesTests {
+
+    private static final Instant START = Instant.parse("2020-05-01T21:00:00Z");
+
+    @Test
+    void testAggregatesTicks() {
+        CandleSeries series = new CandleSeries(100);
+        series.ensureLoaded(consumer -> {
+            consumer.accept(2d, START.plusSeconds(30));
+            consumer.accept(3d, START.plusSeconds(70));
+        });
+        series.addLive(1d, START.plusSeconds(10));
+        series.addLive(2.5, START.plusSeconds(80));
+
+        List<Candle> hours = series.get(CandleInterval.ONE_HOUR, START, START);
+        assertThat(hours).hasSize(1);
+        Candle hour = hours.get(0);
+        assertThat(hour.getStartDate()).isEqualTo(START);
+        assertThat(hour.getOpen()).isEqualTo(2d);
+        assertThat(hour.getHigh()).isEqualTo(3d);
+        assertThat(hour.getLow()).isEqualTo(2d);
+        assertThat(hour.getClose()).isEqualTo(2.5);
+        assertThat(hour.getTicks()).isEqualTo(3);
+
+        assertThat(series.get(CandleInterval.ONE_MINUTE, START, START.plusSeconds(3600)))
+                .extracting(Candle::getStartDate)
+                .containsExactly(START, START.plusSeconds(60));
+    }
+
+    @Test
+    void testSkipsTicksBeforeLoading() {
+        CandleSeries series = new CandleSeries(100);
+        series.addLive(1d, START);
+        series.ensureLoaded(consumer -> {
+        });
+
+        assertThat(series.get(CandleInterval.ONE_DAY, START, START)).isEmpty();
+    }
+
+    @Test
+    void testKeepsLatestBuckets() {
+        CandleSeries series = new CandleSeries(2);
+        series.ensureLoaded(consumer -> {
+            consumer.accept(1d, START);
+            consumer.accept(2d, START.plusSeconds(60));
+            consumer.accept(3d, START.plusSeconds(120));
+        });
+
+        assertThat(series.get(CandleInterval.ONE_MINUTE, START, START.plusSeconds(120)))
+                .extracting(Candle::getClose)
+                .containsExactly(2d, 3d);
+    }
+
+    @Test
+    void testRetriesFailedLoadFromScratch() {
+        CandleSeries series = new CandleSeries(100);
+        assertThatThrownBy(() -> series.ensureLoaded(consumer -> {
+            consumer.accept(1d, START);
+            throw new IllegalStateException("export failed");
+        })).isInstanceOf(IllegalStateException.class);
+        series.addLive(2d, START.plusSeconds(10));
+
+        series.ensureLoaded(consumer -> {
+            consumer.accept(1d, START);
+            consumer.accept(3d, START.plusSeconds(20));
+        });
+
+        List<Candle> hours = series.get(CandleInterval.ONE_HOUR, START, START);
+        assertThat(hours).extracting(Candle::getTicks).containsExactly(2L);
+        assertThat(hours).extracting(Candle::getClose).containsExactly(3d);
+    }
+}
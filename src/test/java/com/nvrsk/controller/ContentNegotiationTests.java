@@ -0,0 +1,152 @@
+package com.nvrsk.controller;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.nvrsk.Application;
+import com.nvrsk.export.HistoryColumnsHttpMessageConverter;
+import com.nvrsk.model.PriceHistory;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.util.StreamUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ContentNegotiationTests {
+
+    private static final String HISTORY_JSON = "[" +
+            "{\"price\":2.0,\"startDate\":\"2020-05-01T22:56:04Z\"}," +
+            "{\"price\":1.99,\"startDate\":\"2020-05-01T21:54:03Z\"}" +
+            "]";
+
+    private static ConfigurableApplicationContext context;
+
+    private static int port;
+
+    @BeforeAll
+    static void start() {
+        context = new SpringApplicationBuilder(Application.class)
+                .properties(
+                        "server.port=0",
+                        "spring.datasource.url=jdbc:h2:mem:negotiation",
+                        "server.compression.min-response-size=1")
+                .run();
+        port = context.getEnvironment().getRequiredProperty("local.server.port", Integer.class);
+    }
+
+    @AfterAll
+    static void stop() {
+        context.close();
+    }
+
+    private HttpURLConnection get(String path, String accept, String acceptEncoding) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL("http://localhost:" + port + path).openConnection();
+        if (accept != null) {
+            connection.setRequestProperty("Accept", accept);
+        }
+        if (acceptEncoding != null) {
+            connection.setRequestProperty("Accept-Encoding", acceptEncoding);
+        }
+        assertThat(connection.getResponseCode()).isEqualTo(200);
+        return connection;
+    }
+
+    private static byte[] read(HttpURLConnection connection) throws IOException {
+        try (InputStream input = connection.getInputStream()) {
+            return StreamUtils.copyToByteArray(input);
+        }
+    }
+
+    private static List<String> vary(HttpURLConnection connection) {
+        return connection.getHeaderFields().getOrDefault("Vary", Collections.emptyList()).stream()
+                .flatMap(value -> Arrays.stream(value.split(",")))
+                .map(String::trim)
+                .collect(Collectors.toList());
+    }
+
+    private static void assertBinaryHistory(JsonNode history) {
+        assertThat(history.size()).isEqualTo(2);
+        assertThat(history.get(0).get("price").asDouble()).isEqualTo(2.0);
+        assertThat(history.get(0).get("startDate").decimalValue()).isEqualByComparingTo(new BigDecimal("1588373764"));
+        assertThat(history.get(1).get("price").asDouble()).isEqualTo(1.99);
+    }
+
+    @Test
+    void testJsonByDefault() throws Exception {
+        HttpURLConnection connection = get("/api/stocks/1/history", null, null);
+
+        assertThat(connection.getContentType()).isEqualTo("application/json");
+        assertThat(connection.getHeaderField("Content-Encoding")).isNull();
+        assertThat(new String(read(connection), StandardCharsets.UTF_8)).isEqualTo(HISTORY_JSON);
+    }
+
+    @Test
+    void testCbor() throws Exception {
+        HttpURLConnection connection = get("/api/stocks/1/history", "application/cbor", null);
+
+        assertThat(connection.getContentType()).isEqualTo("application/cbor");
+        assertThat(vary(connection)).contains("Accept");
+        byte[] body = read(connection);
+        assertThat(body.length).isLessThan(HISTORY_JSON.length());
+        assertBinaryHistory(new ObjectMapper(new CBORFactory()).readTree(body));
+    }
+
+    @Test
+    void testSmile() throws Exception {
+        HttpURLConnection connection = get("/api/stocks/1/history", "application/x-jackson-smile", null);
+
+        assertThat(connection.getContentType()).isEqualTo("application/x-jackson-smile");
+        byte[] body = read(connection);
+        assertThat(body.length).isLessThan(HISTORY_JSON.length());
+        assertBinaryHistory(new ObjectMapper(new SmileFactory()).readTree(body));
+    }
+
+    @Test
+    void testHistoryColumns() throws Exception {
+        HttpURLConnection connection = get("/api/stocks/1/history", "application/x-price-history", null);
+
+        assertThat(connection.getContentType()).isEqualTo("application/x-price-history");
+        byte[] body = read(connection);
+        assertThat(body.length).isLessThan(HISTORY_JSON.length() / 3);
+        List<PriceHistory> history = HistoryColumnsHttpMessageConverter.read(new ByteArrayInputStream(body));
+        assertThat(history).extracting(PriceHistory::getPrice).containsExactly(2.0, 1.99);
+        assertThat(history).extracting(PriceHistory::getStartDate)
+                .containsExactly(Instant.parse("2020-05-01T22:56:04Z"), Instant.parse("2020-05-01T21:54:03Z"));
+    }
+
+    @Test
+    void testHistoryColumnsOnlyForHistory() throws Exception {
+        HttpURLConnection connection = (HttpURLConnection) new URL("http://localhost:" + port + "/api/stocks/1").openConnection();
+        connection.setRequestProperty("Accept", "application/x-price-history");
+
+        assertThat(connection.getResponseCode()).isEqualTo(406);
+    }
+
+    @Test
+    void testGzipJson() throws Exception {
+        HttpURLConnection connection = get("/api/stocks/1/history", "application/json", "gzip");
+
+        assertThat(connection.getHeaderField("Content-Encoding")).isEqualTo("gzip");
+        try (InputStream input = new GZIPInputStream(connection.getInputStream())) {
+            assertThat(StreamUtils.copyToString(input, StandardCharsets.UTF_8)).isEqualTo(HISTORY_JSON);
+        }
+    }
+}
@@ -1,26 +1,35 @@
 package com.nvrsk.controller;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nvrsk.cache.StockNameIndex;
 import com.nvrsk.exception.IncorrectRequestException;
+import com.nvrsk.exception.PriceNotFoundException;
 import com.nvrsk.exception.StockAlreadyExistsException;
 import com.nvrsk.exception.StockNotFoundException;
 import com.nvrsk.model.PriceHistory;
 import com.nvrsk.model.Stock;
+import com.nvrsk.repository.PriceHistoryRepository;
 import com.nvrsk.repository.StockRepository;
 import com.nvrsk.request.NewStockRequest;
 import com.nvrsk.request.PriceUpdateRequest;
+import com.nvrsk.request.StockPriceUpdateRequest;
+import com.nvrsk.service.PriceHistoryService;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.test.annotation.DirtiesContext;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.web.method.annotation.MethodArgumentTypeMismatchException;
 
 import java.time.Instant;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
 
@@ -41,11 +50,32 @@ class StockControllerTests {
     @Autowired
     private StockRepository stockRepository;
 
+    @Autowired
+    private PriceHistoryRepository priceHistoryRepository;
+
+    @Autowired
+    private StockNameIndex stockNameIndex;
+
     private static void assertException(Exception exception, Class<? extends Throwable> exceptionClass, String message) {
         assertThat(exception).isNotNull().isExactlyInstanceOf(exceptionClass);
         assertThat(exception.getMessage()).isEqualTo(message);
     }
 
+    private static StockPriceUpdateRequest priceUpdate(long id, double price) {
+        StockPriceUpdateRequest priceUpdateRequest = new StockPriceUpdateRequest();
+        priceUpdateRequest.setId(id);
+        priceUpdateRequest.setPrice(price);
+        return priceUpdateRequest;
+    }
+
+    private Optional<Stock> findStock(String name) {
+        return stockNameIndex.findId(name).flatMap(stockRepository::findById);
+    }
+
+    private List<PriceHistory> getHistory(Stock stock) {
+        return priceHistoryRepository.findLatest(stock.getId(), PageRequest.of(0, PriceHistoryService.MAX_PAGE_SIZE));
+    }
+
     @Test
     void testGetAllStocks() throws Exception {
         mockMvc.perform(get("/api/stocks"))
@@ -67,6 +97,120 @@ class StockControllerTests {
                         true));
     }
 
+    @Test
+    void testGetStockAfterPut() throws Exception {
+        mockMvc.perform(get("/api/stocks/2"))
+                .andExpect(status().isOk())
+                .andExpect(content().json("{\"currentPrice\":1.92}"));
+
+        PriceUpdateRequest priceUpdateRequest = new PriceUpdateRequest();
+        priceUpdateRequest.setPrice(3.1);
+        mockMvc.perform(
+                put("/api/stocks/2")
+                        .contentType("application/json")
+                        .content(new ObjectMapper().writeValueAsString(priceUpdateRequest)))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(get("/api/stocks/2"))
+                .andExpect(status().isOk())
+                .andExpect(content().json("{\"currentPrice\":3.1}"));
+    }
+
+    @Test
+    void testGetStockNotModified() throws Exception {
+        String etag = mockMvc.perform(get("/api/stocks/2"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Last-Modified", "Sat, 02 May 2020 21:08:47 GMT"))
+                .andExpect(header().string("Vary", "Accept"))
+                .andReturn()
+                .getResponse()
+                .getHeader("ETag");
+        assertThat(etag).startsWith("W/\"");
+
+        mockMvc.perform(get("/api/stocks/2").header("If-None-Match", etag))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string("Vary", "Accept"))
+                .andExpect(content().string(""));
+        mockMvc.perform(get("/api/stocks/2").header("If-Modified-Since", "Sat, 02 May 2020 21:08:47 GMT"))
+                .andExpect(status().isNotModified());
+
+        mockMvc.perform(put("/api/stocks/2").contentType("application/json").content("{\"price\":1.5}"))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(get("/api/stocks/2").header("If-None-Match", etag))
+                .andExpect(status().isOk())
+                .andExpect(content().json("{\"id\":2,\"currentPrice\":1.5}"));
+    }
+
+    @Test
+    void testGetAllStocksNotModified() throws Exception {
+        String etag = mockMvc.perform(get("/api/stocks"))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist("Last-Modified"))
+                .andReturn()
+                .getResponse()
+                .getHeader("ETag");
+
+        mockMvc.perform(get("/api/stocks").header("If-None-Match", etag))
+                .andExpect(status().isNotModified());
+
+        mockMvc.perform(put("/api/stocks/1").contentType("application/json").content("{\"price\":2.5}"))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(get("/api/stocks").header("If-None-Match", etag))
+                .andExpect(status().isOk())
+                .andExpect(content().json("[{\"id\":1,\"currentPrice\":2.5},{\"id\":2}]"));
+    }
+
+    @Test
+    void testGetHistoryNotModified() throws Exception {
+        String etag = mockMvc.perform(get("/api/stocks/1/history"))
+                .andExpect(status().isOk())
+                .andReturn()
+                .getResponse()
+                .getHeader("ETag");
+
+        mockMvc.perform(get("/api/stocks/1/history").header("If-None-Match", etag))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string("Vary", "Accept"))
+                .andExpect(content().string(""));
+
+        mockMvc.perform(put("/api/stocks/1").contentType("application/json").content("{\"price\":2.5}"))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(get("/api/stocks/1/history").header("If-None-Match", etag))
+                .andExpect(status().isOk())
+                .andExpect(content().json("[{\"price\":2.5},{\"price\":2.0},{\"price\":1.99}]"));
+    }
+
+    @Test
+    void testStreamPrices() throws Exception {
+        MvcResult stream = mockMvc.perform(get("/api/stocks/stream").param("ids", "2"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        for (long id = 1; id <= 2; id++) {
+            PriceUpdateRequest priceUpdateRequest = new PriceUpdateRequest();
+            priceUpdateRequest.setPrice(3.1);
+            mockMvc.perform(
+                    put("/api/stocks/" + id)
+                            .contentType("application/json")
+                            .content(new ObjectMapper().writeValueAsString(priceUpdateRequest)))
+                    .andExpect(status().isOk());
+        }
+
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (!stream.getResponse().getContentAsString().contains("\"currentPrice\":3.1")
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        String events = stream.getResponse().getContentAsString();
+        assertThat(events)
+                .contains("event:price")
+                .contains("\"name\":\"Stock2.N\",\"currentPrice\":3.1")
+                .doesNotContain("Stock1.L");
+    }
+
     @Test
     void testGetIncorrectId() throws Exception {
         Exception exception = mockMvc.perform(get("/api/stocks/3"))
@@ -100,6 +244,206 @@ class StockControllerTests {
                 ));
     }
 
+    @Test
+    void testGetHistoryPages() throws Exception {
+        String nextCursor = mockMvc.perform(
+                get("/api/stocks/1/history").param("limit", "1"))
+                .andExpect(status().isOk())
+                .andExpect(header().exists(StockController.NEXT_CURSOR_HEADER))
+                .andExpect(content().json("[{\"price\":2.0,\"startDate\":\"2020-05-01T22:56:04Z\"}]", true))
+                .andReturn()
+                .getResponse()
+                .getHeader(StockController.NEXT_CURSOR_HEADER);
+
+        mockMvc.perform(
+                get("/api/stocks/1/history").param("limit", "1").param("cursor", nextCursor))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist(StockController.NEXT_CURSOR_HEADER))
+                .andExpect(content().json("[{\"price\":1.99,\"startDate\":\"2020-05-01T21:54:03Z\"}]", true));
+    }
+
+    @Test
+    void testGetHistoryRange() throws Exception {
+        mockMvc.perform(
+                get("/api/stocks/1/history")
+                        .param("from", "2020-05-01T21:54:03Z")
+                        .param("to", "2020-05-01T22:00:00Z"))
+                .andExpect(status().isOk())
+                .andExpect(content().json("[{\"price\":1.99,\"startDate\":\"2020-05-01T21:54:03Z\"}]", true));
+
+        mockMvc.perform(
+                get("/api/stocks/1/history").param("from", "2020-05-01T22:00:00Z"))
+                .andExpect(status().isOk())
+                .andExpect(content().json("[{\"price\":2.0,\"startDate\":\"2020-05-01T22:56:04Z\"}]", true));
+    }
+
+    @Test
+    void testGetHistoryIncorrectRange() throws Exception {
+        Exception exception = mockMvc.perform(
+                get("/api/stocks/1/history")
+                        .param("from", "2020-05-02T00:00:00Z")
+                        .param("to", "2020-05-01T00:00:00Z"))
+                .andExpect(status().isBadRequest())
+                .andReturn()
+                .getResolvedException();
+        assertException(exception, IncorrectRequestException.class, "Start of the range should not be after its end");
+    }
+
+    @Test
+    void testGetPriceAt() throws Exception {
+        mockMvc.perform(get("/api/stocks/1/price").param("at", "2020-05-01T22:00:00Z"))
+                .andExpect(status().isOk())
+                .andExpect(content().json("{\"price\":1.99,\"startDate\":\"2020-05-01T21:54:03Z\"}", true));
+
+        mockMvc.perform(get("/api/stocks/1/price"))
+                .andExpect(status().isOk())
+                .andExpect(content().json("{\"price\":2.0,\"startDate\":\"2020-05-01T22:56:04Z\"}", true));
+    }
+
+    @Test
+    void testGetPriceBeforeFirstPrice() throws Exception {
+        Exception exception = mockMvc.perform(get("/api/stocks/1/price").param("at", "2020-05-01T00:00:00Z"))
+                .andExpect(status().isNotFound())
+                .andReturn()
+                .getResolvedException();
+        assertException(exception, PriceNotFoundException.class, "Stock with id 1 had no price at 2020-05-01T00:00:00Z");
+    }
+
+    @Test
+    void testGetHistoryIncorrectLimit() throws Exception {
+        Exception exception = mockMvc.perform(
+                get("/api/stocks/1/history").param("limit", "0"))
+                .andExpect(status().isBadRequest())
+                .andReturn()
+                .getResolvedException();
+        assertException(exception, IncorrectRequestException.class, "History limit should be between 1 and 1000");
+    }
+
+    @Test
+    void testGetHistoryIncorrectCursor() throws Exception {
+        Exception exception = mockMvc.perform(
+                get("/api/stocks/1/history").param("cursor", "garbage"))
+                .andExpect(status().isBadRequest())
+                .andReturn()
+                .getResolvedException();
+        assertException(exception, IncorrectRequestException.class, "Incorrect history cursor: garbage");
+    }
+
+    @Test
+    void testGetCandles() throws Exception {
+        mockMvc.perform(
+                get("/api/stocks/1/candles")
+                        .param("interval", "1h")
+                        .param("from", "2020-05-01T00:00:00Z")
+                        .param("to", "2020-05-02T00:00:00Z"))
+                .andExpect(status().isOk())
+                .andExpect(content().json(
+                        "[" +
+                                "{\"startDate\":\"2020-05-01T21:00:00Z\",\"open\":1.99,\"high\":1.99,\"low\":1.99,\"close\":1.99,\"ticks\":1}," +
+                                "{\"startDate\":\"2020-05-01T22:00:00Z\",\"open\":2.0,\"high\":2.0,\"low\":2.0,\"close\":2.0,\"ticks\":1}" +
+                                "]",
+                        true));
+
+        PriceUpdateRequest priceUpdateRequest = new PriceUpdateRequest();
+        priceUpdateRequest.setPrice(2.5);
+        mockMvc.perform(
+                put("/api/stocks/1")
+                        .contentType("application/json")
+                        .content(new ObjectMapper().writeValueAsString(priceUpdateRequest)))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(
+                get("/api/stocks/1/candles")
+                        .param("interval", "1d")
+                        .param("from", "2020-05-01T00:00:00Z"))
+                .andExpect(status().isOk())
+                .andExpect(content().json(
+                        "[" +
+                                "{\"startDate\":\"2020-05-01T00:00:00Z\",\"open\":1.99,\"high\":2.0,\"low\":1.99,\"close\":2.0,\"ticks\":2}," +
+                                "{\"open\":2.5,\"high\":2.5,\"low\":2.5,\"close\":2.5,\"ticks\":1}" +
+                                "]",
+                        false));
+    }
+
+    @Test
+    void testGetStats() throws Exception {
+        mockMvc.perform(put("/api/stocks/1").contentType("application/json").content("{\"price\":3.0}"))
+                .andExpect(status().isOk());
+        mockMvc.perform(get("/api/stocks/1/stats").param("window", "1m"))
+                .andExpect(status().isOk())
+                .andExpect(content().json("{\"window\":\"1m\",\"ticks\":1,\"average\":3.0,\"min\":3.0,\"max\":3.0,\"stdDev\":0.0,\"volatility\":null}", true));
+
+        mockMvc.perform(put("/api/stocks/1").contentType("application/json").content("{\"price\":4.0}"))
+                .andExpect(status().isOk());
+        mockMvc.perform(get("/api/stocks/1/stats").param("window", "1m"))
+                .andExpect(status().isOk())
+                .andExpect(content().json("{\"window\":\"1m\",\"ticks\":2,\"average\":3.5,\"min\":3.0,\"max\":4.0,\"stdDev\":0.5}"));
+    }
+
+    @Test
+    void testGetStatsIncorrectWindow() throws Exception {
+        Exception exception = mockMvc.perform(get("/api/stocks/1/stats").param("window", "2m"))
+                .andExpect(status().isBadRequest())
+                .andReturn()
+                .getResolvedException();
+        assertException(exception, IncorrectRequestException.class, "Unsupported stats window: 2m");
+    }
+
+    @Test
+    void testGetCandlesIncorrectInterval() throws Exception {
+        Exception exception = mockMvc.perform(get("/api/stocks/1/candles").param("interval", "2m"))
+                .andExpect(status().isBadRequest())
+                .andReturn()
+                .getResolvedException();
+        assertException(exception, IncorrectRequestException.class, "Unsupported candle interval: 2m");
+    }
+
+    @Test
+    void testGetCandlesIncorrectId() throws Exception {
+        Exception exception = mockMvc.perform(get("/api/stocks/3/candles"))
+                .andExpect(status().isNotFound())
+                .andReturn()
+                .getResolvedException();
+        assertException(exception, StockNotFoundException.class, "Stock with id 3 not found");
+    }
+
+    @Test
+    void testExportHistoryCsv() throws Exception {
+        MvcResult export = mockMvc.perform(get("/api/stocks/history/export").param("format", "csv"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        export.getAsyncResult(10_000);
+        mockMvc.perform(asyncDispatch(export))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("text/csv"))
+                .andExpect(content().string(
+                        "stockId,price,startDate\n" +
+                                "1,1.99,2020-05-01T21:54:03Z\n" +
+                                "1,2.0,2020-05-01T22:56:04Z\n" +
+                                "2,1.92,2020-05-02T21:08:47Z\n"));
+    }
+
+    @Test
+    void testExportHistoryNdjson() throws Exception {
+        MvcResult export = mockMvc.perform(get("/api/stocks/history/export").param("ids", "2"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        export.getAsyncResult(10_000);
+        mockMvc.perform(asyncDispatch(export))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("application/x-ndjson"))
+                .andExpect(content().string("{\"stockId\":2,\"price\":1.92,\"startDate\":\"2020-05-02T21:08:47Z\"}\n"));
+    }
+
+    @Test
+    void testExportHistoryIncorrectFormat() throws Exception {
+        Exception exception = mockMvc.perform(get("/api/stocks/history/export").param("format", "xml"))
+                .andExpect(status().isBadRequest())
+                .andReturn()
+                .getResolvedException();
+        assertException(exception, IncorrectRequestException.class, "Unsupported export format: xml");
+    }
+
     @Test
     void testGetHistoryIncorrectId() throws Exception {
         Exception exception = mockMvc.perform(
@@ -127,7 +471,7 @@ class StockControllerTests {
                 .andExpect(header().string("Location", equalTo("http://localhost/api/stocks/3")))
                 .andExpect(redirectedUrl("http://localhost/api/stocks/3"));
 
-        Optional<Stock> expectedStock = stockRepository.findByName("Stock3.H");
+        Optional<Stock> expectedStock = findStock("Stock3.H");
         assertThat(expectedStock)
                 .isPresent()
                 .hasValueSatisfying(stock -> Assertions.assertAll(
@@ -136,7 +480,7 @@ class StockControllerTests {
                         () -> assertThat(stock.getCurrentPrice()).isEqualTo(0.23d),
                         () -> assertThat(stock.getLastUpdate()).isAfter(timestamp),
                         () -> {
-                            List<PriceHistory> history = stock.getHistory();
+                            List<PriceHistory> history = getHistory(stock);
                             assertThat(history).isNotNull().hasSize(1);
                             PriceHistory priceHistory = history.get(0);
                             Assertions.assertAll(
@@ -147,6 +491,62 @@ class StockControllerTests {
         }));
     }
 
+    @Test
+    void testPostNewStocksBatch() throws Exception {
+        Stock stock = new Stock();
+        stock.setName("Stock5.N");
+        stock.setCurrentPrice(1.1d);
+        stock.setLastUpdate(Instant.now());
+        stockRepository.saveAndFlush(stock);
+
+        mockMvc.perform(
+                post("/api/stocks/batch")
+                        .contentType("application/json")
+                        .content("[" +
+                                "{\"name\":\" Stock3.H \",\"price\":0.23}," +
+                                "{\"name\":\"Stock4.N\",\"price\":0}," +
+                                "{\"name\":\"\",\"price\":1.0}," +
+                                "null," +
+                                "{\"name\":\"Stock1.L\",\"price\":1.0}," +
+                                "{\"name\":\"Stock5.N\",\"price\":1.0}," +
+                                "{\"name\":\"Stock3.H\",\"price\":0.5}," +
+                                "{\"name\":\"Stock6.L\",\"price\":4.2}" +
+                                "]"))
+                .andExpect(status().isOk())
+                .andExpect(content().json("[" +
+                        "{\"name\":\"Stock3.H\",\"id\":4,\"error\":null}," +
+                        "{\"name\":\"Stock4.N\",\"id\":null,\"error\":\"Stock price should be greater than 0\"}," +
+                        "{\"name\":\"\",\"id\":null,\"error\":\"Stock name can't be empty\"}," +
+                        "{\"name\":null,\"id\":null,\"error\":\"Stock can't be empty\"}," +
+                        "{\"name\":\"Stock1.L\",\"id\":null,\"error\":\"Stock already exists with name: Stock1.L\"}," +
+                        "{\"name\":\"Stock5.N\",\"id\":null,\"error\":\"Stock already exists with name: Stock5.N\"}," +
+                        "{\"name\":\"Stock3.H\",\"id\":null,\"error\":\"Stock already exists with name: Stock3.H\"}," +
+                        "{\"name\":\"Stock6.L\",\"id\":5,\"error\":null}" +
+                        "]", true));
+
+        assertThat(findStock("Stock3.H")).hasValueSatisfying(newStock -> {
+            assertThat(newStock.getCurrentPrice()).isEqualTo(0.23d);
+            assertThat(getHistory(newStock)).extracting(PriceHistory::getPrice).containsExactly(0.23d);
+        });
+        assertThat(findStock("Stock6.L")).hasValueSatisfying(newStock ->
+                assertThat(getHistory(newStock)).extracting(PriceHistory::getStartDate).containsExactly(newStock.getLastUpdate()));
+        mockMvc.perform(get("/api/stocks/5"))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    void testPostNewStocksEmptyBatch() throws Exception {
+        Exception exception = mockMvc.perform(
+                post("/api/stocks/batch")
+                        .contentType("application/json")
+                        .content("[]"))
+                .andExpect(status().isBadRequest())
+                .andReturn()
+                .getResolvedException();
+
+        assertException(exception, IncorrectRequestException.class, "Batch should contain from 1 to 10000 new stocks");
+    }
+
     @Test
     void testPostNewStockZeroPrice() throws Exception {
         NewStockRequest newStockRequest = new NewStockRequest();
@@ -198,6 +598,35 @@ class StockControllerTests {
         assertException(exception, StockAlreadyExistsException.class, "Stock already exists with name: Stock1.L");
     }
 
+    @Test
+    void testPostNewStockAlreadyInsertedBypassingServices() throws Exception {
+        NewStockRequest newStockRequest = new NewStockRequest();
+        newStockRequest.setName("Stock3.H");
+        newStockRequest.setPrice(0.23d);
+        mockMvc.perform(
+                post("/api/stocks")
+                        .contentType("application/json")
+                        .content(new ObjectMapper().writeValueAsString(newStockRequest)))
+                .andExpect(status().isCreated());
+
+        Stock stock = new Stock();
+        stock.setName("Stock4.N");
+        stock.setCurrentPrice(1.1d);
+        stock.setLastUpdate(Instant.now());
+        stockRepository.saveAndFlush(stock);
+
+        newStockRequest.setName("Stock4.N");
+        Exception exception = mockMvc.perform(
+                post("/api/stocks")
+                        .contentType("application/json")
+                        .content(new ObjectMapper().writeValueAsString(newStockRequest)))
+                .andExpect(status().isBadRequest())
+                .andReturn()
+                .getResolvedException();
+
+        assertException(exception, StockAlreadyExistsException.class, "Stock already exists with name: Stock4.N");
+    }
+
     @Test
     void testPutNewPrice() throws Exception {
         double newPrice = 3.1;
@@ -226,7 +655,7 @@ class StockControllerTests {
                         () -> assertThat(stock.getCurrentPrice()).isEqualTo(newPrice),
                         () -> assertThat(stock.getLastUpdate()).isAfter(timestampBeforeUpdate),
                         () -> {
-                            List<PriceHistory> history = stock.getHistory();
+                            List<PriceHistory> history = getHistory(stock);
                             assertThat(history).isNotNull().hasSize(2);
                             PriceHistory lastPriceHistory = history.get(0);
                             Assertions.assertAll(
@@ -289,4 +718,65 @@ class StockControllerTests {
                 .getResolvedException();
         assertException(exception, IncorrectRequestException.class, "Stock price should be greater than 0");
     }
+
+    @Test
+    void testPutNewPrices() throws Exception {
+        List<StockPriceUpdateRequest> priceUpdateRequests = Arrays.asList(
+                priceUpdate(1, 2.5), priceUpdate(2, 1.5), priceUpdate(1, 2.7));
+
+        mockMvc.perform(
+                put("/api/stocks/prices")
+                        .contentType("application/json")
+                        .content(new ObjectMapper().writeValueAsString(priceUpdateRequests)))
+                .andExpect(status().isOk())
+                .andExpect(content().string("Stock prices updated"));
+
+        Stock stock1 = stockRepository.findById(1L).orElseThrow(AssertionError::new);
+        Stock stock2 = stockRepository.findById(2L).orElseThrow(AssertionError::new);
+        Assertions.assertAll(
+                () -> assertThat(stock1.getCurrentPrice()).isEqualTo(2.7),
+                () -> assertThat(stock2.getCurrentPrice()).isEqualTo(1.5),
+                () -> assertThat(stock1.getLastUpdate()).isEqualTo(stock2.getLastUpdate()),
+                () -> {
+                    List<PriceHistory> history = getHistory(stock1);
+                    assertThat(history).hasSize(3);
+                    assertThat(history.get(0).getPrice()).isEqualTo(2.7);
+                    assertThat(history.get(0).getStartDate()).isEqualTo(stock1.getLastUpdate());
+                },
+                () -> {
+                    List<PriceHistory> history = getHistory(stock2);
+                    assertThat(history).hasSize(2);
+                    assertThat(history.get(0).getPrice()).isEqualTo(1.5);
+                    assertThat(history.get(0).getStartDate()).isEqualTo(stock2.getLastUpdate());
+                });
+    }
+
+    @Test
+    void testPutNewPricesIncorrectId() throws Exception {
+        List<StockPriceUpdateRequest> priceUpdateRequests = Arrays.asList(priceUpdate(1, 2.5), priceUpdate(3, 1.5));
+
+        Exception exception = mockMvc.perform(
+                put("/api/stocks/prices")
+                        .contentType("application/json")
+                        .content(new ObjectMapper().writeValueAsString(priceUpdateRequests)))
+                .andExpect(status().isNotFound())
+                .andReturn()
+                .getResolvedException();
+        assertException(exception, StockNotFoundException.class, "Stock with id 3 not found");
+
+        assertThat(stockRepository.findById(1L)).hasValueSatisfying(
+                stock -> assertThat(stock.getCurrentPrice()).isEqualTo(2d));
+    }
+
+    @Test
+    void testPutNewPricesEmpty() throws Exception {
+        Exception exception = mockMvc.perform(
+                put("/api/stocks/prices")
+                        .contentType("application/json")
+                        .content(new ObjectMapper().writeValueAsString(Collections.emptyList())))
+                .andExpect(status().isBadRequest())
+                .andReturn()
+                .getResolvedException();
+        assertException(exception, IncorrectRequestException.class, "Batch should contain from 1 to 10000 price updates");
+    }
 }
@@ -0,0 +1,42 @@
+package com.nvrsk.export;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.nvrsk.model.PriceTick;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class HistoryExportFormatTests {
+
+    private static final PriceTick TICK = new PriceTick(1, 2.5, Instant.parse("2020-05-01T21:00:00Z"));
+
+    @Test
+    void testLeavesOutputOpen() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        boolean[] closed = new boolean[1];
+        FilterOutputStream output = new FilterOutputStream(bytes) {
+            @Override
+            public void close() throws IOException {
+                closed[0] = true;
+                super.close();
+            }
+        };
+        ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+
+        for (HistoryExportFormat format : HistoryExportFormat.values()) {
+            format.write(output, objectMapper, ticks -> ticks.accept(TICK));
+        }
+
+        assertThat(closed[0]).isFalse();
+        assertThat(new String(bytes.toByteArray(), StandardCharsets.UTF_8))
+                .contains("\"stockId\":1")
+                .endsWith("stockId,price,startDate\n1,2.5,2020-05-01T21:00:00Z\n");
+    }
+}
@@ -0,0 +1,68 @@
+package com.nvrsk.history;
+
+import com.nvrsk.model.HistoryPage;
+import com.nvrsk.model.PriceHistory;
+import com.nvrsk.model.PriceTick;
+import com.nvrsk.request.StockPriceUpdateRequest;
+import com.nvrsk.service.StockService;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.util.Collections;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@ExtendWith(SpringExtension.class)
+@SpringBootTest(properties = "stocks.history.store=columnar")
+@DirtiesContext(classMode = DirtiesContext.ClassMode.BEFORE_EACH_TEST_METHOD)
+class ColumnarPriceHistoryStoreTests {
+
+    @Autowired
+    private StockService stockService;
+
+    @Autowired
+    private ColumnarPriceHistoryStore columnarPriceHistoryStore;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Test
+    void testServesHistoryFromColumns() {
+        assertThat(columnarPriceHistoryStore.getTickCount()).isEqualTo(3);
+
+        stockService.updateStockPrice(2, 3.1);
+        StockPriceUpdateRequest priceUpdateRequest = new StockPriceUpdateRequest();
+        priceUpdateRequest.setId(2L);
+        priceUpdateRequest.setPrice(3.2);
+        stockService.updateStockPrices(Collections.singletonList(priceUpdateRequest));
+
+        HistoryPage firstPage = stockService.getHistory(2, null, 2, null, null);
+        assertThat(firstPage.getItems()).extracting(PriceHistory::getPrice).containsExactly(3.2, 3.1);
+        HistoryPage secondPage = stockService.getHistory(2, firstPage.getNextCursor(), 2, null, null);
+        assertThat(secondPage.getItems()).extracting(PriceHistory::getPrice).containsExactly(1.92);
+        assertThat(secondPage.getNextCursor()).isNull();
+
+        assertThat(stockService.getPriceAt(2, Instant.now()).getPrice()).isEqualTo(3.2);
+        assertThat(columnarPriceHistoryStore.getTickCount()).isEqualTo(5);
+    }
+
+    @Test
+    void testDoesNotKeepRolledBackTicks() {
+        new TransactionTemplate(transactionManager).execute(status -> {
+            columnarPriceHistoryStore.append(Collections.singletonList(new PriceTick(2, 3.1, Instant.now())));
+            status.setRollbackOnly();
+            return null;
+        });
+
+        assertThat(stockService.getHistory(2, null, null, null, null).getItems())
+                .extracting(PriceHistory::getPrice)
+                .containsExactly(1.92);
+    }
+}
@@ -0,0 +1,66 @@
+package com.nvrsk.history;
+
+import com.nvrsk.service.StockService;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@ExtendWith(SpringExtension.class)
+@SpringBootTest(properties = {
+        "stocks.history.write-behind.enabled=true",
+        "stocks.history.write-behind.queue-capacity=2",
+        "stocks.history.write-behind.batch-size=1",
+        "spring.datasource.hikari.maximum-pool-size=2",
+        "spring.datasource.hikari.connection-timeout=1000"})
+@DirtiesContext
+class PriceHistoryWriteBehindBackpressureTests {
+
+    private static final int THREADS = 8;
+
+    private static final int UPDATES_PER_THREAD = 25;
+
+    @Autowired
+    private StockService stockService;
+
+    @Autowired
+    private PriceHistoryWriteBehind priceHistoryWriteBehind;
+
+    @Test
+    void testProducersWaitingForQueueDoNotStarveWriter() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int thread = 0; thread < THREADS; thread++) {
+            long stockId = thread % 2 + 1;
+            futures.add(executor.submit(() -> {
+                start.await();
+                for (int update = 1; update <= UPDATES_PER_THREAD; update++) {
+                    stockService.updateStockPrice(stockId, update);
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(60, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        assertThat(priceHistoryWriteBehind.awaitFlushed(10_000)).isTrue();
+        assertThat(priceHistoryWriteBehind.getWritten()).isEqualTo(THREADS * UPDATES_PER_THREAD);
+        assertThat(priceHistoryWriteBehind.getFailed()).isZero();
+    }
+}
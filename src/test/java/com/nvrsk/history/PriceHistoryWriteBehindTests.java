@@ -0,0 +1,95 @@
+package com.nvrsk.history;
+
+import com.nvrsk.model.PriceHistory;
+import com.nvrsk.model.PriceTick;
+import com.nvrsk.repository.PriceHistoryRepository;
+import com.nvrsk.request.NewStockRequest;
+import com.nvrsk.request.StockPriceUpdateRequest;
+import com.nvrsk.service.PriceHistoryService;
+import com.nvrsk.service.StockService;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.util.Collections;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@ExtendWith(SpringExtension.class)
+@SpringBootTest(properties = "stocks.history.write-behind.enabled=true")
+@DirtiesContext(classMode = DirtiesContext.ClassMode.BEFORE_EACH_TEST_METHOD)
+class PriceHistoryWriteBehindTests {
+
+    @Autowired
+    private StockService stockService;
+
+    @Autowired
+    private PriceHistoryWriteBehind priceHistoryWriteBehind;
+
+    @Autowired
+    private PriceHistoryRepository priceHistoryRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private List<PriceHistory> getHistory(long stockId) {
+        return priceHistoryRepository.findLatest(stockId, PageRequest.of(0, PriceHistoryService.MAX_PAGE_SIZE));
+    }
+
+    @Test
+    void testWritesHistoryBehind() throws Exception {
+        NewStockRequest newStockRequest = new NewStockRequest();
+        newStockRequest.setName("Stock3.H");
+        newStockRequest.setPrice(0.23d);
+        long newStockId = stockService.addNewStock(newStockRequest).getId();
+        stockService.updateStockPrice(2, 3.1);
+        StockPriceUpdateRequest priceUpdateRequest = new StockPriceUpdateRequest();
+        priceUpdateRequest.setId(2L);
+        priceUpdateRequest.setPrice(3.2);
+        stockService.updateStockPrices(Collections.singletonList(priceUpdateRequest));
+
+        assertThat(priceHistoryWriteBehind.awaitFlushed(10_000)).isTrue();
+
+        assertThat(getHistory(newStockId)).extracting(PriceHistory::getPrice).containsExactly(0.23d);
+        assertThat(getHistory(2)).extracting(PriceHistory::getPrice).containsExactly(3.2, 3.1, 1.92);
+        assertThat(priceHistoryWriteBehind.getWritten()).isEqualTo(3);
+        assertThat(priceHistoryWriteBehind.getFailed()).isZero();
+    }
+
+    @Test
+    void testDoesNotWriteRolledBackTicks() throws Exception {
+        new TransactionTemplate(transactionManager).execute(status -> {
+            priceHistoryWriteBehind.append(Collections.singletonList(new PriceTick(2, 3.1, Instant.now())));
+            status.setRollbackOnly();
+            return null;
+        });
+
+        assertThat(priceHistoryWriteBehind.awaitFlushed(10_000)).isTrue();
+
+        assertThat(getHistory(2)).extracting(PriceHistory::getPrice).containsExactly(1.92);
+        assertThat(priceHistoryWriteBehind.getWritten()).isZero();
+    }
+
+    @Test
+    void testWritesSynchronouslyAfterStop() throws Exception {
+        priceHistoryWriteBehind.stop();
+
+        new TransactionTemplate(transactionManager).execute(status -> {
+            priceHistoryWriteBehind.append(Collections.singletonList(new PriceTick(2, 3.1, Instant.now())));
+            return null;
+        });
+
+        assertThat(priceHistoryWriteBehind.getQueueSize()).isZero();
+        assertThat(priceHistoryWriteBehind.awaitFlushed(0)).isTrue();
+        assertThat(getHistory(2)).extracting(PriceHistory::getPrice).containsExactly(3.1, 1.92);
+        assertThat(priceHistoryWriteBehind.getWritten()).isEqualTo(1);
+    }
+}
@@ -0,0 +1,121 @@
+package com.nvrsk.history;
+
+import com.nvrsk.model.PriceHistory;
+import com.nvrsk.model.PriceTick;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TickColumnsTests {
+
+    private static final Instant START = Instant.parse("2020-05-01T21:00:00.123456789Z");
+
+    @Test
+    void testPagesFromNewestToOldest() {
+        TickColumns columns = new TickColumns(1, true);
+        int ticks = TickColumns.CHUNK_SIZE * 2 + 10;
+        for (int i = 0; i < ticks; i++) {
+            columns.append(i, START.plusSeconds(i));
+        }
+        assertThat(columns.size()).isEqualTo(ticks);
+
+        List<PriceHistory> page = columns.findPage(null, 0, null, 3);
+        assertThat(page).extracting(PriceHistory::getPrice).containsExactly(ticks - 1d, ticks - 2d, ticks - 3d);
+        assertThat(page.get(0).getStartDate()).isEqualTo(START.plusSeconds(ticks - 1));
+
+        PriceHistory last = page.get(2);
+        assertThat(columns.findPage(last.getStartDate(), last.getId(), null, 2))
+                .extracting(PriceHistory::getPrice)
+                .containsExactly(ticks - 4d, ticks - 5d);
+
+        assertThat(columns.findPage(START.plusSeconds(5), Long.MAX_VALUE, START.plusSeconds(4), 10))
+                .extracting(PriceHistory::getPrice)
+                .containsExactly(5d, 4d);
+    }
+
+    @Test
+    void testKeepsTicksSortedByTime() {
+        TickColumns columns = new TickColumns(1, false);
+        columns.append(1, START);
+        columns.append(3, START.plusSeconds(20));
+        columns.append(2, START.plusSeconds(10));
+        columns.append(4, START.plusSeconds(10));
+
+        assertThat(columns.findPage(null, 0, null, 10))
+                .extracting(PriceHistory::getPrice)
+                .containsExactly(3d, 4d, 2d, 1d);
+    }
+
+    @Test
+    void testKeepsIdsWhenOlderTickIsInserted() {
+        TickColumns columns = new TickColumns(1, true);
+        columns.append(1, START);
+        columns.append(2, START.plusSeconds(10));
+        columns.append(3, START.plusSeconds(10));
+        columns.append(4, START.plusSeconds(20));
+
+        List<PriceHistory> page = columns.findPage(null, 0, null, 2);
+        assertThat(page).extracting(PriceHistory::getPrice).containsExactly(4d, 3d);
+        PriceHistory last = page.get(1);
+
+        columns.append(5, START.plusSeconds(5));
+        columns.append(6, START.plusSeconds(10));
+
+        assertThat(columns.findPage(null, 0, null, 10))
+                .extracting(PriceHistory::getId)
+                .containsExactly(4L, 6L, 3L, 2L, 5L, 1L);
+        assertThat(columns.findPage(last.getStartDate(), last.getId(), null, 10))
+                .extracting(PriceHistory::getPrice)
+                .containsExactly(2d, 5d, 1d);
+    }
+
+    @Test
+    void testFindsPriceAt() {
+        TickColumns columns = new TickColumns(1, true);
+        columns.append(1, START);
+        columns.append(2, START.plusSeconds(10));
+
+        assertThat(columns.findAt(START.minusNanos(1))).isNull();
+        assertThat(columns.findAt(START).getPrice()).isEqualTo(1d);
+        assertThat(columns.findAt(START.plusSeconds(9)).getPrice()).isEqualTo(1d);
+        assertThat(columns.findAt(START.plusSeconds(10)).getPrice()).isEqualTo(2d);
+    }
+
+    @Test
+    void testClampsBoundsBeyondNanosRange() {
+        TickColumns columns = new TickColumns(1, true);
+        columns.append(1, START);
+        columns.append(2, START.plusSeconds(10));
+        Instant farFuture = Instant.parse("3000-01-01T00:00:00Z");
+        Instant farPast = Instant.parse("1000-01-01T00:00:00Z");
+
+        assertThat(columns.findAt(farFuture).getPrice()).isEqualTo(2d);
+        assertThat(columns.findAt(farPast)).isNull();
+        assertThat(columns.findPage(farFuture, 0, farPast, 10))
+                .extracting(PriceHistory::getPrice)
+                .containsExactly(2d, 1d);
+        assertThat(columns.findPage(null, 0, farFuture, 10)).isEmpty();
+    }
+
+    @Test
+    void testExportsAllTicks() {
+        TickColumns columns = new TickColumns(7, true);
+        int ticks = TickColumns.CHUNK_SIZE + 1;
+        for (int i = 0; i < ticks; i++) {
+            columns.append(i, START.plusSeconds(i));
+        }
+
+        List<PriceTick> exported = new ArrayList<>();
+        columns.export(exported::add);
+
+        assertThat(exported).hasSize(ticks);
+        assertThat(exported.get(ticks - 1).getStockId()).isEqualTo(7L);
+        assertThat(exported.get(ticks - 1).getPrice()).isEqualTo(ticks - 1d);
+        assertThat(exported.get(ticks - 1).getStartDate()).isEqualTo(START.plusSeconds(ticks - 1));
+        assertThat(columns.capacityBytes()).isEqualTo((TickColumns.CHUNK_SIZE + 16) * 24L);
+    }
+}
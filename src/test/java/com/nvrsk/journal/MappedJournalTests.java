@@ -0,0 +1,119 @@
+package com.nvrsk.journal;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.lang.NonNull;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MappedJournalTests {
+
+    private static final Instant START = Instant.parse("2020-05-01T21:00:00.123456789Z");
+
+    private static final int SEGMENT_SIZE = 256;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void testReplaysRecordsAcrossSegments() throws IOException {
+        try (MappedJournal journal = MappedJournal.open(directory, SEGMENT_SIZE, FsyncPolicy.ALWAYS, new Records())) {
+            journal.appendStock(1, "Stock1.L");
+            for (int i = 0; i < 20; i++) {
+                journal.appendTick(1, i, START.plusSeconds(i));
+            }
+        }
+        assertThat(segments()).hasSizeGreaterThan(1);
+
+        Records records = new Records();
+        try (MappedJournal journal = MappedJournal.open(directory, SEGMENT_SIZE, FsyncPolicy.NEVER, records)) {
+            assertThat(journal.getRecords()).isEqualTo(21);
+            journal.appendTick(1, 20, START.plusSeconds(20));
+        }
+        assertThat(records.values).hasSize(21);
+        assertThat(records.values.get(0)).isEqualTo("stock 1 Stock1.L");
+        assertThat(records.values.get(20)).isEqualTo("tick 1 19.0 " + START.plusSeconds(19));
+
+        records = new Records();
+        MappedJournal.open(directory, SEGMENT_SIZE, FsyncPolicy.NEVER, records).close();
+        assertThat(records.values).hasSize(22);
+        assertThat(records.values.get(21)).isEqualTo("tick 1 20.0 " + START.plusSeconds(20));
+    }
+
+    @Test
+    void testDiscardsTornRecord() throws IOException {
+        try (MappedJournal journal = MappedJournal.open(directory, SEGMENT_SIZE, FsyncPolicy.ALWAYS, new Records())) {
+            journal.appendStock(2, "Stock2.N");
+            journal.appendTick(2, 1.92, START);
+            journal.appendTick(2, 3.1, START.plusSeconds(1));
+        }
+        // corrupt the price of the last tick
+        Path segment = segments().get(0);
+        int lastTickPosition = 8 + 1 + 8 + "Stock2.N".length() + 8 + 29;
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[]{42}), lastTickPosition + 8 + 10);
+        }
+
+        Records records = new Records();
+        try (MappedJournal journal = MappedJournal.open(directory, SEGMENT_SIZE, FsyncPolicy.ALWAYS, records)) {
+            journal.appendTick(2, 3.2, START.plusSeconds(2));
+        }
+        assertThat(records.values).containsExactly("stock 2 Stock2.N", "tick 2 1.92 " + START);
+
+        records = new Records();
+        MappedJournal.open(directory, SEGMENT_SIZE, FsyncPolicy.ALWAYS, records).close();
+        assertThat(records.values).containsExactly(
+                "stock 2 Stock2.N", "tick 2 1.92 " + START, "tick 2 3.2 " + START.plusSeconds(2));
+    }
+
+    @Test
+    void testReplaysFromPosition() throws IOException {
+        long position;
+        try (MappedJournal journal = MappedJournal.open(directory, SEGMENT_SIZE, FsyncPolicy.NEVER, new Records())) {
+            for (int i = 0; i < 20; i++) {
+                journal.appendTick(1, i, START.plusSeconds(i));
+            }
+            position = journal.position();
+            journal.appendTick(1, 20, START.plusSeconds(20));
+            journal.deleteSegmentsBefore(position);
+        }
+        assertThat(segments()).hasSize(1);
+
+        Records records = new Records();
+        MappedJournal.open(directory, SEGMENT_SIZE, FsyncPolicy.NEVER, position, records).close();
+        assertThat(records.values).containsExactly("tick 1 20.0 " + START.plusSeconds(20));
+    }
+
+    private List<Path> segments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.sorted().collect(Collectors.toList());
+        }
+    }
+
+    private static class Records implements MappedJournal.Visitor {
+
+        private final List<String> values = new ArrayList<>();
+
+        @Override
+        public void onStock(long id, @NonNull String name) {
+            values.add("stock " + id + " " + name);
+        }
+
+        @Override
+        public void onTick(long stockId, double price, @NonNull Instant startDate) {
+            values.add("tick " + stockId + " " + price + " " + startDate);
+        }
+    }
+}
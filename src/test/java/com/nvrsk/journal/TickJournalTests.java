@@ -0,0 +1,121 @@
+package com.nvrsk.journal;
+
+import com.nvrsk.Application;
+import com.nvrsk.model.PriceHistory;
+import com.nvrsk.model.Stock;
+import com.nvrsk.model.StockInfo;
+import com.nvrsk.request.NewStockRequest;
+import com.nvrsk.service.StockService;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class TickJournalTests {
+
+    @TempDir
+    Path directory;
+
+    private ConfigurableApplicationContext start(String database, boolean snapshotOnShutdown) {
+        return new SpringApplicationBuilder(Application.class)
+                .properties(
+                        "server.port=0",
+                        "spring.datasource.url=jdbc:h2:mem:" + database,
+                        "stocks.journal.enabled=true",
+                        "stocks.journal.dir=" + directory,
+                        "stocks.journal.fsync=always",
+                        "stocks.journal.snapshot.on-shutdown=" + snapshotOnShutdown)
+                .run();
+    }
+
+    private static Stock addNewStock(StockService stockService, String name, double price) {
+        NewStockRequest newStockRequest = new NewStockRequest();
+        newStockRequest.setName(name);
+        newStockRequest.setPrice(price);
+        return stockService.addNewStock(newStockRequest);
+    }
+
+    @Test
+    void testRestoresStocksFromSnapshot() {
+        long newStockId;
+        try (ConfigurableApplicationContext context = start("journal1", true)) {
+            StockService stockService = context.getBean(StockService.class);
+            newStockId = addNewStock(stockService, "Stock3.H", 0.23d).getId();
+            stockService.updateStockPrice(2, 3.1);
+        }
+
+        long anotherStockId;
+        try (ConfigurableApplicationContext context = start("journal2", true)) {
+            assertThat(context.getBean(TickJournal.class).getRecords()).isZero();
+            StockService stockService = context.getBean(StockService.class);
+            assertThat(stockService.getAllStocks()).extracting(StockInfo::getName)
+                    .containsExactly("Stock1.L", "Stock2.N", "Stock3.H");
+            assertThat(stockService.lookupStock(2).getCurrentPrice()).isEqualTo(3.1);
+            assertThat(stockService.lookupStock(newStockId).getCurrentPrice()).isEqualTo(0.23d);
+            assertThat(stockService.getHistory(2, null, null, null, null).getItems())
+                    .extracting(PriceHistory::getPrice)
+                    .containsExactly(3.1, 1.92);
+
+            anotherStockId = addNewStock(stockService, "Stock4.N", 1.1d).getId();
+            assertThat(anotherStockId).isGreaterThan(newStockId);
+            stockService.updateStockPrice(anotherStockId, 1.2);
+        }
+
+        try (ConfigurableApplicationContext context = start("journal3", true)) {
+            StockService stockService = context.getBean(StockService.class);
+            assertThat(stockService.lookupStock(anotherStockId).getCurrentPrice()).isEqualTo(1.2);
+            assertThat(stockService.getHistory(anotherStockId, null, null, null, null).getItems())
+                    .extracting(PriceHistory::getPrice)
+                    .containsExactly(1.2, 1.1);
+        }
+    }
+
+    @Test
+    void testReplaysJournalAfterSnapshot() {
+        long newStockId;
+        try (ConfigurableApplicationContext context = start("journal4", false)) {
+            StockService stockService = context.getBean(StockService.class);
+            newStockId = addNewStock(stockService, "Stock3.H", 0.23d).getId();
+            stockService.updateStockPrice(2, 3.1);
+        }
+
+        try (ConfigurableApplicationContext context = start("journal5", false)) {
+            assertThat(context.getBean(TickJournal.class).getRecords()).isEqualTo(3);
+            StockService stockService = context.getBean(StockService.class);
+            assertThat(stockService.lookupStock(newStockId).getName()).isEqualTo("Stock3.H");
+            assertThat(stockService.getHistory(2, null, null, null, null).getItems())
+                    .extracting(PriceHistory::getPrice)
+                    .containsExactly(3.1, 1.92);
+        }
+    }
+
+    @Test
+    void testRollsBackUpdateWhichIsNotJournaled() throws IOException {
+        try (ConfigurableApplicationContext context = start("journal6", false)) {
+            MappedJournal journal = (MappedJournal) ReflectionTestUtils.getField(context.getBean(TickJournal.class), "journal");
+            // the next record doesn't fit into the current segment and the next segment can't be created
+            long segmentIndex = (long) ReflectionTestUtils.getField(journal, "segmentIndex");
+            Files.createDirectory(directory.resolve(String.format("%020d.journal", segmentIndex + 1)));
+            ByteBuffer segment = (ByteBuffer) ReflectionTestUtils.getField(journal, "segment");
+            segment.position(segment.limit());
+
+            StockService stockService = context.getBean(StockService.class);
+            assertThatThrownBy(() -> stockService.updateStockPrice(2, 3.1))
+                    .isInstanceOf(UncheckedIOException.class);
+            assertThat(stockService.lookupStock(2).getCurrentPrice()).isEqualTo(1.92);
+            assertThat(stockService.getHistory(2, null, null, null, null).getItems())
+                    .extracting(PriceHistory::getPrice)
+                    .containsExactly(1.92);
+        }
+    }
+}
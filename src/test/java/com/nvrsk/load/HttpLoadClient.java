@@ -0,0 +1,301 @@
+package com.nvrsk.load;
+
+import org.springframework.lang.NonNull;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Minimal non-blocking HTTP/1.1 client which drives many keep-alive connections from a single thread,
+ * so the client itself doesn't need a thread per connection.
+ * Every connection sends its next request as soon as it gets the previous response.
+ */
+final class HttpLoadClient {
+
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+
+    private static final long SELECT_TIMEOUT_MILLIS = 100;
+
+    private static final int STATUS_START = "HTTP/1.1 ".length();
+
+    private static final byte[] HEADERS_END = "\r\n\r\n".getBytes(StandardCharsets.US_ASCII);
+
+    private static final byte[] LAST_CHUNK = "0\r\n\r\n".getBytes(StandardCharsets.US_ASCII);
+
+    private static final String CONTENT_LENGTH = "\r\ncontent-length:";
+
+    private final InetSocketAddress address;
+
+    private final ByteBuffer readBuffer = ByteBuffer.allocateDirect(READ_BUFFER_SIZE);
+
+    HttpLoadClient(@NonNull InetSocketAddress address) {
+        this.address = address;
+    }
+
+    /**
+     * Opens connections at once and sends requests over each of them one after another.
+     *
+     * @param connections           - number of concurrent connections.
+     * @param requestsPerConnection - number of requests sent over each connection.
+     * @param path                  - path of GET requests.
+     * @param timeoutMillis         - time after which requests which weren't answered are counted as errors.
+     * @return latencies of successful requests and number of failed ones.
+     */
+    @NonNull
+    Result run(int connections, int requestsPerConnection, @NonNull String path, long timeoutMillis) throws IOException {
+        byte[] request = ("GET " + path + " HTTP/1.1\r\nHost: " + address.getHostString() + "\r\nAccept: application/json\r\n\r\n")
+                .getBytes(StandardCharsets.US_ASCII);
+        Result result = new Result(connections, connections * (long) requestsPerConnection);
+        long started = System.nanoTime();
+        long deadline = started + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        try (Selector selector = Selector.open()) {
+            int open = 0;
+            for (int i = 0; i < connections; i++) {
+                Connection connection = new Connection(request, requestsPerConnection);
+                if (connection.connect(selector, result)) {
+                    open++;
+                }
+            }
+            while (open > 0 && System.nanoTime() < deadline) {
+                selector.select(SELECT_TIMEOUT_MILLIS);
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!((Connection) key.attachment()).handle(key, selector, result)) {
+                        open--;
+                    }
+                }
+            }
+            for (SelectionKey key : selector.keys()) {
+                result.errors += ((Connection) key.attachment()).remaining;
+                key.channel().close();
+            }
+        }
+        result.elapsedNanos = System.nanoTime() - started;
+        return result;
+    }
+
+    private final class Connection {
+
+        private final byte[] request;
+
+        private int remaining;
+
+        private ByteBuffer pendingRequest;
+
+        private long sentAt;
+
+        private byte[] response = new byte[1024];
+
+        private int responseSize;
+
+        private Connection(byte[] request, int remaining) {
+            this.request = request;
+            this.remaining = remaining;
+        }
+
+        private boolean connect(Selector selector, Result result) {
+            try {
+                SocketChannel channel = SocketChannel.open();
+                channel.configureBlocking(false);
+                channel.connect(address);
+                channel.register(selector, SelectionKey.OP_CONNECT, this);
+                return true;
+            } catch (IOException e) {
+                result.errors += remaining;
+                return false;
+            }
+        }
+
+        /**
+         * @return {@code false} when the connection is done.
+         */
+        private boolean handle(SelectionKey key, Selector selector, Result result) {
+            SocketChannel channel = (SocketChannel) key.channel();
+            try {
+                if (key.isConnectable()) {
+                    channel.finishConnect();
+                    send(key);
+                }
+                if (key.isWritable()) {
+                    channel.write(pendingRequest);
+                    if (!pendingRequest.hasRemaining()) {
+                        key.interestOps(SelectionKey.OP_READ);
+                    }
+                }
+                if (key.isReadable()) {
+                    return read(key, selector, result);
+                }
+                return true;
+            } catch (IOException e) {
+                result.errors += remaining;
+                close(key);
+                return false;
+            }
+        }
+
+        private boolean read(SelectionKey key, Selector selector, Result result) throws IOException {
+            readBuffer.clear();
+            if (((SocketChannel) key.channel()).read(readBuffer) < 0) {
+                throw new IOException("Connection closed by server");
+            }
+            readBuffer.flip();
+            int read = readBuffer.remaining();
+            if (responseSize + read > response.length) {
+                response = Arrays.copyOf(response, Math.max(response.length * 2, responseSize + read));
+            }
+            readBuffer.get(response, responseSize, read);
+            responseSize += read;
+
+            String headers = completeResponseHeaders();
+            if (headers == null) {
+                return true;
+            }
+            int status = Integer.parseInt(headers.substring(STATUS_START, STATUS_START + 3));
+            if (status >= 200 && status < 300) {
+                result.record(System.nanoTime() - sentAt);
+            } else {
+                result.errors++;
+            }
+            remaining--;
+            if (remaining == 0) {
+                close(key);
+                return false;
+            }
+            if (headers.contains("\r\nconnection: close")) {
+                // server limits requests per connection, the rest are sent over a new one
+                close(key);
+                return connect(selector, result);
+            }
+            send(key);
+            return true;
+        }
+
+        /**
+         * @return lower-cased headers of the response when it is read completely, otherwise {@code null}.
+         */
+        private String completeResponseHeaders() {
+            int headersEnd = indexOf(HEADERS_END, 0);
+            if (headersEnd < 0) {
+                return null;
+            }
+            String headers = new String(response, 0, headersEnd, StandardCharsets.ISO_8859_1).toLowerCase(Locale.ROOT);
+            int bodyStart = headersEnd + HEADERS_END.length;
+            if (headers.contains("\r\ntransfer-encoding: chunked")) {
+                int lastChunkStart = responseSize - LAST_CHUNK.length;
+                return lastChunkStart >= bodyStart && indexOf(LAST_CHUNK, lastChunkStart) == lastChunkStart ? headers : null;
+            }
+            int lengthStart = headers.indexOf(CONTENT_LENGTH);
+            if (lengthStart < 0) {
+                return headers;
+            }
+            lengthStart += CONTENT_LENGTH.length();
+            int lengthEnd = headers.indexOf('\r', lengthStart);
+            long length = Long.parseLong(headers.substring(lengthStart, lengthEnd < 0 ? headers.length() : lengthEnd).trim());
+            return responseSize >= bodyStart + length ? headers : null;
+        }
+
+        private int indexOf(byte[] bytes, int from) {
+            for (int i = from; i <= responseSize - bytes.length; i++) {
+                int j = 0;
+                while (j < bytes.length && response[i + j] == bytes[j]) {
+                    j++;
+                }
+                if (j == bytes.length) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        private void send(SelectionKey key) {
+            pendingRequest = ByteBuffer.wrap(request);
+            responseSize = 0;
+            sentAt = System.nanoTime();
+            key.interestOps(SelectionKey.OP_WRITE);
+        }
+
+        private void close(SelectionKey key) {
+            key.cancel();
+            try {
+                key.channel().close();
+            } catch (IOException e) {
+                // nothing to do with a connection which is closed anyway
+            }
+        }
+    }
+
+    /**
+     * Latencies and errors of a run.
+     */
+    static final class Result {
+
+        private final int connections;
+
+        private final long requests;
+
+        private long[] latencies = new long[1024];
+
+        private int size;
+
+        private long errors;
+
+        private long elapsedNanos;
+
+        private Result(int connections, long requests) {
+            this.connections = connections;
+            this.requests = requests;
+        }
+
+        private void record(long latencyNanos) {
+            if (size == latencies.length) {
+                latencies = Arrays.copyOf(latencies, size * 2);
+            }
+            latencies[size++] = latencyNanos;
+        }
+
+        long getErrors() {
+            return errors;
+        }
+
+        long getSucceeded() {
+            return size;
+        }
+
+        double getThroughput() {
+            return size / (elapsedNanos / 1e9);
+        }
+
+        /**
+         * @param percentile - percentile from 0 to 100.
+         * @return latency of the percentile in milliseconds.
+         */
+        double getLatencyMillis(double percentile) {
+            if (size == 0) {
+                return Double.NaN;
+            }
+            long[] sorted = Arrays.copyOf(latencies, size);
+            Arrays.sort(sorted);
+            int index = (int) Math.ceil(percentile / 100 * size) - 1;
+            return sorted[Math.max(0, Math.min(index, size - 1))] / 1e6;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT,
+                    "connections=%d requests=%d ok=%d errors=%d throughput=%.0f/s p50=%.2fms p99=%.2fms max=%.2fms",
+                    connections, requests, size, errors, getThroughput(),
+                    getLatencyMillis(50), getLatencyMillis(99), getLatencyMillis(100));
+        }
+    }
+}
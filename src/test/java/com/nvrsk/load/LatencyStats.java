@@ -0,0 +1,90 @@
+package com.nvrsk.load;
+
+import org.HdrHistogram.Histogram;
+import org.springframework.lang.NonNull;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latencies and errors of one kind of requests.
+ * <p>
+ * Requests are sent on a fixed schedule, so a latency is measured from the moment the request was due rather than
+ * from the moment it was actually sent. A stalled server delays the requests queued behind the slow one too,
+ * and their waiting time gets into the histogram instead of being omitted.
+ * The latency from the actual send is kept separately to show how much the correction matters.
+ */
+final class LatencyStats {
+
+    private static final int SIGNIFICANT_DIGITS = 3;
+
+    private static final double[] PERCENTILES = {50, 90, 99, 99.9};
+
+    private final Histogram latencies = new Histogram(SIGNIFICANT_DIGITS);
+
+    private final Histogram uncorrectedLatencies = new Histogram(SIGNIFICANT_DIGITS);
+
+    private long errors;
+
+    /**
+     * @param dueNanos      - moment the request was scheduled at.
+     * @param sentNanos     - moment the request was sent.
+     * @param receivedNanos - moment the response was received.
+     */
+    void record(long dueNanos, long sentNanos, long receivedNanos) {
+        latencies.recordValue(receivedNanos - dueNanos);
+        uncorrectedLatencies.recordValue(receivedNanos - sentNanos);
+    }
+
+    void recordError() {
+        errors++;
+    }
+
+    void add(@NonNull LatencyStats other) {
+        latencies.add(other.latencies);
+        uncorrectedLatencies.add(other.uncorrectedLatencies);
+        errors += other.errors;
+    }
+
+    long getRequests() {
+        return latencies.getTotalCount();
+    }
+
+    long getErrors() {
+        return errors;
+    }
+
+    double getLatencyMillis(double percentile) {
+        return toMillis(latencies.getValueAtPercentile(percentile));
+    }
+
+    /**
+     * @param durationNanos - duration of the run.
+     * @return machine-readable summary: counts, throughput of successful requests and latency percentiles in milliseconds.
+     */
+    @NonNull
+    Map<String, Object> toReport(long durationNanos) {
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("requests", getRequests());
+        report.put("errors", errors);
+        report.put("throughput", getRequests() / (durationNanos / (double) TimeUnit.SECONDS.toNanos(1)));
+        report.put("latencyMs", percentiles(latencies));
+        report.put("uncorrectedLatencyMs", percentiles(uncorrectedLatencies));
+        return report;
+    }
+
+    private static Map<String, Double> percentiles(Histogram histogram) {
+        Map<String, Double> percentiles = new LinkedHashMap<>();
+        for (double percentile : PERCENTILES) {
+            String name = percentile == Math.rint(percentile) ? String.valueOf((long) percentile) : String.valueOf(percentile);
+            percentiles.put("p" + name, toMillis(histogram.getValueAtPercentile(percentile)));
+        }
+        percentiles.put("max", toMillis(histogram.getMaxValue()));
+        return percentiles;
+    }
+
+    private static double toMillis(long nanos) {
+        return nanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+    }
+}
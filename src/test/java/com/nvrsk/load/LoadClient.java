@@ -0,0 +1,189 @@
+package com.nvrsk.load;
+
+import org.springframework.lang.NonNull;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * One of the concurrent clients of {@link LoadGenerator}: it sends every {@code clients}-th request of the shared schedule
+ * over its own keep-alive connection and records latencies into its own {@link LatencyStats}, so clients don't contend.
+ */
+final class LoadClient implements Runnable {
+
+    /**
+     * Kinds of requests the load is mixed of.
+     */
+    enum Operation {
+        GET, PUT, POST
+    }
+
+    private static final int TIMEOUT_MILLIS = 10_000;
+
+    private final String baseUrl;
+
+    private final int index;
+
+    private final int clients;
+
+    private final long startNanos;
+
+    private final long intervalNanos;
+
+    private final long endNanos;
+
+    private final Operation[] mix;
+
+    private final List<Long> stockIds;
+
+    private final AtomicLong stockNames;
+
+    private final Map<Operation, LatencyStats> stats = new EnumMap<>(Operation.class);
+
+    private final byte[] drainBuffer = new byte[8192];
+
+    /**
+     * @param baseUrl       - url of the application.
+     * @param index         - index of the client, it sends requests number {@code index}, {@code index + clients} and so on.
+     * @param clients       - number of clients.
+     * @param startNanos    - moment the first request of the schedule is due.
+     * @param intervalNanos - interval between requests of the schedule.
+     * @param endNanos      - moment after which no requests are due.
+     * @param mix           - operations to pick from at random, an operation occurs in proportion to its weight.
+     * @param stockIds      - ids of existing stocks, created stocks are added to it.
+     * @param stockNames    - counter of names of created stocks.
+     */
+    LoadClient(@NonNull String baseUrl, int index, int clients, long startNanos, long intervalNanos, long endNanos,
+               @NonNull Operation[] mix, @NonNull List<Long> stockIds, @NonNull AtomicLong stockNames) {
+        this.baseUrl = baseUrl;
+        this.index = index;
+        this.clients = clients;
+        this.startNanos = startNanos;
+        this.intervalNanos = intervalNanos;
+        this.endNanos = endNanos;
+        this.mix = mix;
+        this.stockIds = stockIds;
+        this.stockNames = stockNames;
+        for (Operation operation : Operation.values()) {
+            stats.put(operation, new LatencyStats());
+        }
+    }
+
+    @Override
+    public void run() {
+        Random random = ThreadLocalRandom.current();
+        for (long request = index; ; request += clients) {
+            long dueNanos = startNanos + request * intervalNanos;
+            if (dueNanos >= endNanos) {
+                return;
+            }
+            // a client which is behind the schedule sends right away, the delay is accounted by the due time
+            for (long now = System.nanoTime(); now < dueNanos; now = System.nanoTime()) {
+                LockSupport.parkNanos(dueNanos - now);
+            }
+            Operation operation = mix[random.nextInt(mix.length)];
+            long sentNanos = System.nanoTime();
+            if (send(operation, random)) {
+                stats.get(operation).record(dueNanos, sentNanos, System.nanoTime());
+            } else {
+                stats.get(operation).recordError();
+            }
+        }
+    }
+
+    @NonNull
+    Map<Operation, LatencyStats> getStats() {
+        return stats;
+    }
+
+    /**
+     * Creates a stock, it is used to prepare stocks before the load starts.
+     *
+     * @return {@code true} when the stock was created.
+     */
+    boolean createStock() {
+        return send(Operation.POST, ThreadLocalRandom.current());
+    }
+
+    /**
+     * @return {@code true} when the request succeeded.
+     */
+    private boolean send(Operation operation, Random random) {
+        try {
+            switch (operation) {
+                case GET:
+                    return request("GET", "/api/stocks/" + randomStockId(random), null) != null;
+                case PUT:
+                    return request("PUT", "/api/stocks/" + randomStockId(random), "{\"price\":" + randomPrice(random) + "}") != null;
+                case POST:
+                    String location = request("POST", "/api/stocks",
+                            "{\"name\":\"Load" + stockNames.incrementAndGet() + "\",\"price\":" + randomPrice(random) + "}");
+                    if (location == null) {
+                        return false;
+                    }
+                    stockIds.add(Long.parseLong(location.substring(location.lastIndexOf('/') + 1)));
+                    return true;
+                default:
+                    throw new IllegalArgumentException("Unsupported operation: " + operation);
+            }
+        } catch (IOException | RuntimeException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Sends request and reads the whole response, so the connection can be reused.
+     *
+     * @return location header or empty string when the response is successful, otherwise {@code null}.
+     */
+    private String request(String method, String path, String body) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(baseUrl + path).openConnection();
+        connection.setRequestMethod(method);
+        connection.setConnectTimeout(TIMEOUT_MILLIS);
+        connection.setReadTimeout(TIMEOUT_MILLIS);
+        connection.setRequestProperty("Accept", "application/json");
+        if (body != null) {
+            connection.setDoOutput(true);
+            connection.setRequestProperty("Content-Type", "application/json");
+            try (OutputStream output = connection.getOutputStream()) {
+                output.write(body.getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        int status = connection.getResponseCode();
+        boolean successful = status >= 200 && status < 300;
+        try (InputStream input = successful ? connection.getInputStream() : connection.getErrorStream()) {
+            if (input != null) {
+                while (input.read(drainBuffer) >= 0) {
+                    // response body isn't needed
+                }
+            }
+        }
+        if (!successful) {
+            return null;
+        }
+        String location = connection.getHeaderField("Location");
+        return location == null ? "" : location;
+    }
+
+    private long randomStockId(Random random) {
+        synchronized (stockIds) {
+            return stockIds.get(random.nextInt(stockIds.size()));
+        }
+    }
+
+    private static String randomPrice(Random random) {
+        return String.format(Locale.ROOT, "%.2f", 1 + random.nextInt(10_000) / 100d);
+    }
+}
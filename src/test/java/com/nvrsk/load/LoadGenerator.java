@@ -0,0 +1,157 @@
+package com.nvrsk.load;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.nvrsk.Application;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * End-to-end load generator: starts the application on a random port with an in-memory database
+ * and sends a mix of {@code GET /api/stocks/{id}}, {@code PUT /api/stocks/{id}} and {@code POST /api/stocks} requests
+ * at a fixed total rate from concurrent clients, see {@link LoadClient}.
+ * <p>
+ * Latency percentiles are corrected for coordinated omission, see {@link LatencyStats}.
+ * The report with throughput, errors and latencies of every operation and of all of them together
+ * is printed and written as JSON. Run with {@code mvn -Pload-test test-compile exec:java}.
+ * <p>
+ * System properties: {@code load.rate} of requests per second (default 500), {@code load.duration-s} (default 30),
+ * {@code load.warm-up-s} (default 10), {@code load.clients} (default 32), {@code load.mix} of operation weights
+ * (default {@code get=80,put=15,post=5}), {@code load.stocks} created before the load (default 100),
+ * {@code load.report} file (default {@code target/load-report.json}).
+ */
+public final class LoadGenerator {
+
+    private static final String ALL_OPERATIONS = "ALL";
+
+    private LoadGenerator() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        int rate = Integer.getInteger("load.rate", 500);
+        long durationSeconds = Long.getLong("load.duration-s", 30L);
+        long warmUpSeconds = Long.getLong("load.warm-up-s", 10L);
+        int clients = Integer.getInteger("load.clients", 32);
+        Map<LoadClient.Operation, Integer> weights = parseMix(System.getProperty("load.mix", "get=80,put=15,post=5"));
+        int stocks = Integer.getInteger("load.stocks", 100);
+        File reportFile = new File(System.getProperty("load.report", "target/load-report.json"));
+
+        SpringApplicationBuilder builder = new SpringApplicationBuilder(Application.class)
+                .properties(
+                        "server.port=0",
+                        "spring.datasource.url=jdbc:h2:mem:load-test",
+                        "logging.level.root=WARN");
+        try (ConfigurableApplicationContext context = builder.run()) {
+            String baseUrl = "http://localhost:" + context.getEnvironment().getRequiredProperty("local.server.port");
+            List<Long> stockIds = Collections.synchronizedList(new ArrayList<>(Collections.singletonList(1L)));
+            AtomicLong stockNames = new AtomicLong();
+            LoadClient preparer = new LoadClient(baseUrl, 0, 1, 0, 0, 0, new LoadClient.Operation[0], stockIds, stockNames);
+            for (int i = 0; i < stocks; i++) {
+                if (!preparer.createStock()) {
+                    throw new IllegalStateException("Failed to create stocks before the load");
+                }
+            }
+
+            run(baseUrl, rate, warmUpSeconds, clients, weights, stockIds, stockNames);
+            Map<String, LatencyStats> stats = run(baseUrl, rate, durationSeconds, clients, weights, stockIds, stockNames);
+
+            Map<String, Object> report = new LinkedHashMap<>();
+            report.put("rate", rate);
+            report.put("durationSeconds", durationSeconds);
+            report.put("clients", clients);
+            report.put("mix", weights);
+            Map<String, Object> operations = new LinkedHashMap<>();
+            stats.forEach((operation, operationStats) ->
+                    operations.put(operation, operationStats.toReport(TimeUnit.SECONDS.toNanos(durationSeconds))));
+            report.put("operations", operations);
+
+            File reportDirectory = reportFile.getAbsoluteFile().getParentFile();
+            if (!reportDirectory.isDirectory() && !reportDirectory.mkdirs()) {
+                throw new IllegalStateException("Failed to create directory " + reportDirectory);
+            }
+            new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT).writeValue(reportFile, report);
+
+            stats.forEach((operation, operationStats) -> System.out.println(String.format(Locale.ROOT,
+                    "%-4s requests=%d errors=%d p50=%.2fms p99=%.2fms p99.9=%.2fms",
+                    operation, operationStats.getRequests(), operationStats.getErrors(),
+                    operationStats.getLatencyMillis(50), operationStats.getLatencyMillis(99),
+                    operationStats.getLatencyMillis(99.9))));
+            System.out.println("Report: " + reportFile.getAbsolutePath());
+        }
+    }
+
+    /**
+     * Sends requests at the rate for the duration and waits for the responses.
+     *
+     * @return stats of every operation in the mix and of all of them together.
+     */
+    private static Map<String, LatencyStats> run(String baseUrl, int rate, long durationSeconds, int clients,
+                                                 Map<LoadClient.Operation, Integer> weights,
+                                                 List<Long> stockIds, AtomicLong stockNames) throws InterruptedException {
+        List<LoadClient.Operation> mix = new ArrayList<>();
+        weights.forEach((operation, weight) -> mix.addAll(Collections.nCopies(weight, operation)));
+        long intervalNanos = TimeUnit.SECONDS.toNanos(1) / rate;
+        long startNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(100);
+        long endNanos = startNanos + TimeUnit.SECONDS.toNanos(durationSeconds);
+
+        List<LoadClient> loadClients = new ArrayList<>(clients);
+        List<Thread> threads = new ArrayList<>(clients);
+        for (int i = 0; i < clients; i++) {
+            LoadClient client = new LoadClient(baseUrl, i, clients, startNanos, intervalNanos, endNanos,
+                    mix.toArray(new LoadClient.Operation[0]), stockIds, stockNames);
+            Thread thread = new Thread(client, "load-client-" + i);
+            thread.start();
+            loadClients.add(client);
+            threads.add(thread);
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        Map<String, LatencyStats> stats = new LinkedHashMap<>();
+        LatencyStats all = new LatencyStats();
+        for (LoadClient.Operation operation : weights.keySet()) {
+            LatencyStats operationStats = new LatencyStats();
+            for (LoadClient client : loadClients) {
+                operationStats.add(client.getStats().get(operation));
+            }
+            all.add(operationStats);
+            stats.put(operation.name(), operationStats);
+        }
+        stats.put(ALL_OPERATIONS, all);
+        return stats;
+    }
+
+    /**
+     * @param mix - comma separated {@code operation=weight} pairs, e.g. {@code get=80,put=20}.
+     * @return positive weights by operations.
+     */
+    private static Map<LoadClient.Operation, Integer> parseMix(String mix) {
+        Map<LoadClient.Operation, Integer> weights = new EnumMap<>(LoadClient.Operation.class);
+        for (String entry : mix.split(",")) {
+            String[] operationWeight = entry.split("=");
+            if (operationWeight.length != 2) {
+                throw new IllegalArgumentException("Incorrect load mix entry: " + entry);
+            }
+            int weight = Integer.parseInt(operationWeight[1].trim());
+            if (weight > 0) {
+                weights.put(LoadClient.Operation.valueOf(operationWeight[0].trim().toUpperCase(Locale.ROOT)), weight);
+            }
+        }
+        if (weights.isEmpty()) {
+            throw new IllegalArgumentException("Load mix has no operations: " + mix);
+        }
+        return weights;
+    }
+}
@@ -0,0 +1,73 @@
+package com.nvrsk.load;
+
+import com.nvrsk.Application;
+import com.nvrsk.config.VirtualThreadsConfiguration;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compares request handling on the default pool of platform threads with the {@code virtual-threads} profile
+ * at 1k and 10k concurrent connections.
+ * <p>
+ * Both modes run with the same connection limits, so they differ only in the threads requests are handled on.
+ * The application and the client share the machine, so the numbers are comparable only with each other.
+ * Run with {@code mvn -Pthread-mode-benchmark test-compile exec:java} on Java 21 or later
+ * (on older runtimes only the platform mode is measured). Client and server share the process,
+ * so 10k connections need an open files limit above 20k.
+ * <p>
+ * System properties: {@code benchmark.path} (default {@code /api/stocks/1/history}),
+ * {@code benchmark.connections} (default {@code 1000,10000}), {@code benchmark.requests} per connection (default 20),
+ * {@code benchmark.timeout-ms} (default 60000).
+ */
+public final class ThreadModeBenchmark {
+
+    private static final int WARM_UP_CONNECTIONS = 100;
+
+    private static final int WARM_UP_REQUESTS = 100;
+
+    private ThreadModeBenchmark() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        String path = System.getProperty("benchmark.path", "/api/stocks/1/history");
+        int requests = Integer.getInteger("benchmark.requests", 20);
+        long timeoutMillis = Long.getLong("benchmark.timeout-ms", 60_000L);
+        List<Integer> connectionCounts = new ArrayList<>();
+        for (String connections : System.getProperty("benchmark.connections", "1000,10000").split(",")) {
+            connectionCounts.add(Integer.parseInt(connections.trim()));
+        }
+
+        List<String> modes = new ArrayList<>();
+        modes.add("platform");
+        if (VirtualThreadsConfiguration.isSupported()) {
+            modes.add(VirtualThreadsConfiguration.PROFILE);
+        } else {
+            System.out.println("Virtual threads require Java 21 or later, only platform threads are measured");
+        }
+
+        for (String mode : modes) {
+            SpringApplicationBuilder builder = new SpringApplicationBuilder(Application.class)
+                    .properties(
+                            "server.port=0",
+                            "server.tomcat.max-connections=20000",
+                            "server.tomcat.accept-count=10000",
+                            "spring.datasource.url=jdbc:h2:mem:benchmark-" + mode,
+                            "logging.level.root=WARN");
+            if (mode.equals(VirtualThreadsConfiguration.PROFILE)) {
+                builder.profiles(mode);
+            }
+            try (ConfigurableApplicationContext context = builder.run()) {
+                int port = context.getEnvironment().getRequiredProperty("local.server.port", Integer.class);
+                HttpLoadClient client = new HttpLoadClient(new InetSocketAddress("localhost", port));
+                client.run(WARM_UP_CONNECTIONS, WARM_UP_REQUESTS, path, timeoutMillis);
+                for (int connections : connectionCounts) {
+                    System.out.println(mode + ": " + client.run(connections, requests, path, timeoutMillis));
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.nvrsk.metrics;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@ExtendWith(SpringExtension.class)
+@SpringBootTest
+@AutoConfigureMockMvc
+@DirtiesContext
+class MetricsTests {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Test
+    void testPrometheusEndpoint() throws Exception {
+        mockMvc.perform(get("/api/stocks/1"))
+                .andExpect(status().isOk());
+        mockMvc.perform(put("/api/stocks/1")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"price\":3.0}"))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(get("/actuator/prometheus"))
+                .andExpect(status().isOk())
+                .andExpect(content().string(containsString("http_server_requests_seconds_bucket{")))
+                .andExpect(content().string(containsString("uri=\"/api/stocks/{id}\"")))
+                .andExpect(content().string(containsString(
+                        "stocks_service_seconds_count{class=\"StockService\",method=\"updateStockPrice\",} 1.0")))
+                .andExpect(content().string(containsString(
+                        "stocks_service_seconds_count{class=\"PriceHistoryService\",method=\"updateStockPrice\",} 1.0")))
+                .andExpect(content().string(containsString("stocks_http_queries_count{method=\"PUT\",uri=\"/api/stocks/{id}\",} 1.0")))
+                .andExpect(content().string(containsString("hibernate_statements_total")))
+                .andExpect(content().string(containsString("hibernate_flushes_total")))
+                .andExpect(content().string(containsString("stocks_cache_size{cache=\"snapshot\",}")))
+                .andExpect(content().string(containsString("stocks_history_rows ")));
+    }
+
+    @Test
+    void testHistoryTopGauge() throws Exception {
+        // the first scrape recounts the history, the per-stock gauges are exported since the next one
+        mockMvc.perform(get("/actuator/prometheus"))
+                .andExpect(status().isOk());
+        mockMvc.perform(get("/actuator/prometheus"))
+                .andExpect(status().isOk())
+                .andExpect(content().string(containsString("stocks_history_rows_top{stock=\"1\",}")));
+    }
+}
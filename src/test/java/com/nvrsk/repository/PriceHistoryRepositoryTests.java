@@ -0,0 +1,138 @@
+package com.nvrsk.repository;
+
+import com.nvrsk.Application;
+import com.nvrsk.metrics.QueryCountInspector;
+import com.nvrsk.model.PriceHistory;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Checks plans of the history queries on a stock with a long history: a page must be read from the index
+ * without scanning and sorting the rest of the history.
+ */
+class PriceHistoryRepositoryTests {
+
+    private static final int HISTORY_SIZE = 10_000;
+
+    private static final int PAGE_SIZE = 100;
+
+    private static final Instant START = Instant.parse("2021-01-01T00:00:00Z");
+
+    private static final Pattern SCAN_COUNT = Pattern.compile("scanCount: (\\d+)");
+
+    private static ConfigurableApplicationContext context;
+
+    private static PriceHistoryRepository priceHistoryRepository;
+
+    private static JdbcTemplate jdbcTemplate;
+
+    /**
+     * Remembers the latest statement prepared by Hibernate, so its plan can be explained.
+     */
+    public static class RecordingInspector extends QueryCountInspector {
+
+        private static volatile String lastSql;
+
+        @Override
+        public String inspect(String sql) {
+            lastSql = sql;
+            return super.inspect(sql);
+        }
+    }
+
+    @BeforeAll
+    static void start() {
+        context = new SpringApplicationBuilder(Application.class)
+                .properties(
+                        "server.port=0",
+                        "spring.datasource.url=jdbc:h2:mem:history-plans")
+                // default properties don't override application.properties
+                .run("--spring.jpa.properties.hibernate.session_factory.statement_inspector="
+                        + RecordingInspector.class.getName());
+        priceHistoryRepository = context.getBean(PriceHistoryRepository.class);
+        jdbcTemplate = context.getBean(JdbcTemplate.class);
+        List<Object[]> rows = new ArrayList<>(HISTORY_SIZE);
+        for (int i = 0; i < HISTORY_SIZE; i++) {
+            rows.add(new Object[]{1_000_000L + i, 1L, 1 + i / 100d, Timestamp.from(START.plusSeconds(i))});
+        }
+        jdbcTemplate.batchUpdate("insert into price_history (id, stock_id, price, start_date) values (?, ?, ?, ?)", rows);
+    }
+
+    @AfterAll
+    static void stop() {
+        context.close();
+    }
+
+    /**
+     * Runs the query and explains the statement Hibernate prepared for it with the same parameters.
+     */
+    private static String explain(Supplier<List<PriceHistory>> query, Object... parameters) {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+        List<PriceHistory> page = transactionTemplate.execute(status -> query.get());
+        assertThat(page).hasSize(PAGE_SIZE);
+        return explainLastStatement(parameters);
+    }
+
+    private static String explainLastStatement(Object... parameters) {
+        return String.join("\n", jdbcTemplate.queryForList("explain analyze " + RecordingInspector.lastSql, String.class, parameters));
+    }
+
+    private static void assertReadsFromIndex(String plan, int maxRows) {
+        assertThat(plan).contains("IDX_PRICE_HISTORY_STOCK_START").contains("index sorted");
+        Matcher scanCount = SCAN_COUNT.matcher(plan);
+        assertThat(scanCount.find()).as(plan).isTrue();
+        assertThat(Integer.parseInt(scanCount.group(1))).as(plan).isLessThanOrEqualTo(maxRows);
+    }
+
+    private static void assertReadsOnlyPage(String plan) {
+        assertReadsFromIndex(plan, PAGE_SIZE + 1);
+    }
+
+    @Test
+    void testLatestPageIsReadFromIndex() {
+        assertReadsOnlyPage(explain(() -> priceHistoryRepository.findLatest(1, PageRequest.of(0, PAGE_SIZE)),
+                1L, Timestamp.from(PriceHistoryRepository.MAX_START_DATE), PAGE_SIZE));
+    }
+
+    @Test
+    void testDeepPageIsSoughtInIndex() {
+        Timestamp position = Timestamp.from(START.plusSeconds(HISTORY_SIZE / 2));
+        assertReadsOnlyPage(explain(() -> priceHistoryRepository.findOlderThan(1, position.toInstant(), 1_005_000L,
+                PageRequest.of(0, PAGE_SIZE)),
+                1L, position, position, position, 1_005_000L, PAGE_SIZE));
+    }
+
+    @Test
+    void testDeepPageWithLowerBoundIsSoughtInIndex() {
+        Timestamp position = Timestamp.from(START.plusSeconds(HISTORY_SIZE / 2));
+        Timestamp from = Timestamp.from(START.plusSeconds(HISTORY_SIZE / 4));
+        assertReadsOnlyPage(explain(() -> priceHistoryRepository.findOlderThanFrom(1, position.toInstant(), 1_005_000L,
+                from.toInstant(), PageRequest.of(0, PAGE_SIZE)),
+                1L, position, from, position, position, 1_005_000L, PAGE_SIZE));
+    }
+
+    @Test
+    void testPriceAtIsSoughtInIndex() {
+        Instant at = START.plusSeconds(HISTORY_SIZE / 2);
+        assertThat(priceHistoryRepository.findAt(1, at)).get()
+                .extracting(PriceHistory::getId).isEqualTo(1_005_000L);
+        assertReadsFromIndex(explainLastStatement(1L, Timestamp.from(at), 1), 2);
+    }
+}
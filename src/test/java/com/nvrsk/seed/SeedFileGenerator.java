@@ -0,0 +1,46 @@
+package com.nvrsk.seed;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Writes {@code stocks.csv} and {@code history.csv} seed files with random prices for {@link StockSeeder}.
+ * <p>
+ * Options are system properties: {@code seed.dir} (default {@code target/seed}), {@code seed.stocks} (default 100000)
+ * and {@code seed.ticks-per-stock} (default 100).
+ */
+public class SeedFileGenerator {
+
+    private static final Instant START = Instant.parse("2020-05-01T00:00:00Z");
+
+    public static void main(String[] args) throws IOException {
+        Path directory = Paths.get(System.getProperty("seed.dir", "target/seed"));
+        int stocks = Integer.getInteger("seed.stocks", 100_000);
+        int ticksPerStock = Integer.getInteger("seed.ticks-per-stock", 100);
+        Files.createDirectories(directory);
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        try (BufferedWriter stocksWriter = Files.newBufferedWriter(directory.resolve("stocks.csv"), StandardCharsets.UTF_8);
+             BufferedWriter historyWriter = Files.newBufferedWriter(directory.resolve("history.csv"), StandardCharsets.UTF_8)) {
+            stocksWriter.write("id,name,currentPrice,lastUpdate\n");
+            historyWriter.write("stockId,price,startDate\n");
+            for (int id = 1; id <= stocks; id++) {
+                double price = 1 + random.nextInt(10_000) / 100d;
+                Instant startDate = START;
+                for (int i = 0; i < ticksPerStock; i++) {
+                    price = Math.max(0.01, Math.round(price * (1 + random.nextGaussian() / 100) * 100) / 100d);
+                    startDate = startDate.plusSeconds(1 + random.nextInt(60));
+                    historyWriter.write(id + "," + price + "," + startDate + "\n");
+                }
+                stocksWriter.write(id + ",Seed" + id + ".L," + price + "," + startDate + "\n");
+            }
+        }
+        System.out.printf("Wrote %d stocks and %d price ticks to %s%n", stocks, (long) stocks * ticksPerStock,
+                directory.toAbsolutePath());
+    }
+}
@@ -0,0 +1,162 @@
+package com.nvrsk.seed;
+
+import com.nvrsk.Application;
+import com.nvrsk.exception.SeedingInProgressException;
+import com.nvrsk.model.Candle;
+import com.nvrsk.model.PriceHistory;
+import com.nvrsk.model.StockInfo;
+import com.nvrsk.request.NewStockRequest;
+import com.nvrsk.service.StockService;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class StockSeederTests {
+
+    @TempDir
+    Path directory;
+
+    private ConfigurableApplicationContext start(String database, String... properties) throws IOException {
+        Path stocksFile = write("stocks.csv",
+                "id,name,currentPrice,lastUpdate",
+                "1,Seed1.L,1.5,2020-05-01T10:00:00Z",
+                "2,Seed2.N,2.5,2020-05-01T11:00:00Z",
+                "7,Seed7.L,7.5,2020-05-01T12:00:00Z");
+        Path historyFile = write("history.csv",
+                "stockId,price,startDate",
+                "1,1.4,2020-05-01T09:00:00Z",
+                "1,1.5,2020-05-01T10:00:00Z",
+                "2,2.5,2020-05-01T11:00:00Z",
+                "7,7.5,2020-05-01T12:00:00Z");
+        return new SpringApplicationBuilder(Application.class)
+                .properties(
+                        "server.port=0",
+                        "spring.datasource.url=jdbc:h2:mem:" + database,
+                        "stocks.seed.stocks-file=" + stocksFile,
+                        "stocks.seed.history-file=" + historyFile,
+                        "stocks.seed.threads=2",
+                        "stocks.seed.batch-size=2")
+                .properties(properties)
+                .run();
+    }
+
+    private Path write(String fileName, String... lines) throws IOException {
+        return Files.write(directory.resolve(fileName), Arrays.asList(lines), StandardCharsets.UTF_8);
+    }
+
+    private static void assertSeeded(StockService stockService) {
+        assertThat(stockService.getAllStocks()).extracting(StockInfo::getName)
+                .containsExactly("Seed1.L", "Seed2.N", "Seed7.L");
+        assertThat(stockService.lookupStock(7).getCurrentPrice()).isEqualTo(7.5);
+        assertThat(stockService.getHistory(1, null, null, null, null).getItems())
+                .extracting(PriceHistory::getPrice)
+                .containsExactly(1.5, 1.4);
+    }
+
+    @Test
+    void testSeedsBeforeStartup() throws IOException {
+        try (ConfigurableApplicationContext context = start("seed1")) {
+            StockSeeder stockSeeder = context.getBean(StockSeeder.class);
+            assertThat(stockSeeder.getState()).isEqualTo(StockSeeder.State.LOADED);
+            assertThat(stockSeeder.getStockCount()).isEqualTo(3);
+            assertThat(stockSeeder.getTickCount()).isEqualTo(4);
+
+            StockService stockService = context.getBean(StockService.class);
+            assertSeeded(stockService);
+
+            NewStockRequest newStockRequest = new NewStockRequest();
+            newStockRequest.setName("Stock8.H");
+            newStockRequest.setPrice(0.8);
+            assertThat(stockService.addNewStock(newStockRequest).getId()).isGreaterThan(7);
+            stockService.updateStockPrice(1, 1.6);
+            assertThat(stockService.getHistory(1, null, null, null, null).getItems())
+                    .extracting(PriceHistory::getPrice)
+                    .containsExactly(1.6, 1.5, 1.4);
+        }
+    }
+
+    @Test
+    void testSeedsAfterStartupWithLazyBeans() throws Exception {
+        try (ConfigurableApplicationContext context = start("seed2", "spring.profiles.active=fast-startup")) {
+            StockSeeder stockSeeder = context.getBean(StockSeeder.class);
+            for (int i = 0; i < 100 && stockSeeder.getState() != StockSeeder.State.LOADED; i++) {
+                Thread.sleep(100);
+            }
+            assertThat(stockSeeder.getState()).isEqualTo(StockSeeder.State.LOADED);
+            assertSeeded(context.getBean(StockService.class));
+        }
+    }
+
+    @Test
+    void testDoesNotBackfillCandlesAndStatsWhileSeeding() throws Exception {
+        int ticks = 20_000;
+        Instant start = Instant.now().minus(1, ChronoUnit.HOURS);
+        String[] lines = new String[ticks + 1];
+        lines[0] = "stockId,price,startDate";
+        for (int i = 1; i <= ticks; i++) {
+            lines[i] = "1," + i + "," + start.plusMillis(i);
+        }
+        Path historyFile = write("big-history.csv", lines);
+        try (ConfigurableApplicationContext context = start("seed6", "spring.profiles.active=fast-startup",
+                "stocks.seed.history-file=" + historyFile, "stocks.seed.batch-size=1")) {
+            StockSeeder stockSeeder = context.getBean(StockSeeder.class);
+            StockService stockService = context.getBean(StockService.class);
+            // stocks are loaded before the history
+            for (int i = 0; i < 100 && stockSeeder.getStockCount() < 3; i++) {
+                Thread.sleep(10);
+            }
+            assertThat(stockSeeder.isInProgress()).isTrue();
+            assertThatThrownBy(() -> stockService.getCandles(1, "1h", null, null))
+                    .isInstanceOf(SeedingInProgressException.class);
+            assertThatThrownBy(() -> stockService.getStats(1, "1d"))
+                    .isInstanceOf(SeedingInProgressException.class);
+
+            for (int i = 0; i < 600 && stockSeeder.getState() != StockSeeder.State.LOADED; i++) {
+                Thread.sleep(100);
+            }
+            assertThat(stockSeeder.getState()).isEqualTo(StockSeeder.State.LOADED);
+            assertThat(stockService.getStats(1, "1d").getTicks()).isEqualTo(ticks);
+            assertThat(stockService.getCandles(1, "1h", null, null).stream().mapToLong(Candle::getTicks).sum())
+                    .isEqualTo(ticks);
+        }
+    }
+
+    @Test
+    void testRestoresAsyncSeededDataFromJournal() throws Exception {
+        String journal = "stocks.journal.dir=" + directory.resolve("journal");
+        try (ConfigurableApplicationContext context = start("seed4", "spring.profiles.active=fast-startup",
+                "stocks.journal.enabled=true", journal, "stocks.journal.snapshot.on-shutdown=false")) {
+            StockSeeder stockSeeder = context.getBean(StockSeeder.class);
+            for (int i = 0; i < 100 && stockSeeder.getState() != StockSeeder.State.LOADED; i++) {
+                Thread.sleep(100);
+            }
+            assertThat(stockSeeder.getState()).isEqualTo(StockSeeder.State.LOADED);
+        }
+
+        try (ConfigurableApplicationContext context = start("seed5", "spring.profiles.active=fast-startup",
+                "stocks.journal.enabled=true", journal)) {
+            assertThat(context.getBean(StockSeeder.class).getState()).isEqualTo(StockSeeder.State.SKIPPED);
+            assertSeeded(context.getBean(StockService.class));
+        }
+    }
+
+    @Test
+    void testFailsStartupOnMalformedFile() throws IOException {
+        write("broken.csv", "id,name,currentPrice,lastUpdate", "1,Seed1.L,1.5");
+        assertThatThrownBy(() -> start("seed3", "stocks.seed.stocks-file=" + directory.resolve("broken.csv")).close())
+                .hasStackTraceContaining("Line 2 of")
+                .hasStackTraceContaining("has 3 values instead of 4");
+    }
+}
@@ -0,0 +1,135 @@
+package com.nvrsk.service;
+
+import com.nvrsk.model.PriceHistory;
+import com.nvrsk.model.Stock;
+import com.nvrsk.repository.PriceHistoryRepository;
+import com.nvrsk.repository.StockRepository;
+import com.nvrsk.request.StockPriceUpdateRequest;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.test.util.AopTestUtils;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@ExtendWith(SpringExtension.class)
+@SpringBootTest
+@DirtiesContext(classMode = DirtiesContext.ClassMode.BEFORE_EACH_TEST_METHOD)
+class StockServiceConcurrencyTests {
+
+    private static final int THREADS = 16;
+
+    private static final int UPDATES_PER_THREAD = 50;
+
+    @Autowired
+    private StockService stockService;
+
+    @Autowired
+    private StockRepository stockRepository;
+
+    @Autowired
+    private PriceHistoryRepository priceHistoryRepository;
+
+    @Autowired
+    private StockLocks stockLocks;
+
+    private static StockPriceUpdateRequest priceUpdate(long id, double price) {
+        StockPriceUpdateRequest priceUpdateRequest = new StockPriceUpdateRequest();
+        priceUpdateRequest.setId(id);
+        priceUpdateRequest.setPrice(price);
+        return priceUpdateRequest;
+    }
+
+    @Test
+    void testDoesNotLoseConcurrentUpdatesOfSameStock() throws Exception {
+        long initialVersion = stockRepository.findById(2L).get().getVersion();
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int thread = 0; thread < THREADS; thread++) {
+            int threadNumber = thread;
+            futures.add(executor.submit(() -> {
+                start.await();
+                for (int update = 1; update <= UPDATES_PER_THREAD; update++) {
+                    if (update % 10 == 0) {
+                        StockPriceUpdateRequest first = new StockPriceUpdateRequest();
+                        first.setId(1L);
+                        first.setPrice(threadNumber + update / 1000d);
+                        StockPriceUpdateRequest second = new StockPriceUpdateRequest();
+                        second.setId(2L);
+                        second.setPrice(threadNumber + update / 1000d);
+                        stockService.updateStockPrices(Arrays.asList(second, first));
+                    } else {
+                        stockService.updateStockPrice(2, threadNumber + update / 1000d);
+                    }
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+
+        int updates = THREADS * UPDATES_PER_THREAD;
+        Stock stock = stockRepository.findById(2L).get();
+        assertThat(stock.getVersion()).isEqualTo(initialVersion + updates);
+
+        List<PriceHistory> history = priceHistoryRepository.findLatest(2, PageRequest.of(0, updates + 1));
+        assertThat(history).hasSize(updates + 1);
+        assertThat(history.get(0).getPrice()).isEqualTo(stock.getCurrentPrice());
+        assertThat(history.get(0).getStartDate()).isEqualTo(stock.getLastUpdate());
+        for (int i = 1; i < history.size(); i++) {
+            assertThat(history.get(i).getStartDate()).isBeforeOrEqualTo(history.get(i - 1).getStartDate());
+            assertThat(history.get(i).getId()).isLessThan(history.get(i - 1).getId());
+        }
+    }
+
+    @Test
+    void testLocksBigBatchChunkByChunk() throws Exception {
+        ReflectionTestUtils.setField(AopTestUtils.getTargetObject(stockService), "batchChunkSize", 1);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        CountDownLatch locked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Future<?> holder = executor.submit(() -> stockLocks.withLock(1L, () -> {
+            locked.countDown();
+            try {
+                return release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+        }));
+        locked.await();
+
+        Future<Integer> batch = executor.submit(
+                () -> stockService.updateStockPrices(Arrays.asList(priceUpdate(2, 3.3), priceUpdate(1, 3.4))));
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (stockRepository.findById(2L).get().getCurrentPrice() != 3.3 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        // the first chunk is committed while the second one waits for the lock of its stock
+        assertThat(stockRepository.findById(2L).get().getCurrentPrice()).isEqualTo(3.3);
+        assertThat(batch.isDone()).isFalse();
+
+        release.countDown();
+        holder.get();
+        assertThat(batch.get()).isEqualTo(2);
+        assertThat(stockRepository.findById(1L).get().getCurrentPrice()).isEqualTo(3.4);
+        executor.shutdown();
+    }
+}
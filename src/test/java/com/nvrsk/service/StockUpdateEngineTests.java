@@ -0,0 +1,158 @@
+package com.nvrsk.service;
+
+import com.nvrsk.exception.StockNotFoundException;
+import com.nvrsk.model.PriceHistory;
+import com.nvrsk.model.Stock;
+import com.nvrsk.repository.PriceHistoryRepository;
+import com.nvrsk.repository.StockRepository;
+import com.nvrsk.request.NewStockRequest;
+import com.nvrsk.request.StockPriceUpdateRequest;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@ExtendWith(SpringExtension.class)
+@SpringBootTest(properties = {"stocks.engine.enabled=true", "stocks.engine.partitions=4"})
+@DirtiesContext(classMode = DirtiesContext.ClassMode.BEFORE_EACH_TEST_METHOD)
+class StockUpdateEngineTests {
+
+    @Autowired
+    private StockService stockService;
+
+    @Autowired
+    private StockRepository stockRepository;
+
+    @Autowired
+    private PriceHistoryRepository priceHistoryRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private StockUpdateEngine stockUpdateEngine;
+
+    @Test
+    void testAppliesQueuedUpdatesOfEveryStockInOrder() {
+        int updatesPerStock = 200;
+        long initialVersion = stockRepository.findById(2L).get().getVersion();
+        List<CompletableFuture<Stock>> updates = new ArrayList<>();
+        for (int update = 1; update <= updatesPerStock; update++) {
+            updates.add(stockUpdateEngine.updateStockPrice(1, update));
+            updates.add(stockUpdateEngine.updateStockPrice(2, 1000 + update));
+        }
+        for (int i = 0; i < updates.size(); i++) {
+            assertThat(updates.get(i).join().getCurrentPrice()).isEqualTo((i % 2) * 1000 + i / 2 + 1);
+        }
+
+        for (long stockId : new long[]{1, 2}) {
+            Stock stock = stockRepository.findById(stockId).get();
+            List<PriceHistory> history = priceHistoryRepository.findLatest(stockId, PageRequest.of(0, updatesPerStock));
+            assertThat(history.get(0).getPrice()).isEqualTo(stock.getCurrentPrice());
+            assertThat(history.get(0).getStartDate()).isEqualTo(stock.getLastUpdate());
+            for (int i = 1; i < history.size(); i++) {
+                assertThat(history.get(i).getPrice()).isEqualTo(history.get(i - 1).getPrice() - 1);
+                assertThat(history.get(i).getStartDate()).isBefore(history.get(i - 1).getStartDate());
+            }
+        }
+        // queued updates of a stock are persisted as a single row update
+        assertThat(stockRepository.findById(2L).get().getVersion()).isLessThan(initialVersion + updatesPerStock);
+    }
+
+    @Test
+    void testReloadsStocksOfFailedBatch() {
+        NewStockRequest newStockRequest = new NewStockRequest();
+        newStockRequest.setName("Stock3.H");
+        newStockRequest.setPrice(0.3);
+        long id = stockService.addNewStock(newStockRequest).getId();
+        stockService.updateStockPrice(id, 0.31);
+
+        // the partition keeps the stock, so the next batch fails on the history of a removed stock
+        jdbcTemplate.update("delete from price_history where stock_id = ?", id);
+        jdbcTemplate.update("delete from stock where id = ?", id);
+        assertThatThrownBy(() -> stockService.updateStockPrice(id, 0.32))
+                .isNotInstanceOf(StockNotFoundException.class);
+
+        assertThatThrownBy(() -> stockService.updateStockPrice(id, 0.33))
+                .isInstanceOf(StockNotFoundException.class);
+        assertThat(stockService.updateStockPrice(1, 1.1).getCurrentPrice()).isEqualTo(1.1);
+    }
+
+    @Test
+    void testSeparatesUpdatesWithinMicrosecond() {
+        Instant lastUpdate = Instant.parse("2021-01-01T00:00:00.000001Z");
+        assertThat(StockUpdateEngine.nextUpdateTime(lastUpdate.plusNanos(999), lastUpdate))
+                .isEqualTo("2021-01-01T00:00:00.000002Z");
+        assertThat(StockUpdateEngine.nextUpdateTime(lastUpdate.minusSeconds(1), lastUpdate))
+                .isEqualTo("2021-01-01T00:00:00.000002Z");
+        assertThat(StockUpdateEngine.nextUpdateTime(lastUpdate.plusNanos(2999), lastUpdate))
+                .isEqualTo("2021-01-01T00:00:00.000003Z");
+
+        // start dates of the same microsecond are still distinct once they are read back from the database
+        Instant now = Instant.now();
+        Instant first = StockUpdateEngine.nextUpdateTime(now, Instant.EPOCH);
+        Instant second = StockUpdateEngine.nextUpdateTime(now.plusNanos(1), first);
+        stockService.updateStockPrice(1, 3.1);
+        jdbcTemplate.update("update price_history set start_date = ? where stock_id = 1 and price = 3.1", Timestamp.from(first));
+        stockService.updateStockPrice(1, 3.2);
+        jdbcTemplate.update("update price_history set start_date = ? where stock_id = 1 and price = 3.2", Timestamp.from(second));
+        assertThat(priceHistoryRepository.findLatest(1, PageRequest.of(0, 2)))
+                .extracting(PriceHistory::getStartDate)
+                .containsExactly(second, first);
+    }
+
+    @Test
+    void testAppliesQueuedUpdatesAndRejectsNewOnesOnStop() throws Exception {
+        List<CompletableFuture<Stock>> updates = new ArrayList<>();
+        for (int update = 1; update <= 100; update++) {
+            updates.add(stockUpdateEngine.updateStockPrice(2, update / 10d));
+        }
+        stockUpdateEngine.stop();
+        for (CompletableFuture<Stock> update : updates) {
+            assertThat(update).isCompleted();
+        }
+        assertThat(stockRepository.findById(2L).get().getCurrentPrice()).isEqualTo(10d);
+
+        assertThat(stockUpdateEngine.updateStockPrice(2, 1.5)).isCompletedExceptionally();
+        assertThatThrownBy(() -> stockService.updateStockPrice(2, 1.5))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessage("Update engine is stopped");
+    }
+
+    @Test
+    void testRejectsUnknownStocks() {
+        assertThatThrownBy(() -> stockService.updateStockPrice(100, 1.1))
+                .isInstanceOf(StockNotFoundException.class)
+                .hasMessage("Stock with id 100 not found");
+
+        StockPriceUpdateRequest known = new StockPriceUpdateRequest();
+        known.setId(1L);
+        known.setPrice(3.1);
+        StockPriceUpdateRequest unknown = new StockPriceUpdateRequest();
+        unknown.setId(100L);
+        unknown.setPrice(3.2);
+        assertThatThrownBy(() -> stockService.updateStockPrices(Arrays.asList(known, unknown)))
+                .isInstanceOf(StockNotFoundException.class)
+                .hasMessage("Stock with id 100 not found");
+        assertThat(stockService.lookupStock(1).getCurrentPrice()).isEqualTo(2d);
+
+        unknown.setId(2L);
+        assertThat(stockService.updateStockPrices(Arrays.asList(known, unknown))).isEqualTo(2);
+        assertThat(stockService.lookupStock(1).getCurrentPrice()).isEqualTo(3.1);
+        assertThat(stockService.lookupStock(2).getCurrentPrice()).isEqualTo(3.2);
+    }
+}
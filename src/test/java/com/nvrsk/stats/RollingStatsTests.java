@@ -0,0 +1,136 @@
+package com.nvrsk.stats;
+
+import com.nvrsk.model.PriceStats;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.within;
+
+class RollingStatsTests {
+
+    private static final Instant START = Instant.parse("2020-05-01T21:00:00Z");
+
+    private static RollingStats loaded(int maxTicks) {
+        RollingStats stats = new RollingStats(maxTicks);
+        stats.ensureLoaded(consumer -> {
+        });
+        return stats;
+    }
+
+    @Test
+    void testAggregatesTicks() {
+        RollingStats stats = new RollingStats(100);
+        stats.ensureLoaded(consumer -> {
+            consumer.accept(2d, START);
+            consumer.accept(4d, START.plusSeconds(10));
+        });
+        stats.addLive(3d, START.plusSeconds(5));
+        stats.addLive(6d, START.plusSeconds(20));
+
+        PriceStats minute = stats.get(StatsWindow.ONE_MINUTE, START.plusSeconds(30));
+        assertThat(minute.getWindow()).isEqualTo("1m");
+        assertThat(minute.getTicks()).isEqualTo(3);
+        assertThat(minute.getAverage()).isCloseTo(4d, within(1e-9));
+        assertThat(minute.getMin()).isEqualTo(2d);
+        assertThat(minute.getMax()).isEqualTo(6d);
+        assertThat(minute.getStdDev()).isCloseTo(Math.sqrt(8d / 3), within(1e-9));
+        double first = Math.log(2);
+        double second = Math.log(1.5);
+        double meanReturn = (first + second) / 2;
+        assertThat(minute.getVolatility()).isCloseTo(Math.abs(first - meanReturn), within(1e-9));
+    }
+
+    @Test
+    void testRetriesFailedLoadFromScratch() {
+        RollingStats stats = new RollingStats(100);
+        assertThatThrownBy(() -> stats.ensureLoaded(consumer -> {
+            consumer.accept(2d, START);
+            throw new IllegalStateException("export failed");
+        })).isInstanceOf(IllegalStateException.class);
+        stats.addLive(5d, START.plusSeconds(5));
+
+        stats.ensureLoaded(consumer -> {
+            consumer.accept(2d, START);
+            consumer.accept(4d, START.plusSeconds(10));
+        });
+        stats.addLive(6d, START.plusSeconds(20));
+
+        PriceStats minute = stats.get(StatsWindow.ONE_MINUTE, START.plusSeconds(30));
+        assertThat(minute.getTicks()).isEqualTo(3);
+        assertThat(minute.getAverage()).isCloseTo(4d, within(1e-9));
+        assertThat(minute.getMin()).isEqualTo(2d);
+    }
+
+    @Test
+    void testEvictsExpiredTicks() {
+        RollingStats stats = loaded(100);
+        stats.addLive(5d, START);
+        stats.addLive(1d, START.plusSeconds(30));
+        stats.addLive(3d, START.plusSeconds(70));
+
+        PriceStats minute = stats.get(StatsWindow.ONE_MINUTE, START.plusSeconds(95));
+        assertThat(minute.getTicks()).isEqualTo(1);
+        assertThat(minute.getMin()).isEqualTo(3d);
+        assertThat(minute.getMax()).isEqualTo(3d);
+        assertThat(minute.getVolatility()).isNull();
+        assertThat(stats.get(StatsWindow.FIVE_MINUTES, START.plusSeconds(95)).getTicks()).isEqualTo(3);
+
+        PriceStats empty = stats.get(StatsWindow.ONE_MINUTE, START.plusSeconds(200));
+        assertThat(empty.getTicks()).isZero();
+        assertThat(empty.getAverage()).isNull();
+        assertThat(empty.getMin()).isNull();
+    }
+
+    @Test
+    void testKeepsMaxTicks() {
+        RollingStats stats = loaded(3);
+        for (int i = 0; i < 5; i++) {
+            stats.addLive(10 - i, START.plusSeconds(i));
+        }
+
+        PriceStats day = stats.get(StatsWindow.ONE_DAY, START.plusSeconds(10));
+        assertThat(day.getTicks()).isEqualTo(3);
+        assertThat(day.getMax()).isEqualTo(8d);
+        assertThat(day.getMin()).isEqualTo(6d);
+    }
+
+    @Test
+    void testMatchesRecomputedStats() {
+        Random random = new Random(42);
+        RollingStats stats = loaded(1000);
+        List<Instant> times = new ArrayList<>();
+        List<Double> prices = new ArrayList<>();
+        Instant time = START;
+        for (int i = 0; i < 5000; i++) {
+            time = time.plusMillis(random.nextInt(100));
+            double price = 1000 + random.nextGaussian();
+            stats.addLive(price, time);
+            times.add(time);
+            prices.add(price);
+
+            if (i % 97 == 0) {
+                Instant now = time.plusMillis(random.nextInt(1000));
+                PriceStats minute = stats.get(StatsWindow.ONE_MINUTE, now);
+                List<Double> window = new ArrayList<>();
+                for (int j = Math.max(0, times.size() - 1000); j < times.size(); j++) {
+                    if (times.get(j).isAfter(now.minusSeconds(60))) {
+                        window.add(prices.get(j));
+                    }
+                }
+                double mean = window.stream().mapToDouble(Double::doubleValue).average().orElse(0);
+                double variance = window.stream().mapToDouble(price1 -> (price1 - mean) * (price1 - mean)).sum() / window.size();
+                assertThat(minute.getTicks()).isEqualTo(window.size());
+                assertThat(minute.getAverage()).isCloseTo(mean, within(1e-9));
+                assertThat(minute.getStdDev()).isCloseTo(Math.sqrt(variance), within(1e-6));
+                assertThat(minute.getMin()).isEqualTo(window.stream().mapToDouble(Double::doubleValue).min().getAsDouble());
+                assertThat(minute.getMax()).isEqualTo(window.stream().mapToDouble(Double::doubleValue).max().getAsDouble());
+            }
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.nvrsk.stream;
+
+import com.nvrsk.model.StockInfo;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.time.Instant;
+import java.util.Collections;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+
+@ExtendWith(SpringExtension.class)
+@SpringBootTest
+@AutoConfigureMockMvc
+@DirtiesContext(classMode = DirtiesContext.ClassMode.BEFORE_EACH_TEST_METHOD)
+class PriceStreamTests {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Test
+    void testStreamAllPrices() throws Exception {
+        MvcResult stream = mockMvc.perform(get("/api/stocks/stream"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (!stream.getResponse().getContentAsString().contains("Stock2.N")
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(stream.getResponse().getContentAsString())
+                .contains("\"name\":\"Stock1.L\"")
+                .contains("\"name\":\"Stock2.N\"")
+                .doesNotContain("id:");
+    }
+
+    @Test
+    void testDisconnectsLaggingSubscriber() throws Exception {
+        // sender never gets to the subscriber, like a pool whose threads are blocked by clients which don't read
+        PriceSubscriber subscriber = new PriceSubscriber(new SseEmitter(), Collections.emptyList(), 50, task -> {
+        });
+        StockInfo stock = new StockInfo(1L, "Stock1.L", 2d, Instant.now());
+
+        assertThat(subscriber.offer(stock)).isTrue();
+        assertThat(subscriber.isLagging(System.currentTimeMillis())).isFalse();
+        Thread.sleep(100);
+        assertThat(subscriber.isLagging(System.currentTimeMillis())).isTrue();
+        assertThat(subscriber.offer(stock)).isFalse();
+        assertThat(subscriber.isLagging(System.currentTimeMillis())).isFalse();
+    }
+}